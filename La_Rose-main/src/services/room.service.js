@@ -18,6 +18,8 @@ class RoomService {
             if (params.maxPrice) queryParams.append("maxPrice", params.maxPrice);
             if (params.typeId) queryParams.append("typeId", params.typeId);
             if (params.capacity) queryParams.append("capacity", params.capacity);
+            if (params.checkIn) queryParams.append("checkIn", params.checkIn);
+            if (params.checkOut) queryParams.append("checkOut", params.checkOut);
             const queryString = queryParams.toString();
             const url = queryString ? `${this.basePath}?${queryString}` : this.basePath;
 
@@ -28,6 +30,24 @@ class RoomService {
         }
     }
 
+    // Lấy các phòng còn trống cho cả kỳ lưu trú trong MỘT request (thay vì gọi booking-date cho từng phòng)
+    async getAvailableRooms(checkIn, checkOut, params = {}) {
+        try {
+            const queryParams = new URLSearchParams({ checkIn, checkOut });
+
+            Object.keys(params).forEach((key) => {
+                if (params[key] !== undefined && params[key] !== null && params[key] !== "") {
+                    queryParams.append(key, params[key]);
+                }
+            });
+
+            return await this.httpService.get(`${this.basePath}/available?${queryParams.toString()}`, { skipAuth: true });
+        } catch (error) {
+            console.error("Error fetching available rooms:", error);
+            throw error;
+        }
+    }
+
     async getRoomById(roomId) {
         try {
             return await this.httpService.get(`${this.basePath}/${roomId}`, { skipAuth: true });
@@ -1,15 +1,19 @@
 package com.larose.config;
 
+import com.larose.service.PrincipalCacheService;
+import com.larose.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.io.IOException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -19,7 +23,14 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private JwtTokenUtil jwtTokenUtil;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private PrincipalCacheService principalCacheService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    // true: quyền lấy từ chữ ký + scope của token, không đọc user từ DB/cache; thu hồi kiểm tra trong bộ nhớ
+    @Value("${app.security.jwt.stateless:false}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -36,18 +47,23 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             
             // SỬA LỖI: Bọc toàn bộ logic xác thực vào try-catch
             try {
-                email = jwtTokenUtil.getEmailFromToken(token);
+                // Parse một lần: kiểm tra chữ ký + hạn, lấy luôn email và scope
+                Claims claims = jwtTokenUtil.parseClaims(token);
+                email = claims.getSubject();
 
-                // Chỉ thực hiện nếu có email VÀ chưa được xác thực
-                if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                    
-                    // Nếu token hợp lệ (validateToken sẽ kiểm tra cả chữ ký và hạn)
-                    if (jwtTokenUtil.validateToken(token)) { 
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                    }
+                // Chỉ thực hiện nếu có email VÀ chưa được xác thực VÀ token chưa bị thu hồi
+                if (email != null && SecurityContextHolder.getContext().getAuthentication() == null
+                        && !tokenRevocationService.isRevoked(claims)) {
+                    UserDetails userDetails = stateless
+                            // Principal dựng từ claims: không query DB; khoá/đổi role đi qua danh sách thu hồi
+                            ? User.withUsername(email).password("")
+                                    .authorities(jwtTokenUtil.getAuthoritiesFromClaims(claims)).build()
+                            // User active lấy từ cache, chỉ query DB khi cache hết hạn hoặc bị invalidate
+                            : principalCacheService.get(email);
+                    // Quyền luôn lấy từ principal: ở chế độ không stateless là role hiện tại trong DB, không phải scope cũ của token
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
             } catch (Exception e) {
                 // Nếu token có vấn đề (hết hạn, sai chữ ký, etc.)
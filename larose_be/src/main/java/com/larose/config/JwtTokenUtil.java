@@ -4,15 +4,20 @@ import com.larose.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.StringJoiner;
+import java.util.UUID;
 
 /**
  * JWT Utility Class — Quản lý việc tạo và xác thực Access/Refresh Token.
@@ -24,6 +29,9 @@ public class JwtTokenUtil {
     private final long accessTokenExpirationMs;
     private final long refreshTokenExpirationMs;
 
+    // Version token của user (users.token_version) lúc phát hành, xem TokenRevocationService
+    public static final String TOKEN_VERSION_CLAIM = "ver";
+
     // Constants mặc định
     private static final long DEFAULT_ACCESS_TOKEN_EXPIRATION_MS = 15 * 60 * 1000; // 15 phút
     private static final long DEFAULT_REFRESH_TOKEN_EXPIRATION_MS = 7 * 24 * 60 * 60 * 1000; // 7 ngày
@@ -58,8 +66,10 @@ public class JwtTokenUtil {
         Date expiryDate = new Date(now.getTime() + accessTokenExpirationMs);
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getEmail())
                 .claim("scope", buildScope(user))
+                .claim(TOKEN_VERSION_CLAIM, user.getTokenVersion() != null ? user.getTokenVersion() : 0)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(key, SignatureAlgorithm.HS512)
@@ -92,8 +102,10 @@ public class JwtTokenUtil {
         Map<String, Object> claims = new HashMap<>();
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getEmail())
                 .claim("scope", buildScope(user))
+                .claim(TOKEN_VERSION_CLAIM, user.getTokenVersion() != null ? user.getTokenVersion() : 0)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(key, SignatureAlgorithm.HS512)
@@ -133,6 +145,34 @@ public class JwtTokenUtil {
         return false;
     }
 
+    /**
+     * Parse và kiểm tra chữ ký + hạn của token một lần duy nhất.
+     * Ném JwtException / IllegalArgumentException nếu token không hợp lệ.
+     */
+    public Claims parseClaims(String token) {
+        return parseToken(token);
+    }
+
+    /**
+     * Authorities lấy từ claim "scope" (các ROLE_* cách nhau bởi dấu cách).
+     * Token không có role nào thì mặc định ROLE_USER, giống CustomUserDetailsService.
+     */
+    public List<GrantedAuthority> getAuthoritiesFromClaims(Claims claims) {
+        String scope = claims.get("scope", String.class);
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        if (scope != null) {
+            for (String role : scope.trim().split("\\s+")) {
+                if (!role.isEmpty()) {
+                    authorities.add(new SimpleGrantedAuthority(role));
+                }
+            }
+        }
+        if (authorities.isEmpty()) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
+        }
+        return authorities;
+    }
+
     /**
      * Lấy thời điểm hết hạn của token.
      */
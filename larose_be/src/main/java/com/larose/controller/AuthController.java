@@ -5,6 +5,7 @@ import com.larose.dto.*;
 import com.larose.entity.User;
 import com.larose.maptruct.RoleMapper;
 import com.larose.service.EmailService;
+import com.larose.service.TokenRevocationService;
 import com.larose.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +29,7 @@ public class AuthController {
     private final EmailService emailService;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenUtil jwtTokenUtil;
+    private final TokenRevocationService tokenRevocationService;
 
 
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
@@ -150,7 +152,8 @@ public class AuthController {
         try {
             String refreshToken = req.getRefreshToken();
 
-            if (!jwtTokenUtil.validateToken(refreshToken)) {
+            if (!jwtTokenUtil.validateToken(refreshToken)
+                    || tokenRevocationService.isRevoked(jwtTokenUtil.parseClaims(refreshToken))) {
                 return ResponseEntity.status(401).body(
                         new ErrorResponse(401, "INVALID_REFRESH_TOKEN", "Refresh token không hợp lệ hoặc đã hết hạn", LocalDateTime.now())
                 );
@@ -276,6 +279,8 @@ public class AuthController {
         try {
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
+                // Access token này không dùng được nữa, kể cả ở chế độ stateless
+                tokenRevocationService.revokeToken(jwtTokenUtil.parseClaims(token));
                 logger.info("User logged out successfully");
             }
 
@@ -2,15 +2,27 @@ package com.larose.controller;
 
 import com.larose.dto.BookingDTO;
 import com.larose.dto.BookingSuggestionDTO;
+import com.larose.dto.request.AvailabilityRequest;
 import com.larose.dto.search.BookingSearchDto;
+import com.larose.entity.Booking;
 import com.larose.service.BookingService;
+import com.larose.service.InvoiceService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/booking")
@@ -18,6 +30,7 @@ import java.util.List;
 public class BookingController {
 
     private final BookingService bookingService;
+    private final InvoiceService invoiceService;
 
     // ✅ SỬA: Thêm endpoint này để phục vụ trang HistoryBookingPage.jsx
     /**
@@ -80,11 +93,73 @@ public class BookingController {
         return ResponseEntity.ok(bookingService.getBookingDateWithRoomId(roomId));
     }
 
+    /**
+     * Kiểm tra phòng còn trống cho các đêm [checkIn, checkOut), trả lời từ availability index (không truy vấn DB)
+     */
+    @GetMapping("/check-availability")
+    public ResponseEntity<Map<String, Object>> checkAvailability(
+            @RequestParam Long roomId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkIn,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkOut
+    ) {
+        boolean available = bookingService.isRoomAvailable(roomId, checkIn, checkOut);
+        return ResponseEntity.ok(Map.of(
+                "roomId", roomId,
+                "checkIn", checkIn,
+                "checkOut", checkOut,
+                "available", available
+        ));
+    }
+
+    // FE (booking.service.js) gửi POST kèm body { roomId, checkIn, checkOut }
+    @PostMapping("/check-availability")
+    public ResponseEntity<Map<String, Object>> checkAvailability(@RequestBody AvailabilityRequest request) {
+        return checkAvailability(request.getRoomId(), request.getCheckIn(), request.getCheckOut());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<BookingDTO> getDetail(@PathVariable Long id) {
         return ResponseEntity.ok(bookingService.getDetail(id));
     }
 
+    /**
+     * Tải hoá đơn PDF của booking (chỉ chủ booking hoặc admin), PDF được tạo trong bộ nhớ và ghi thẳng vào response
+     */
+    @GetMapping("/{id}/invoice")
+    public void downloadInvoice(@PathVariable Long id, Authentication authentication, HttpServletResponse response)
+            throws IOException {
+        if (authentication == null) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        // Đọc DB và kiểm tra trước khi set header PDF, để lỗi trả về đúng dạng
+        InvoiceService.InvoiceDocument invoice = invoiceService.findInvoice(id);
+        if (invoice == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Booking booking = invoice.booking();
+        boolean owner = booking.getUser() != null
+                && authentication.getName().equalsIgnoreCase(booking.getUser().getEmail());
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        if (!owner && !admin) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        if (invoice.transaction() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(InvoiceService.invoiceFileName(id))
+                .build()
+                .toString());
+        invoiceService.writeInvoice(invoice, response.getOutputStream());
+    }
+
     /**
      * Get search suggestions based on user's booking history
      * Returns personalized suggestions for authenticated users
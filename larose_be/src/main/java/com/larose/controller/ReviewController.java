@@ -2,6 +2,8 @@
 package com.larose.controller;
 
 import com.larose.dto.ReviewDTO;
+import com.larose.dto.ReviewFeedDTO;
+import com.larose.dto.RoomRatingSummaryDTO;
 import com.larose.dto.request.ReqReviewResponse;
 import com.larose.dto.response.ResReviewResponse;
 import com.larose.service.ReviewResponseService;
@@ -33,6 +35,26 @@ public class ReviewController {
         return ResponseEntity.ok(reviews);
     }
 
+    // Feed review published của một phòng (trang chi tiết phòng), phân trang keyset
+    @GetMapping("/room/{roomId}")
+    public ResponseEntity<ReviewFeedDTO> getRoomReviewFeed(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            return ResponseEntity.ok(reviewService.getRoomReviewFeed(roomId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            // cursor hỏng hoặc size ngoài giới hạn
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Tổng hợp rating của một phòng
+    @GetMapping("/room/{roomId}/summary")
+    public ResponseEntity<RoomRatingSummaryDTO> getRoomRatingSummary(@PathVariable Long roomId) {
+        return ResponseEntity.ok(reviewService.getRoomRatingSummary(roomId));
+    }
+
     // Endpoint cho admin: lấy tất cả reviews với phân trang và filter
     @GetMapping("/admin")
     public ResponseEntity<Page<ReviewDTO>> getAllReviewsForAdmin(
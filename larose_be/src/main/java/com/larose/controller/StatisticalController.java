@@ -3,10 +3,12 @@ package com.larose.controller;
 import com.larose.dto.DailyRevenueDto;
 import com.larose.dto.OccupancyRateDto;
 import com.larose.dto.WeeklyRevenueDto;
+import com.larose.service.RevenueRollupService;
 import com.larose.service.StatisticalService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -18,6 +20,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class StatisticalController {
     private final StatisticalService statisticalService;
+    private final RevenueRollupService revenueRollupService;
 
     @GetMapping("/rooms/total")
     public ResponseEntity<Long> countAllRooms() {
@@ -50,6 +53,16 @@ public class StatisticalController {
         return ResponseEntity.ok(statisticalService.getDailyRevenue(days, startDate, endDate));
     }
 
+    // Tính lại bảng daily_revenue cho một khoảng ngày (sau khi sửa dữ liệu trực tiếp trong DB)
+    @PostMapping("/revenue/rollup/rebuild")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Integer> rebuildRevenueRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+    ) {
+        return ResponseEntity.ok(revenueRollupService.rebuild(startDate, endDate));
+    }
+
     @GetMapping("/revenue/weekly")
     public ResponseEntity<List<WeeklyRevenueDto>> getWeeklyRevenue(@RequestParam(required = false) Integer weeks) {
         return ResponseEntity.ok(statisticalService.getWeeklyRevenue(weeks));
@@ -3,17 +3,21 @@ package com.larose.controller;
 import com.larose.dto.VATReportRequest;
 import com.larose.service.VATReportService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/vat-report")
 @RequiredArgsConstructor
@@ -21,56 +25,62 @@ public class VATReportController {
     private final VATReportService vatReportService;
 
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportVATReport(
+    public ResponseEntity<StreamingResponseBody> exportVATReport(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam BigDecimal khoanchi
     ) {
-        try {
-            byte[] reportBytes = vatReportService.generateVATReport(startDate, endDate, khoanchi);
+        return streamReport(startDate, endDate, khoanchi);
+    }
 
-            // Tạo tên file
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-            String fileName = String.format("BaoCaoThue_%s_den_%s.docx",
-                    startDate.format(formatter),
-                    endDate.format(formatter));
+    @PostMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportVATReportPost(@RequestBody VATReportRequest request) {
+        return streamReport(request.getStartDate(), request.getEndDate(), request.getKhoanchi());
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", fileName);
-            headers.setContentLength(reportBytes.length);
+    // Xuất nhiều kỳ (ví dụ 12 tháng) thành một file ZIP, mỗi kỳ một file DOCX
+    @PostMapping("/export/batch")
+    public ResponseEntity<StreamingResponseBody> exportVATReportBatch(@RequestBody List<VATReportRequest> periods) {
+        try {
+            vatReportService.validatePeriods(periods);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            return new ResponseEntity<>(reportBytes, headers, HttpStatus.OK);
+        // Tính xong mọi kỳ trước khi trả 200: lỗi ở bước này không để lại file ZIP hỏng
+        Map<String, Map<String, String>> reports;
+        try {
+            reports = vatReportService.prepareVATReports(periods);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error preparing VAT reports", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
-    }
 
-    @PostMapping("/export")
-    public ResponseEntity<byte[]> exportVATReportPost(@RequestBody VATReportRequest request) {
-        try {
-            byte[] reportBytes = vatReportService.generateVATReport(
-                    request.getStartDate(),
-                    request.getEndDate(),
-                    request.getKhoanchi()
-            );
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", "BaoCaoThue.zip");
 
-            // Tạo tên file
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-            String fileName = String.format("BaoCaoThue_%s_den_%s.docx",
-                    request.getStartDate().format(formatter),
-                    request.getEndDate().format(formatter));
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.setContentDispositionFormData("attachment", fileName);
-            headers.setContentLength(reportBytes.length);
+        StreamingResponseBody body = out -> vatReportService.writeVATReports(reports, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
 
-            return new ResponseEntity<>(reportBytes, headers, HttpStatus.OK);
+    // Số liệu tính trước khi trả 200, chỉ phần ghi file DOCX được stream thẳng vào response
+    private ResponseEntity<StreamingResponseBody> streamReport(LocalDate startDate, LocalDate endDate, BigDecimal khoanchi) {
+        String fileName;
+        Map<String, String> values;
+        try {
+            fileName = VATReportService.reportFileName(startDate, endDate);
+            values = vatReportService.prepareVATReport(startDate, endDate, khoanchi);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error preparing VAT report", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", fileName);
+
+        StreamingResponseBody body = out -> vatReportService.writeVATReport(values, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 }
@@ -1,6 +1,7 @@
 package com.larose.controller.admin;
 
 import com.larose.dto.BookingDTO;
+import com.larose.dto.BookingEventDTO;
 import com.larose.service.BookingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -28,12 +29,16 @@ public class AdminBookingController {
             @RequestParam(defaultValue = "createdAt") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDirection,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "false") boolean flat) {
 
         Sort sort = Sort.by(Sort.Direction.fromString(sortDirection), sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        Page<BookingDTO> bookings = bookingService.getAllBookingsForAdmin(status, search, pageable);
+        // flat=true: chỉ thông tin booking/phòng/khách, không kèm dịch vụ (nhẹ hơn cho màn hình danh sách)
+        Page<BookingDTO> bookings = flat
+                ? bookingService.getBookingSummariesForAdmin(status, search, pageable)
+                : bookingService.getAllBookingsForAdmin(status, search, pageable);
         return ResponseEntity.ok(bookings);
     }
 
@@ -43,6 +48,14 @@ public class AdminBookingController {
         return ResponseEntity.ok(booking);
     }
 
+    /**
+     * Lịch sử chuyển trạng thái của booking
+     */
+    @GetMapping("/{id}/events")
+    public ResponseEntity<List<BookingEventDTO>> getBookingTimeline(@PathVariable Long id) {
+        return ResponseEntity.ok(bookingService.getBookingTimeline(id));
+    }
+
     @PutMapping("/{id}/status")
     public ResponseEntity<BookingDTO> updateBookingStatus(
             @PathVariable Long id,
@@ -0,0 +1,51 @@
+package com.larose.controller.admin;
+
+import com.larose.dto.request.CampaignRequest;
+import com.larose.dto.response.CampaignResponse;
+import com.larose.service.NotificationCampaignService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/admin/campaigns")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminCampaignController {
+
+    private final NotificationCampaignService notificationCampaignService;
+
+    /**
+     * Tạo và bắt đầu chiến dịch gửi mail cho khách có booking nhận phòng trong khoảng ngày
+     */
+    @PostMapping
+    public ResponseEntity<CampaignResponse> createCampaign(@RequestBody CampaignRequest request, Principal principal) {
+        CampaignResponse campaign = notificationCampaignService.create(request, principal != null ? principal.getName() : null);
+        return ResponseEntity.ok(campaign);
+    }
+
+    @GetMapping
+    public ResponseEntity<Page<CampaignResponse>> getCampaigns(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(notificationCampaignService.list(PageRequest.of(page, size)));
+    }
+
+    /**
+     * Tiến độ chiến dịch (đã xếp hàng / đã gửi / lỗi)
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<CampaignResponse> getCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(notificationCampaignService.get(id));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<CampaignResponse> cancelCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(notificationCampaignService.cancel(id));
+    }
+}
@@ -0,0 +1,27 @@
+package com.larose.controller.admin;
+
+import com.larose.service.EmailTemplateService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/notification-templates")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminNotificationTemplateController {
+
+    private final EmailTemplateService emailTemplateService;
+
+    /**
+     * Nạp lại template email sau khi sửa bảng notification_templates
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() {
+        int loaded = emailTemplateService.reload();
+        return ResponseEntity.ok(Map.of("loaded", loaded));
+    }
+}
@@ -1,6 +1,7 @@
 package com.larose.controller.admin;
 
 import com.larose.dto.response.TransactionResponse;
+import com.larose.dto.response.TransactionSearchResponse;
 import com.larose.service.TransactionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -12,6 +13,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @RestController
@@ -40,6 +42,27 @@ public class AdminTransactionController {
         return ResponseEntity.ok(transactions);
     }
 
+    /**
+     * Tìm transaction với phân trang keyset (cursor), lọc thêm theo khoảng số tiền
+     */
+    @GetMapping("/search")
+    public ResponseEntity<TransactionSearchResponse> searchTransactions(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String provider,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        TransactionSearchResponse result = transactionService.searchTransactions(status, provider, startDate, endDate,
+                minAmount, maxAmount, sortBy, sortDirection, cursor, size);
+        return ResponseEntity.ok(result);
+    }
+
     @PutMapping("/{id}/status")
     public ResponseEntity<TransactionResponse> updateTransactionStatus(
             @PathVariable Long id,
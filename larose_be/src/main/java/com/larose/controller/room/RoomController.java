@@ -3,6 +3,7 @@ package com.larose.controller.room;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.larose.dto.request.RoomRequest;
+import com.larose.dto.response.RoomFacetsResponse;
 import com.larose.dto.response.RoomResponse;
 import com.larose.dto.response.RoomTypeResponse;
 import com.larose.dto.search.RoomSearchDto;
@@ -10,6 +11,7 @@ import com.larose.service.RoomService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
@@ -17,7 +19,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/rooms")
@@ -35,8 +39,11 @@ public class RoomController {
             @RequestParam(required = false) Double maxPrice,
             @RequestParam(required = false) Long typeId,
             @RequestParam(required = false) Integer capacity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkIn,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkOut,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sortBy
     ) {
         RoomSearchDto searchDto = new RoomSearchDto();
         searchDto.setKeyword(keyword);
@@ -44,13 +51,68 @@ public class RoomController {
         searchDto.setMaxPrice(maxPrice);
         searchDto.setTypeId(typeId);
         searchDto.setCapacity(capacity); 
+        searchDto.setCheckIn(checkIn);
+        searchDto.setCheckOut(checkOut);
         searchDto.setPageIndex(page);
         searchDto.setPageSize(size);
+        searchDto.setSortBy(sortBy);
 
         Page<RoomResponse> rooms = roomService.getRooms(searchDto);
         return ResponseEntity.ok(rooms);
     }
 
+    // ✅ GET /api/rooms/available → chỉ trả về các phòng còn trống cho cả kỳ lưu trú
+    @GetMapping("/available")
+    public ResponseEntity<Page<RoomResponse>> getAvailable(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkIn,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkOut,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Long typeId,
+            @RequestParam(required = false) Integer capacity,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sortBy
+    ) {
+        RoomSearchDto searchDto = new RoomSearchDto();
+        searchDto.setKeyword(keyword);
+        searchDto.setMinPrice(minPrice);
+        searchDto.setMaxPrice(maxPrice);
+        searchDto.setTypeId(typeId);
+        searchDto.setCapacity(capacity);
+        searchDto.setCheckIn(checkIn);
+        searchDto.setCheckOut(checkOut);
+        searchDto.setPageIndex(page);
+        searchDto.setPageSize(size);
+        searchDto.setSortBy(sortBy);
+
+        return ResponseEntity.ok(roomService.getAvailableRooms(searchDto));
+    }
+
+    // ✅ GET /api/rooms/facets → số phòng theo loại phòng / sức chứa / khoảng giá cho sidebar bộ lọc
+    @GetMapping("/facets")
+    public ResponseEntity<RoomFacetsResponse> getFacets(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Long typeId,
+            @RequestParam(required = false) Integer capacity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkIn,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkOut
+    ) {
+        RoomSearchDto searchDto = new RoomSearchDto();
+        searchDto.setKeyword(keyword);
+        searchDto.setMinPrice(minPrice);
+        searchDto.setMaxPrice(maxPrice);
+        searchDto.setTypeId(typeId);
+        searchDto.setCapacity(capacity);
+        searchDto.setCheckIn(checkIn);
+        searchDto.setCheckOut(checkOut);
+
+        return ResponseEntity.ok(roomService.getRoomFacets(searchDto));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<RoomResponse> getDetail(@NonNull @PathVariable Long id){
         RoomResponse rooms = roomService.findById(id);
@@ -76,6 +138,17 @@ public class RoomController {
         return ResponseEntity.status(201).body(savedRoom);
     }
 
+    // ✅ POST /api/rooms/bulk → import nhiều phòng trong một lần insert
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> bulkCreate(@RequestBody List<RoomRequest> roomRequests) {
+        List<String> codes = roomService.bulkCreate(roomRequests);
+        return ResponseEntity.status(201).body(Map.of(
+                "created", codes.size(),
+                "codes", codes
+        ));
+    }
+
     // ✅ PUT /api/rooms/{code}  → cập nhật
     @PutMapping(value = "/{code}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<RoomResponse> update(
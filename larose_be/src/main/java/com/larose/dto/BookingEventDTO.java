@@ -0,0 +1,20 @@
+package com.larose.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookingEventDTO {
+    private Long id;
+    private String fromStatus;
+    private String toStatus;
+    private String reason;
+    private LocalDateTime createdAt;
+
+    // Người thực hiện thay đổi (null nếu do hệ thống)
+    private Long changedById;
+    private String changedByName;
+    private String changedByEmail;
+}
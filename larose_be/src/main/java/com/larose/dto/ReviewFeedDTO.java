@@ -0,0 +1,20 @@
+package com.larose.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReviewFeedDTO {
+    private Long roomId;
+    private List<ReviewDTO> items;
+
+    // Truyền lại làm tham số cursor để lấy trang kế tiếp; null khi đã hết
+    private String nextCursor;
+    private boolean hasMore;
+
+    // Chỉ có ở trang đầu
+    private RoomRatingSummaryDTO summary;
+}
@@ -0,0 +1,15 @@
+package com.larose.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class RoomRatingSummaryDTO {
+    private Long roomId;
+    private Long totalReviews;
+    private Double averageRating;
+
+    // Số review theo từng mức sao 1..5
+    private Map<Integer, Long> ratingCounts;
+}
@@ -0,0 +1,12 @@
+package com.larose.dto.projection;
+
+import java.time.LocalDate;
+
+public interface CampaignRecipientProjection {
+    Long getUserId();
+    String getEmail();
+    String getFullName();
+
+    // Ngày nhận phòng sớm nhất trong khoảng của chiến dịch
+    LocalDate getCheckIn();
+}
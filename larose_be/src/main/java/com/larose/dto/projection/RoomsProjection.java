@@ -22,6 +22,10 @@ public interface RoomsProjection {
     String getTypeShortDescription();
     BigDecimal getBasePrice();
 
+    // Từ room_rating_aggregates, null khi phòng chưa có review
+    Integer getReviewCount();
+    BigDecimal getAverageRating();
+
     Long getImageId();
     Boolean getImageIsPrimary();
     String getImageUrl();
@@ -0,0 +1,41 @@
+package com.larose.dto.projection;
+
+import com.larose.entity.Booking;
+import com.larose.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng kết quả tìm transaction: transaction cùng booking, khách và phòng, lấy trong một câu SELECT.
+ */
+public record TransactionSearchRow(
+        Long id,
+        Long userId,
+        String provider,
+        String providerTransactionId,
+        BigDecimal amount,
+        String currency,
+        Transaction.Status status,
+        Transaction.Type type,
+        String metadata,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt,
+        Long bookingId,
+        String bookingCode,
+        LocalDate checkIn,
+        LocalDate checkOut,
+        Integer nights,
+        Integer guests,
+        BigDecimal priceTotal,
+        Booking.Status bookingStatus,
+        LocalDateTime bookingCreatedAt,
+        Long bookingUserId,
+        String userEmail,
+        String userFullName,
+        Long roomId,
+        String roomTitle,
+        Long roomTypeId,
+        String roomTypeName) {
+}
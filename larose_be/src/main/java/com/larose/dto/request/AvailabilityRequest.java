@@ -0,0 +1,16 @@
+package com.larose.dto.request;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AvailabilityRequest {
+    private Long roomId;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+}
@@ -0,0 +1,20 @@
+package com.larose.dto.request;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CampaignRequest {
+    private String name;
+    // Tên template email, ví dụ một dòng EMAIL trong notification_templates
+    private String templateName;
+    private LocalDate checkInFrom;
+    private LocalDate checkInTo;
+    // Trạng thái booking được tính (mặc định pending, confirmed)
+    private List<String> bookingStatuses;
+}
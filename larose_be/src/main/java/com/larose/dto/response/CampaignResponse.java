@@ -0,0 +1,33 @@
+package com.larose.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CampaignResponse {
+
+    private Long id;
+    private String name;
+    private String templateName;
+    private LocalDate checkInFrom;
+    private LocalDate checkInTo;
+    private List<String> bookingStatuses;
+    private String status;
+
+    // Tiến độ: đã đưa vào outbox / đã gửi / lỗi hẳn / đang chờ gửi
+    private Integer enqueuedCount;
+    private Long sentCount;
+    private Long failedCount;
+    private Long queuedCount;
+
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
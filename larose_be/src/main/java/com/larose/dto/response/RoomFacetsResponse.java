@@ -0,0 +1,50 @@
+package com.larose.dto.response;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Số phòng theo từng giá trị bộ lọc cho sidebar tìm phòng.
+ * Mỗi nhóm được đếm với mọi bộ lọc khác trừ chính nó, nên chọn một loại phòng vẫn thấy số phòng của các loại khác.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomFacetsResponse {
+
+    // Số phòng khớp toàn bộ bộ lọc
+    private long total;
+
+    private List<FacetCount> types;
+    private List<FacetCount> capacities;
+    private List<PriceBucket> prices;
+
+    // Khoảng giá của các phòng khớp bộ lọc (không tính bộ lọc giá), null khi không có phòng nào
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetCount {
+        private Long value;
+        private String label;
+        private long count;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+        // [from, to)
+        private BigDecimal from;
+        private BigDecimal to;
+        private long count;
+    }
+}
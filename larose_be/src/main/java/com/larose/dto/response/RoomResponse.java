@@ -26,6 +26,8 @@ public class RoomResponse {
     private String description;
     private Integer capacity;
     private Map<String, Object> amenities; // 👈 Vẫn giữ nguyên kiểu Map
+    private Integer reviewCount;
+    private Double averageRating;
 
     private RoomTypeResponse type;
     private List<RoomImageResponse> images = new ArrayList<>();
@@ -44,6 +46,8 @@ public class RoomResponse {
                 .deletedAt(r.getRoomDeletedAt())
                 .capacity(r.getRoomCapacity())
                 .amenities(amenities) // 👈 ĐÃ LÀ MAP
+                .reviewCount(r.getReviewCount() != null ? r.getReviewCount() : 0)
+                .averageRating(r.getAverageRating() != null ? r.getAverageRating().doubleValue() : null)
                 .type(RoomTypeResponse.builder()
                         .id(r.getTypeId())
                         .name(r.getTypeName())
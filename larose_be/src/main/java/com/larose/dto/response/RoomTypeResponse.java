@@ -17,4 +17,6 @@ public class RoomTypeResponse {
     private String shortDescription;
     private Integer maxGuests;
     private BigDecimal basePrice;
+    private Integer reviewCount;
+    private Double averageRating;
 }
@@ -0,0 +1,19 @@
+package com.larose.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionSearchResponse {
+
+    private List<TransactionResponse> items;
+
+    // Truyền lại làm tham số cursor để lấy trang kế tiếp; null khi đã hết
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -3,6 +3,8 @@ package com.larose.dto.search;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.LocalDate;
+
 @Getter
 @Setter
 public class RoomSearchDto extends SearchDto {
@@ -11,4 +13,12 @@ public class RoomSearchDto extends SearchDto {
     private Long typeId;
     private String keyword;
     private Integer capacity; 
+    private LocalDate checkIn;
+    private LocalDate checkOut;
+    // "rating": điểm trung bình giảm dần; mặc định: phòng mới nhất trước
+    private String sortBy;
+
+    public boolean hasStayDates() {
+        return checkIn != null && checkOut != null;
+    }
 }
@@ -0,0 +1,28 @@
+package com.larose.dto.search;
+
+import com.larose.entity.Transaction;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Điều kiện tìm transaction cho admin; trường null thì không lọc.
+ */
+@Data
+public class TransactionSearchDto {
+    private Transaction.Status status;
+    private String provider;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+
+    // Sắp xếp theo createdAt | amount | id, luôn kèm id để thứ tự ổn định
+    private String sortBy = "createdAt";
+    private boolean ascending;
+
+    // Keyset: chỉ lấy các dòng đứng sau (afterValue, afterId) theo thứ tự sắp xếp
+    private Comparable<?> afterValue;
+    private Long afterId;
+}
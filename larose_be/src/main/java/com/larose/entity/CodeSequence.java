@@ -0,0 +1,23 @@
+package com.larose.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "code_sequences")
+@Data
+public class CodeSequence {
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    // Giá trị tiếp theo chưa được cấp phát cho node nào
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,38 @@
+package com.larose.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "daily_revenue")
+@Data
+public class DailyRevenue {
+    @Id
+    @Column(name = "revenue_date")
+    private LocalDate revenueDate;
+
+    // priceTotal của booking checked_out, tính theo ngày check_out
+    @Column(name = "room_revenue", precision = 14, scale = 2, nullable = false)
+    private BigDecimal roomRevenue = BigDecimal.ZERO;
+
+    // booking_services của booking checked_out, tính theo ngày check_out
+    @Column(name = "service_revenue", precision = 14, scale = 2, nullable = false)
+    private BigDecimal serviceRevenue = BigDecimal.ZERO;
+
+    // Mọi transaction success, tính theo ngày tạo
+    @Column(name = "transaction_revenue", precision = 14, scale = 2, nullable = false)
+    private BigDecimal transactionRevenue = BigDecimal.ZERO;
+
+    // Transaction success của booking chưa trả phòng, tính theo ngày tạo
+    @Column(name = "open_transaction_revenue", precision = 14, scale = 2, nullable = false)
+    private BigDecimal openTransactionRevenue = BigDecimal.ZERO;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -17,6 +17,15 @@ public class Notification {
     @JoinColumn(name = "user_id")
     private User user;
 
+    // Chiến dịch gửi hàng loạt tạo ra mail này (nếu có)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "campaign_id")
+    private NotificationCampaign campaign;
+
+    // Địa chỉ nhận (email), không phụ thuộc user vì nhiều mail gửi cho địa chỉ chưa có tài khoản
+    @Column(length = 255)
+    private String recipient;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private NotificationType type;
@@ -30,6 +39,13 @@ public class Notification {
     @Column(columnDefinition = "TEXT")
     private String body;
 
+    @Column(name = "is_html", nullable = false)
+    private Boolean html = true;
+
+    // Mail hàng loạt được gửi sau mail giao dịch (xác thực, đặt phòng...)
+    @Column(name = "is_bulk", nullable = false)
+    private Boolean bulk = false;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private NotificationStatus status = NotificationStatus.QUEUED;
@@ -43,6 +59,16 @@ public class Notification {
     @Column(columnDefinition = "JSON")
     private String metadata;
 
+    // Outbox: số lần đã thử gửi, lần thử kế tiếp (cũng dùng làm lease khi worker đang gửi), lỗi gần nhất
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,35 @@
+package com.larose.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "notification_attachments")
+@Data
+public class NotificationAttachment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "notification_id", nullable = false)
+    private Notification notification;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    // Có giá trị thì là ảnh inline (cid:...), không thì là file đính kèm
+    @Column(name = "content_id")
+    private String contentId;
+
+    @Lob
+    @Column(name = "content", columnDefinition = "LONGBLOB")
+    private byte[] content;
+
+    // Dùng thay cho content với file tĩnh trong classpath (logo), khỏi lưu lại mỗi mail
+    @Column(name = "resource_path")
+    private String resourcePath;
+}
@@ -0,0 +1,72 @@
+package com.larose.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "notification_campaigns")
+@Data
+public class NotificationCampaign {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 255)
+    private String name;
+
+    // Tên template email (EmailTemplateService)
+    @Column(name = "template_name", nullable = false, length = 100)
+    private String templateName;
+
+    // Người nhận: khách có booking nhận phòng trong khoảng này, với các trạng thái booking_statuses
+    @Column(name = "check_in_from", nullable = false)
+    private LocalDate checkInFrom;
+
+    @Column(name = "check_in_to", nullable = false)
+    private LocalDate checkInTo;
+
+    // Danh sách Booking.Status, phân cách bằng dấu phẩy
+    @Column(name = "booking_statuses", nullable = false, length = 100)
+    private String bookingStatuses;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CampaignStatus status = CampaignStatus.RUNNING;
+
+    // Điểm tiếp tục: user id lớn nhất đã đưa vào outbox
+    @Column(name = "last_user_id", nullable = false)
+    private Long lastUserId = 0L;
+
+    @Column(name = "enqueued_count", nullable = false)
+    private Integer enqueuedCount = 0;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "created_by")
+    private User createdBy;
+
+    // Hai node cùng chạy một chiến dịch thì chỉ một bên ghi được mỗi đợt
+    @Version
+    private Long version;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum CampaignStatus {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+}
@@ -3,6 +3,7 @@ package com.larose.entity;
 import lombok.Data;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
@@ -24,6 +25,13 @@ public class ReportsCache {
     @Column(name = "generated_at")
     private LocalDateTime generatedAt;
 
+    // Khoảng ngày dữ liệu mà báo cáo phụ thuộc (null = phụ thuộc toàn bộ dữ liệu)
+    @Column(name = "window_start")
+    private LocalDate windowStart;
+
+    @Column(name = "window_end")
+    private LocalDate windowEnd;
+
     @PrePersist
     public void prePersist() {
         if (generatedAt == null) {
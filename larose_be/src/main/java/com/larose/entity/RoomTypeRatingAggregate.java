@@ -0,0 +1,42 @@
+package com.larose.entity;
+
+import lombok.Data;
+import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+// Tổng hợp rating các review published của mọi phòng thuộc một loại phòng, cập nhật cộng dồn khi review thay đổi
+@Entity
+@Table(name = "room_type_rating_aggregates")
+@Data
+public class RoomTypeRatingAggregate {
+    @Id
+    @Column(name = "room_type_id")
+    private Long roomTypeId;
+
+    @Column(name = "review_count", nullable = false)
+    private Integer reviewCount = 0;
+
+    @Column(name = "rating_sum", nullable = false)
+    private Integer ratingSum = 0;
+
+    @Column(name = "stars_1", nullable = false)
+    private Integer stars1 = 0;
+
+    @Column(name = "stars_2", nullable = false)
+    private Integer stars2 = 0;
+
+    @Column(name = "stars_3", nullable = false)
+    private Integer stars3 = 0;
+
+    @Column(name = "stars_4", nullable = false)
+    private Integer stars4 = 0;
+
+    @Column(name = "stars_5", nullable = false)
+    private Integer stars5 = 0;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -102,6 +102,10 @@ public class User {
     @Column(name = "password_reset_token_sent_at")
     private LocalDateTime passwordResetTokenSentAt;
 
+    // Claim "ver" của JWT; token mang version nhỏ hơn bị từ chối. Chỉ tăng bằng UserRepository.incrementTokenVersion
+    @Column(name = "token_version", insertable = false, updatable = false)
+    private Integer tokenVersion;
+
     // Constructors
 //    public User() {}
     public User(String email, String fullName) {
@@ -20,4 +20,11 @@ public interface BookingMapper {
     @Mapping(target = "userId", source = "user.id")
     @Mapping(target = "bookingServices", source = "bookingServices")
     BookingDTO toBookingDTO(Booking booking);
+
+    // Không đọc bookingServices (tránh lazy load từng booking), dịch vụ được gán sau
+    @Mapping(target = "userEmail", source = "user.email")
+    @Mapping(target = "userFullName", source = "user.fullName")
+    @Mapping(target = "userId", source = "user.id")
+    @Mapping(target = "bookingServices", ignore = true)
+    BookingDTO toBookingDTOWithoutServices(Booking booking);
 }
@@ -0,0 +1,22 @@
+package com.larose.repository;
+
+import com.larose.entity.AvailabilityCalendar;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AvailabilityCalendarRepository extends JpaRepository<AvailabilityCalendar, Long> {
+
+    // Chỉ lấy (room_id, dt) để dựng index, không load entity Room/Booking
+    @Query("SELECT a.room.id, a.dt FROM AvailabilityCalendar a WHERE a.isBooked = true")
+    List<Object[]> findAllBookedNights();
+
+    @Modifying
+    @Query("DELETE FROM AvailabilityCalendar a WHERE a.booking.id = :bookingId")
+    int deleteByBookingId(@Param("bookingId") Long bookingId);
+}
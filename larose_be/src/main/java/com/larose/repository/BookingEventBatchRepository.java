@@ -0,0 +1,17 @@
+package com.larose.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Fragment cho BookingEventRepository: ghi nhiều sự kiện booking bằng một JDBC batch.
+ * Người thay đổi được tra theo email ngay trong câu INSERT, không cần load User.
+ */
+public interface BookingEventBatchRepository {
+
+    int batchInsert(List<EventRow> events);
+
+    record EventRow(Long bookingId, String fromStatus, String toStatus, String changedByEmail,
+                    String reason, LocalDateTime createdAt) {
+    }
+}
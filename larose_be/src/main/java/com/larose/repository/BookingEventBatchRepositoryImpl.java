@@ -0,0 +1,34 @@
+package com.larose.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class BookingEventBatchRepositoryImpl implements BookingEventBatchRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO booking_events (booking_id, from_status, to_status, changed_by_user_id, reason, created_at)
+            VALUES (?, ?, ?, (SELECT u.id FROM users u WHERE u.email = ?), ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int batchInsert(List<EventRow> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (ps, event) -> {
+            ps.setLong(1, event.bookingId());
+            ps.setString(2, event.fromStatus());
+            ps.setString(3, event.toStatus());
+            ps.setString(4, event.changedByEmail());
+            ps.setString(5, event.reason());
+            ps.setTimestamp(6, Timestamp.valueOf(event.createdAt()));
+        });
+        return events.size();
+    }
+}
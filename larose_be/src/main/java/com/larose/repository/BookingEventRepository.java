@@ -0,0 +1,15 @@
+package com.larose.repository;
+
+import com.larose.entity.BookingEvent;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BookingEventRepository extends JpaRepository<BookingEvent, Long>, BookingEventBatchRepository {
+
+    @EntityGraph(attributePaths = {"changedBy"})
+    List<BookingEvent> findByBookingIdOrderByCreatedAtAscIdAsc(Long bookingId);
+}
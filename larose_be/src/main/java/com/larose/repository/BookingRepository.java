@@ -1,6 +1,7 @@
 package com.larose.repository;
 
 import com.larose.dto.projection.BookingProjection;
+import com.larose.dto.projection.CampaignRecipientProjection;
 import com.larose.dto.projection.RoomsProjection;
 import com.larose.dto.search.BookingSearchDto;
 import com.larose.dto.search.RoomSearchDto;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,13 +44,15 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @EntityGraph(attributePaths = {"room", "roomType", "user"})
     Page<Booking> findByStatusOrderByCreatedAtDesc(Booking.Status status, Pageable pageable);
 
-    @Query(value = """
-            select * from bookings order by bookings.id desc limit 1
-            """, nativeQuery = true)
-    Booking getTop1();
-
     Optional<Booking> findByBookingCode(String code);
 
+    // Mã booking mới nhất theo tiền tố (chỉ dùng để khởi tạo sequence theo ngày)
+    Optional<Booking> findTopByBookingCodeStartingWithOrderByIdDesc(String prefix);
+
+    // Trạng thái hiện tại, không load entity (dùng trước các câu UPDATE native)
+    @Query("SELECT b.status FROM Booking b WHERE b.id = :id")
+    Optional<Booking.Status> findStatusById(@Param("id") Long id);
+
     @Modifying
     @Query(value = """
             UPDATE bookings b
@@ -104,15 +108,6 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
             """, nativeQuery = true)
     BigDecimal sumTotalPriceByDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
-    @Query(value = """
-                    SELECT * FROM bookings
-                    where check_out >= CURDATE()
-                    and room_id = :roomId
-                    and status != 'cancelled'
-                    and status != 'checked_out'
-                    """, nativeQuery = true)
-    List<Booking> getBookingDateWithRoomId(Long roomId);
-
     @Query(value = """
     SELECT 
         b.id AS id,
@@ -183,6 +178,12 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     Optional<Booking> findByRoomId(Long roomId);
 
+    // Khoảng ngày đang giữ phòng của mọi booking còn hiệu lực (dựng availability index lúc khởi động)
+    @Query("SELECT b.room.id, b.checkIn, b.checkOut FROM Booking b " +
+           "WHERE b.room IS NOT NULL " +
+           "AND b.status NOT IN ('cancelled', 'no_show')")
+    List<Object[]> findOccupiedRanges();
+
     // Query for search suggestions - get user bookings from last 6 months
     @EntityGraph(attributePaths = {"room", "roomType"})
     @Query("SELECT b FROM Booking b WHERE b.user.id = :userId " +
@@ -210,23 +211,60 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
         LocalDate endDate
     );
     
-    // Admin queries with bookingServices loaded
-    @EntityGraph(attributePaths = {"room", "roomType", "user", "bookingServices", "bookingServices.service"})
-    Page<Booking> findByStatus(Booking.Status status, Pageable pageable);
-    
-    @EntityGraph(attributePaths = {"room", "roomType", "user", "bookingServices", "bookingServices.service"})
-    @Query("SELECT b FROM Booking b WHERE b.status = :status AND " +
-           "(LOWER(b.bookingCode) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(b.user.fullName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(b.user.email) LIKE LOWER(CONCAT('%', :search, '%')))")
-    Page<Booking> findByStatusAndSearchTerm(@Param("status") Booking.Status status, 
-                                            @Param("search") String search, 
-                                            Pageable pageable);
-    
-    @EntityGraph(attributePaths = {"room", "roomType", "user", "bookingServices", "bookingServices.service"})
-    @Query("SELECT b FROM Booking b WHERE " +
-           "LOWER(b.bookingCode) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(b.user.fullName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(b.user.email) LIKE LOWER(CONCAT('%', :search, '%'))")
-    Page<Booking> findBySearchTerm(@Param("search") String search, Pageable pageable);
-}
\ No newline at end of file
+    // Điều kiện lọc chung của danh sách booking admin (status / từ khóa đều có thể null)
+    String ADMIN_FILTER = "(:status IS NULL OR b.status = :status) AND (:search IS NULL OR " +
+            "LOWER(b.bookingCode) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(u.fullName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+            "LOWER(u.email) LIKE LOWER(CONCAT('%', :search, '%')))";
+
+    // Danh sách admin, bước 1: chỉ lấy id của trang, LIMIT/OFFSET chạy trong DB
+    @Query(value = "SELECT b.id FROM Booking b LEFT JOIN b.user u WHERE " + ADMIN_FILTER,
+           countQuery = "SELECT COUNT(b) FROM Booking b LEFT JOIN b.user u WHERE " + ADMIN_FILTER)
+    Page<Long> findAdminPageIds(@Param("status") Booking.Status status,
+                                @Param("search") String search,
+                                Pageable pageable);
+
+    // Danh sách admin, bước 2: load booking của đúng các id trong trang (dịch vụ lấy riêng theo lô)
+    @EntityGraph(attributePaths = {"room", "roomType", "user"})
+    List<Booking> findByIdIn(Collection<Long> ids);
+
+    // Danh sách admin dạng phẳng: một dòng mỗi booking, không đụng tới bookingServices
+    @Query(value = "SELECT b.id AS id, b.bookingCode AS bookingCode, b.checkIn AS checkIn, b.checkOut AS checkOut, " +
+                   "b.nights AS nights, b.guests AS guests, b.priceTotal AS priceTotal, b.status AS status, " +
+                   "b.updatedAt AS updatedAt, b.createdAt AS createdAt, " +
+                   "u.id AS userId, u.email AS userEmail, u.fullName AS userFullName, " +
+                   "r.id AS roomId, r.title AS roomTitle, r.code AS roomCode, " +
+                   "rt.id AS roomTypeId, rt.name AS roomTypeName " +
+                   "FROM Booking b LEFT JOIN b.user u LEFT JOIN b.room r LEFT JOIN b.roomType rt WHERE " + ADMIN_FILTER,
+           countQuery = "SELECT COUNT(b) FROM Booking b LEFT JOIN b.user u WHERE " + ADMIN_FILTER)
+    Page<BookingProjection> findAdminSummaries(@Param("status") Booking.Status status,
+                                               @Param("search") String search,
+                                               Pageable pageable);
+
+    // Danh sách admin dạng phẳng cho các id đã tìm được từ search index
+    @Query("SELECT b.id AS id, b.bookingCode AS bookingCode, b.checkIn AS checkIn, b.checkOut AS checkOut, " +
+           "b.nights AS nights, b.guests AS guests, b.priceTotal AS priceTotal, b.status AS status, " +
+           "b.updatedAt AS updatedAt, b.createdAt AS createdAt, " +
+           "u.id AS userId, u.email AS userEmail, u.fullName AS userFullName, " +
+           "r.id AS roomId, r.title AS roomTitle, r.code AS roomCode, " +
+           "rt.id AS roomTypeId, rt.name AS roomTypeName " +
+           "FROM Booking b LEFT JOIN b.user u LEFT JOIN b.room r LEFT JOIN b.roomType rt WHERE b.id IN :ids")
+    List<BookingProjection> findAdminSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Dữ liệu dựng search index: id, mã, trạng thái, ngày tạo, user id, tên, email, số điện thoại
+    @Query("SELECT b.id, b.bookingCode, b.status, b.createdAt, u.id, u.fullName, u.email, u.phone " +
+           "FROM Booking b LEFT JOIN b.user u")
+    List<Object[]> findSearchIndexRows();
+
+    // Người nhận chiến dịch mail: mỗi user một dòng, theo thứ tự user id sau afterUserId (keyset, tiếp tục được)
+    @Query("SELECT u.id AS userId, u.email AS email, u.fullName AS fullName, MIN(b.checkIn) AS checkIn " +
+           "FROM Booking b JOIN b.user u " +
+           "WHERE b.checkIn BETWEEN :from AND :to AND b.status IN :statuses AND u.id > :afterUserId " +
+           "AND u.isActive = true " +
+           "GROUP BY u.id, u.email, u.fullName ORDER BY u.id")
+    List<CampaignRecipientProjection> findCampaignRecipients(@Param("from") LocalDate from,
+                                                             @Param("to") LocalDate to,
+                                                             @Param("statuses") Collection<Booking.Status> statuses,
+                                                             @Param("afterUserId") Long afterUserId,
+                                                             Pageable pageable);
+}
@@ -1,11 +1,13 @@
 package com.larose.repository;
 
 import com.larose.entity.BookingService;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,6 +16,10 @@ public interface BookingServiceRepository extends JpaRepository<BookingService,
     
     @Query("SELECT bs FROM BookingService bs JOIN FETCH bs.service WHERE bs.booking.id = :bookingId")
     List<BookingService> findByBookingIdWithService(@Param("bookingId") Long bookingId);
+
+    // Dịch vụ của nhiều booking trong một câu (danh sách booking admin)
+    @EntityGraph(attributePaths = {"service"})
+    List<BookingService> findByBookingIdIn(Collection<Long> bookingIds);
     
     void deleteByBookingIdAndServiceId(Long bookingId, Long serviceId);
 }
@@ -0,0 +1,28 @@
+package com.larose.repository;
+
+import com.larose.entity.CodeSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CodeSequenceRepository extends JpaRepository<CodeSequence, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CodeSequence c WHERE c.name = :name")
+    Optional<CodeSequence> findForUpdate(@Param("name") String name);
+
+    // Nhiều node cùng tạo một sequence mới: chỉ dòng đầu tiên được ghi, không ném lỗi trùng khoá
+    @Modifying
+    @Query(value = """
+            INSERT IGNORE INTO code_sequences (name, next_value, updated_at)
+            VALUES (:name, :initialValue, NOW())
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name, @Param("initialValue") long initialValue);
+}
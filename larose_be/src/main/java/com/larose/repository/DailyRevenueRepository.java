@@ -0,0 +1,83 @@
+package com.larose.repository;
+
+import com.larose.entity.DailyRevenue;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyRevenueRepository extends JpaRepository<DailyRevenue, LocalDate> {
+
+    List<DailyRevenue> findByRevenueDateBetweenOrderByRevenueDateAsc(LocalDate startDate, LocalDate endDate);
+
+    // Tổng doanh thu = phòng + dịch vụ (đã trả phòng) + transaction của booking chưa trả phòng
+    @Query("SELECT COALESCE(SUM(d.roomRevenue + d.serviceRevenue + d.openTransactionRevenue), 0) " +
+           "FROM DailyRevenue d WHERE d.revenueDate BETWEEN :startDate AND :endDate")
+    BigDecimal sumRevenueBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    @Modifying
+    @Query("DELETE FROM DailyRevenue d WHERE d.revenueDate BETWEEN :startDate AND :endDate")
+    int deleteBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // Tính lại các ngày trong [startDate, endDate] trực tiếp trong DB (chạy sau deleteBetween)
+    @Modifying
+    @Query(value = """
+            INSERT INTO daily_revenue (revenue_date, room_revenue, service_revenue, transaction_revenue, open_transaction_revenue)
+            SELECT x.d, SUM(x.room), SUM(x.service), SUM(x.txn), SUM(x.open_txn)
+            FROM (
+                SELECT b.check_out AS d, COALESCE(b.price_total, 0.00) AS room, 0.00 AS service, 0.00 AS txn, 0.00 AS open_txn
+                FROM bookings b
+                WHERE b.status = 'checked_out'
+                  AND b.check_out BETWEEN :startDate AND :endDate
+                UNION ALL
+                SELECT b.check_out, 0.00, COALESCE(bs.total_price, 0.00), 0.00, 0.00
+                FROM booking_services bs
+                JOIN bookings b ON b.id = bs.booking_id
+                WHERE b.status = 'checked_out'
+                  AND b.check_out BETWEEN :startDate AND :endDate
+                UNION ALL
+                SELECT DATE(t.created_at), 0.00, 0.00, COALESCE(t.amount, 0.00),
+                       CASE WHEN b.id IS NOT NULL AND b.status <> 'checked_out' THEN COALESCE(t.amount, 0.00) ELSE 0.00 END
+                FROM transactions t
+                LEFT JOIN bookings b ON b.id = t.booking_id
+                WHERE t.status = 'success'
+                  AND t.created_at >= :startDate
+                  AND t.created_at < :endExclusive
+            ) x
+            GROUP BY x.d
+            """, nativeQuery = true)
+    int aggregateBetween(@Param("startDate") LocalDate startDate,
+                         @Param("endDate") LocalDate endDate,
+                         @Param("endExclusive") LocalDate endExclusive);
+
+    // Ghi nhận ngày cần rebuild lại (rebuild sau commit bị lỗi)
+    @Modifying
+    @Query(value = """
+            INSERT INTO daily_revenue_dirty (revenue_date) VALUES (:day)
+            ON DUPLICATE KEY UPDATE marked_at = CURRENT_TIMESTAMP
+            """, nativeQuery = true)
+    int markDirty(@Param("day") LocalDate day);
+
+    @Query(value = "SELECT revenue_date FROM daily_revenue_dirty ORDER BY revenue_date", nativeQuery = true)
+    List<Object> findDirtyDays();
+
+    @Modifying
+    @Query(value = "DELETE FROM daily_revenue_dirty WHERE revenue_date BETWEEN :startDate AND :endDate", nativeQuery = true)
+    int clearDirtyBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    // Ngày đầu/cuối có phát sinh doanh thu trong sổ (dùng cho lần dựng rollup đầu tiên)
+    @Query(value = """
+            SELECT MIN(x.d), MAX(x.d) FROM (
+                SELECT check_out AS d FROM bookings WHERE status = 'checked_out'
+                UNION ALL
+                SELECT DATE(created_at) FROM transactions WHERE status = 'success'
+            ) x
+            """, nativeQuery = true)
+    List<Object[]> findLedgerDateRange();
+}
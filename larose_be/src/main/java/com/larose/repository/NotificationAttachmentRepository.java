@@ -0,0 +1,17 @@
+package com.larose.repository;
+
+import com.larose.entity.NotificationAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationAttachmentRepository extends JpaRepository<NotificationAttachment, Long> {
+
+    @Query("SELECT a FROM NotificationAttachment a WHERE a.notification.id IN :notificationIds ORDER BY a.id")
+    List<NotificationAttachment> findByNotificationIdIn(@Param("notificationIds") Collection<Long> notificationIds);
+}
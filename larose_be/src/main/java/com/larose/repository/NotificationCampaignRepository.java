@@ -0,0 +1,17 @@
+package com.larose.repository;
+
+import com.larose.entity.NotificationCampaign;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationCampaignRepository extends JpaRepository<NotificationCampaign, Long> {
+
+    List<NotificationCampaign> findByStatus(NotificationCampaign.CampaignStatus status);
+
+    Page<NotificationCampaign> findAllByOrderByCreatedAtDesc(Pageable pageable);
+}
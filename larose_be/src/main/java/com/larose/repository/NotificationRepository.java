@@ -0,0 +1,46 @@
+package com.larose.repository;
+
+import com.larose.entity.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    // Id các mail QUEUED đã tới lượt gửi (chưa từng thử hoặc đã hết thời gian chờ / lease), mail hàng loạt sau cùng
+    @Query("SELECT n.id FROM Notification n WHERE n.type = :type AND n.status = :status " +
+           "AND (n.nextAttemptAt IS NULL OR n.nextAttemptAt <= :now) ORDER BY n.bulk, n.id")
+    List<Long> findDueIds(@Param("type") Notification.NotificationType type,
+                          @Param("status") Notification.NotificationStatus status,
+                          @Param("now") LocalDateTime now,
+                          Pageable pageable);
+
+    // Nhận một mail để gửi: đẩy nextAttemptAt tới hết lease; 0 nếu node khác đã nhận trước
+    @Modifying
+    @Query("UPDATE Notification n SET n.nextAttemptAt = :leaseUntil, n.attempts = n.attempts + 1 " +
+           "WHERE n.id = :id AND n.status = :status AND (n.nextAttemptAt IS NULL OR n.nextAttemptAt <= :now)")
+    int claim(@Param("id") Long id,
+              @Param("status") Notification.NotificationStatus status,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Số mail của chiến dịch theo trạng thái: [status, count]
+    @Query("SELECT n.status, COUNT(n) FROM Notification n WHERE n.campaign.id = :campaignId GROUP BY n.status")
+    List<Object[]> countByCampaignGroupByStatus(@Param("campaignId") Long campaignId);
+
+    // Huỷ chiến dịch: mail chưa gửi chuyển FAILED để worker bỏ qua
+    @Modifying
+    @Query("UPDATE Notification n SET n.status = :failed, n.nextAttemptAt = NULL, n.lastError = :reason " +
+           "WHERE n.campaign.id = :campaignId AND n.status = :queued")
+    int failQueuedByCampaign(@Param("campaignId") Long campaignId,
+                             @Param("queued") Notification.NotificationStatus queued,
+                             @Param("failed") Notification.NotificationStatus failed,
+                             @Param("reason") String reason);
+}
@@ -0,0 +1,13 @@
+package com.larose.repository;
+
+import com.larose.entity.NotificationTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationTemplateRepository extends JpaRepository<NotificationTemplate, Integer> {
+
+    List<NotificationTemplate> findByChannel(NotificationTemplate.Channel channel);
+}
@@ -0,0 +1,44 @@
+package com.larose.repository;
+
+import com.larose.entity.ReportsCache;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ReportsCacheRepository extends JpaRepository<ReportsCache, Long> {
+
+    Optional<ReportsCache> findByName(String name);
+
+    // Ghi đè theo name (unique) để các request song song không đụng nhau
+    @Modifying
+    @Query(value = """
+            INSERT INTO reports_cache (name, payload, generated_at, window_start, window_end)
+            VALUES (:name, :payload, :generatedAt, :windowStart, :windowEnd)
+            ON DUPLICATE KEY UPDATE payload = VALUES(payload),
+                                    generated_at = VALUES(generated_at),
+                                    window_start = VALUES(window_start),
+                                    window_end = VALUES(window_end)
+            """, nativeQuery = true)
+    int upsert(@Param("name") String name,
+               @Param("payload") String payload,
+               @Param("generatedAt") LocalDateTime generatedAt,
+               @Param("windowStart") LocalDate windowStart,
+               @Param("windowEnd") LocalDate windowEnd);
+
+    // Xoá các báo cáo có khoảng ngày giao với [from, to] (và các báo cáo không gắn khoảng ngày)
+    @Modifying
+    @Query("DELETE FROM ReportsCache r WHERE r.windowStart IS NULL OR r.windowEnd IS NULL " +
+           "OR (r.windowStart <= :to AND r.windowEnd >= :from)")
+    int deleteOverlapping(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM ReportsCache r WHERE r.generatedAt < :before")
+    int deleteGeneratedBefore(@Param("before") LocalDateTime before);
+}
@@ -5,11 +5,13 @@ package com.larose.repository;
 import com.larose.entity.Review;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,16 +20,37 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     Page<Review> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     @Query("SELECT r FROM Review r WHERE r.user.id = :userId AND r.status = :status ORDER BY r.createdAt DESC")
     Page<Review> findByUserIdAndStatusOrderByCreatedAtDesc(@Param("userId") Long userId,
                                                            @Param("status") Review.ReviewStatus status,
                                                            Pageable pageable);
 
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     List<Review> findByRoomIdAndStatusOrderByCreatedAtDesc(Long roomId, Review.ReviewStatus status);
 
+    // Feed review theo phòng, phân trang keyset trên (createdAt, id) giảm dần
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
+    @Query("SELECT r FROM Review r WHERE r.room.id = :roomId AND r.status = :status " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Review> findRoomFeed(@Param("roomId") Long roomId,
+                              @Param("status") Review.ReviewStatus status,
+                              Pageable pageable);
+
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
+    @Query("SELECT r FROM Review r WHERE r.room.id = :roomId AND r.status = :status " +
+           "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Review> findRoomFeedAfter(@Param("roomId") Long roomId,
+                                   @Param("status") Review.ReviewStatus status,
+                                   @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") Long id,
+                                   Pageable pageable);
+
     boolean existsByBookingIdAndUserId(Long bookingId, Long userId);
     
     // Tìm review theo bookingId
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     Optional<Review> findByBookingId(Long bookingId);
 
     // --- PHẦN THÊM MỚI ---
@@ -35,16 +58,20 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
      * Tìm tất cả các đánh giá theo trạng thái (ví dụ: 'published', 'pending').
      * Cần thiết cho phương thức getAllReviews() trong ReviewService.
      */
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     List<Review> findByStatus(Review.ReviewStatus status);
     
     // --- KẾT THÚC PHẦN THÊM MỚI ---
     
     // Bạn cũng có thể thêm phương thức này nếu cần lấy cả Page và Status
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     Page<Review> findByStatus(Review.ReviewStatus status, Pageable pageable);
     
     // Lấy tất cả reviews với sorting theo createdAt DESC
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     Page<Review> findAllByOrderByCreatedAtDesc(Pageable pageable);
     
     // Lấy reviews theo status với sorting theo createdAt DESC
+    @EntityGraph(attributePaths = {"booking", "room", "user"})
     Page<Review> findByStatusOrderByCreatedAtDesc(Review.ReviewStatus status, Pageable pageable);
 }
\ No newline at end of file
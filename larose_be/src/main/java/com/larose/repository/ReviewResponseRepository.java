@@ -1,12 +1,21 @@
 package com.larose.repository;
 
 import com.larose.entity.ReviewResponse;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReviewResponseRepository extends JpaRepository<ReviewResponse, Long> {
     List<ReviewResponse> findByReviewIdOrderByCreatedAtDesc(Long reviewId);
+
+    // Phản hồi của cả một trang review trong một query, kèm người phản hồi
+    @EntityGraph(attributePaths = {"responder"})
+    @Query("SELECT rr FROM ReviewResponse rr WHERE rr.review.id IN :reviewIds ORDER BY rr.createdAt DESC, rr.id DESC")
+    List<ReviewResponse> findByReviewIdIn(@Param("reviewIds") Collection<Long> reviewIds);
 }
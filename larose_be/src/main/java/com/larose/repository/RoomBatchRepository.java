@@ -0,0 +1,13 @@
+package com.larose.repository;
+
+import com.larose.entity.Room;
+
+import java.util.List;
+
+/**
+ * Fragment cho RoomRepository: insert nhiều phòng bằng một JDBC batch
+ * (IDENTITY id khiến Hibernate không batch được saveAll).
+ */
+public interface RoomBatchRepository {
+    int batchInsert(List<Room> rooms);
+}
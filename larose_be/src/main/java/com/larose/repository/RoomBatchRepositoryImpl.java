@@ -0,0 +1,73 @@
+package com.larose.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larose.entity.Room;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class RoomBatchRepositoryImpl implements RoomBatchRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO rooms (code, room_type_id, title, description, capacity, price, status, amenities, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public int batchInsert(List<Room> rooms) {
+        if (rooms.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        // Với rewriteBatchedStatements=true, MySQL driver gộp cả batch thành một câu INSERT nhiều dòng
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, rooms, rooms.size(), (ps, room) -> {
+            ps.setString(1, room.getCode());
+            ps.setLong(2, room.getRoomType().getId());
+            ps.setString(3, room.getTitle());
+            ps.setString(4, room.getDescription());
+            if (room.getCapacity() != null) {
+                ps.setInt(5, room.getCapacity());
+            } else {
+                ps.setNull(5, Types.INTEGER);
+            }
+            ps.setBigDecimal(6, room.getPrice());
+            ps.setString(7, room.getStatus().name());
+            ps.setString(8, toJson(room));
+            ps.setTimestamp(9, now);
+            ps.setTimestamp(10, now);
+        });
+        return rooms.size() - countFailures(counts);
+    }
+
+    private String toJson(Room room) {
+        if (room.getAmenities() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(room.getAmenities());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid amenities for room " + room.getCode());
+        }
+    }
+
+    private static int countFailures(int[][] counts) {
+        int failures = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == java.sql.Statement.EXECUTE_FAILED) {
+                    failures++;
+                }
+            }
+        }
+        return failures;
+    }
+}
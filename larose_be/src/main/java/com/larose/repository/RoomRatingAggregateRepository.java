@@ -0,0 +1,39 @@
+package com.larose.repository;
+
+import com.larose.entity.RoomRatingAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RoomRatingAggregateRepository extends JpaRepository<RoomRatingAggregate, Long> {
+
+    List<RoomRatingAggregate> findByRoomIdIn(Collection<Long> roomIds);
+
+    // Cộng dồn delta trong DB (không đọc rồi ghi) để các review song song không ghi đè nhau
+    @Modifying
+    @Query(value = """
+            INSERT INTO room_rating_aggregates (room_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5)
+            VALUES (:roomId, :count, :sum, :stars1, :stars2, :stars3, :stars4, :stars5)
+            ON DUPLICATE KEY UPDATE review_count = review_count + VALUES(review_count),
+                                    rating_sum = rating_sum + VALUES(rating_sum),
+                                    stars_1 = stars_1 + VALUES(stars_1),
+                                    stars_2 = stars_2 + VALUES(stars_2),
+                                    stars_3 = stars_3 + VALUES(stars_3),
+                                    stars_4 = stars_4 + VALUES(stars_4),
+                                    stars_5 = stars_5 + VALUES(stars_5)
+            """, nativeQuery = true)
+    int addDelta(@Param("roomId") Long roomId,
+                 @Param("count") int count,
+                 @Param("sum") int sum,
+                 @Param("stars1") int stars1,
+                 @Param("stars2") int stars2,
+                 @Param("stars3") int stars3,
+                 @Param("stars4") int stars4,
+                 @Param("stars5") int stars5);
+}
@@ -1,18 +1,23 @@
 package com.larose.repository;
 
 import com.larose.dto.projection.RoomsProjection;
-import com.larose.dto.search.RoomSearchDto;
 import com.larose.entity.Room;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RoomRepository extends JpaRepository<Room, Long> {
+public interface RoomRepository extends JpaRepository<Room, Long>, RoomBatchRepository {
+
+	// Dữ liệu dựng index danh mục phòng: id, mã, tên, mô tả, giá, sức chứa, ngày tạo, loại phòng
+	@Query("SELECT r.id, r.code, r.title, r.description, r.price, r.capacity, r.createdAt, t.id, t.name " +
+	       "FROM Room r LEFT JOIN r.roomType t WHERE r.deletedAt IS NULL")
+	List<Object[]> findCatalogIndexRows();
 
 	@Query(value = """
 		    SELECT 
@@ -31,38 +36,20 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
 		        t.id as type_id,
 		        t.name as type_name,
 		        t.short_description as type_short_description,
-		        t.base_price as base_price
+		        t.base_price as base_price,
+		    
+		        a.review_count as review_count,
+		        ROUND(a.rating_sum / a.review_count, 1) as average_rating
 		    FROM rooms r
 		    LEFT JOIN room_types t ON r.room_type_id = t.id
-		    WHERE r.deleted_at IS NULL
-		      AND (:#{#request.minPrice} IS NULL OR r.price >= :#{#request.minPrice})
-		      AND (:#{#request.maxPrice} IS NULL OR r.price <= :#{#request.maxPrice})
-		      AND (:#{#request.typeId} IS NULL OR t.id = :#{#request.typeId})
-		      AND (:#{#request.capacity} IS NULL OR r.capacity = :#{#request.capacity})
-		      AND (:#{#request.keyword} IS NULL OR 
-		           LOWER(r.code) LIKE LOWER(CONCAT('%', :#{#request.keyword}, '%')) OR
-		           LOWER(r.title) LIKE LOWER(CONCAT('%', :#{#request.keyword}, '%')) OR
-		           LOWER(r.description) LIKE LOWER(CONCAT('%', :#{#request.keyword}, '%')))
-		    ORDER BY r.created_at DESC
-		    """, 
-		    countQuery = """
-		        SELECT COUNT(*)
-		        FROM rooms r
-		        LEFT JOIN room_types t ON r.room_type_id = t.id
-		        WHERE r.deleted_at IS NULL
-		          AND (:#{#request.minPrice} IS NULL OR r.price >= :#{#request.minPrice})
-		          AND (:#{#request.maxPrice} IS NULL OR r.price <= :#{#request.maxPrice})
-		          AND (:#{#request.typeId} IS NULL OR t.id = :#{#request.typeId})
-		          AND (:#{#request.capacity} IS NULL OR r.capacity = :#{#request.capacity})
-		          AND (:#{#request.keyword} IS NULL OR 
-		               LOWER(r.code) LIKE LOWER(CONCAT('%', :#{#request.keyword}, '%')) OR
-		               LOWER(r.title) LIKE LOWER(CONCAT('%', :#{#request.keyword}, '%')) OR
-		               LOWER(r.description) LIKE LOWER(CONCAT('%', :#{#request.keyword}, '%')))
-		        """,
-		    nativeQuery = true)
-		Page<RoomsProjection> getRooms(RoomSearchDto request, Pageable pageable);
+		    LEFT JOIN room_rating_aggregates a ON a.room_id = r.id
+		    WHERE r.id IN (:ids)
+		    """, nativeQuery = true)
+	List<RoomsProjection> getRoomsByIds(@Param("ids") Collection<Long> ids);
+
     Optional<Room> findByCode(String code);
 
+    // Chỉ dùng để khởi tạo sequence mã phòng lần đầu
     @Query(value = """
             SELECT * FROM rooms ORDER BY rooms.id DESC LIMIT 1
             """, nativeQuery = true)
@@ -0,0 +1,21 @@
+package com.larose.repository;
+
+import com.larose.dto.projection.TransactionSearchRow;
+import com.larose.dto.search.TransactionSearchDto;
+
+import java.util.List;
+
+/**
+ * Fragment cho TransactionRepository: tìm transaction theo điều kiện ghép động (Criteria API),
+ * lọc / sắp xếp / phân trang trong DB và trả thẳng projection, không load entity Booking.
+ */
+public interface TransactionSearchRepository {
+
+    // Keyset: tối đa limit dòng sau vị trí afterValue/afterId của criteria
+    List<TransactionSearchRow> search(TransactionSearchDto criteria, int limit);
+
+    // Offset: cho API phân trang theo số trang cũ
+    List<TransactionSearchRow> search(TransactionSearchDto criteria, int offset, int limit);
+
+    long count(TransactionSearchDto criteria);
+}
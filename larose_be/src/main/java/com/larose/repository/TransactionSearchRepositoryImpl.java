@@ -0,0 +1,119 @@
+package com.larose.repository;
+
+import com.larose.dto.projection.TransactionSearchRow;
+import com.larose.dto.search.TransactionSearchDto;
+import com.larose.entity.Booking;
+import com.larose.entity.Room;
+import com.larose.entity.RoomType;
+import com.larose.entity.Transaction;
+import com.larose.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class TransactionSearchRepositoryImpl implements TransactionSearchRepository {
+
+    private static final Set<String> SORTABLE = Set.of("createdAt", "amount", "id");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionSearchRow> search(TransactionSearchDto criteria, int limit) {
+        return query(criteria, true).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<TransactionSearchRow> search(TransactionSearchDto criteria, int offset, int limit) {
+        return query(criteria, false).setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long count(TransactionSearchDto criteria) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Transaction> t = query.from(Transaction.class);
+        query.select(cb.count(t)).where(filters(cb, t, criteria).toArray(new Predicate[0]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private TypedQuery<TransactionSearchRow> query(TransactionSearchDto criteria, boolean keyset) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionSearchRow> query = cb.createQuery(TransactionSearchRow.class);
+        Root<Transaction> t = query.from(Transaction.class);
+        Join<Transaction, Booking> b = t.join("booking", JoinType.LEFT);
+        Join<Booking, User> u = b.join("user", JoinType.LEFT);
+        Join<Booking, Room> r = b.join("room", JoinType.LEFT);
+        Join<Booking, RoomType> rt = b.join("roomType", JoinType.LEFT);
+
+        query.select(cb.construct(TransactionSearchRow.class,
+                t.get("id"), t.get("user").get("id"), t.get("provider"), t.get("providerTransactionId"),
+                t.get("amount"), t.get("currency"), t.get("status"), t.get("type"), t.get("metadata"),
+                t.get("createdAt"), t.get("updatedAt"),
+                b.get("id"), b.get("bookingCode"), b.get("checkIn"), b.get("checkOut"), b.get("nights"),
+                b.get("guests"), b.get("priceTotal"), b.get("status"), b.get("createdAt"),
+                u.get("id"), u.get("email"), u.get("fullName"),
+                r.get("id"), r.get("title"),
+                rt.get("id"), rt.get("name")));
+
+        String sortBy = SORTABLE.contains(criteria.getSortBy()) ? criteria.getSortBy() : "createdAt";
+        boolean ascending = criteria.isAscending();
+        Path<Comparable<Object>> sortKey = t.get(sortBy);
+        Path<Long> id = t.get("id");
+
+        List<Predicate> predicates = filters(cb, t, criteria);
+        if (keyset && criteria.getAfterId() != null) {
+            predicates.add(after(cb, sortBy, sortKey, id, criteria, ascending));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+        if ("id".equals(sortBy)) {
+            query.orderBy(ascending ? cb.asc(id) : cb.desc(id));
+        } else {
+            query.orderBy(ascending ? cb.asc(sortKey) : cb.desc(sortKey), ascending ? cb.asc(id) : cb.desc(id));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    private static List<Predicate> filters(CriteriaBuilder cb, Root<Transaction> t, TransactionSearchDto criteria) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.getStatus() != null) {
+            predicates.add(cb.equal(t.get("status"), criteria.getStatus()));
+        }
+        if (criteria.getProvider() != null && !criteria.getProvider().isBlank()) {
+            // Collation của cột không phân biệt hoa thường, so sánh bằng vẫn dùng được index
+            predicates.add(cb.equal(t.get("provider"), criteria.getProvider().trim()));
+        }
+        if (criteria.getCreatedFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(t.get("createdAt"), criteria.getCreatedFrom()));
+        }
+        if (criteria.getCreatedTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(t.get("createdAt"), criteria.getCreatedTo()));
+        }
+        if (criteria.getMinAmount() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(t.get("amount"), criteria.getMinAmount()));
+        }
+        if (criteria.getMaxAmount() != null) {
+            predicates.add(cb.lessThanOrEqualTo(t.get("amount"), criteria.getMaxAmount()));
+        }
+        return predicates;
+    }
+
+    // (key, id) đứng sau (afterValue, afterId) theo chiều sắp xếp
+    @SuppressWarnings("unchecked")
+    static Predicate after(CriteriaBuilder cb, String sortBy, Path<Comparable<Object>> sortKey, Path<Long> id,
+                                   TransactionSearchDto criteria, boolean ascending) {
+        Long afterId = criteria.getAfterId();
+        Predicate idAfter = ascending ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId);
+        if ("id".equals(sortBy) || criteria.getAfterValue() == null) {
+            return idAfter;
+        }
+        Comparable<Object> value = (Comparable<Object>) criteria.getAfterValue();
+        Predicate keyAfter = ascending ? cb.greaterThan(sortKey, value) : cb.lessThan(sortKey, value);
+        return cb.or(keyAfter, cb.and(cb.equal(sortKey, value), idAfter));
+    }
+}
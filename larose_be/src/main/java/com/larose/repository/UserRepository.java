@@ -3,9 +3,11 @@ package com.larose.repository;
 import com.larose.entity.User;
 import com.larose.entity.enums.OAuthProvider;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -55,4 +57,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findDeletedUsers();
 
     boolean existsByEmailAndEmailVerifiedTrue(String email);
+
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.email = :email")
+    Optional<Integer> findTokenVersionByEmail(@Param("email") String email);
+
+    // Thu hồi mọi JWT đã phát hành của user (khoá tài khoản, đổi role, đổi mật khẩu)
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE users SET token_version = token_version + 1, token_version_changed_at = :changedAt
+            WHERE email = :email
+            """, nativeQuery = true)
+    int incrementTokenVersion(@Param("email") String email, @Param("changedAt") LocalDateTime changedAt);
+
+    // Dòng (email, token_version) của các user đã từng bị thu hồi token, nạp lúc khởi động
+    @Query(value = "SELECT email, token_version FROM users WHERE token_version > 0", nativeQuery = true)
+    List<Object[]> findRevokedTokenVersions();
+
+    // Dòng (email, token_version) thay đổi từ :since, dùng cho poll giữa các node
+    @Query(value = "SELECT email, token_version FROM users WHERE token_version_changed_at >= :since", nativeQuery = true)
+    List<Object[]> findTokenVersionsChangedSince(@Param("since") LocalDateTime since);
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ public class AdditionalServiceService {
     private final ServiceRepository serviceRepository;
     private final BookingServiceRepository bookingServiceRepository;
     private final BookingRepository bookingRepository;
+    private final RevenueRollupService revenueRollupService;
 
     /**
      * Get all active services
@@ -89,6 +90,7 @@ public class AdditionalServiceService {
 
         // Calculate total price (done automatically by @PrePersist)
         BookingService saved = bookingServiceRepository.save(bookingService);
+        refreshRevenue(booking);
 
         return convertToBookingServiceDTO(saved);
     }
@@ -109,6 +111,7 @@ public class AdditionalServiceService {
         bookingService.setTotalPrice(bookingService.getPricePerUnit().multiply(BigDecimal.valueOf(quantity)));
 
         BookingService updated = bookingServiceRepository.save(bookingService);
+        refreshRevenue(updated.getBooking());
         return convertToBookingServiceDTO(updated);
     }
 
@@ -117,12 +120,14 @@ public class AdditionalServiceService {
      */
     @Transactional
     public void removeServiceFromBooking(Long bookingServiceId) {
-        if (!bookingServiceRepository.existsById(bookingServiceId)) {
-            throw new IllegalArgumentException("Booking service not found with id: " + bookingServiceId);
-        }
-        bookingServiceRepository.deleteById(bookingServiceId);
+        BookingService bookingService = bookingServiceRepository.findById(bookingServiceId)
+                .orElseThrow(() -> new IllegalArgumentException("Booking service not found with id: " + bookingServiceId));
+        Booking booking = bookingService.getBooking();
+        bookingServiceRepository.delete(bookingService);
+        refreshRevenue(booking);
     }
 
+
     /**
      * Create a new service (for admin)
      */
@@ -225,5 +230,11 @@ public class AdditionalServiceService {
 
         return dto;
     }
-}
 
+    // Dịch vụ của booking đã trả phòng nằm trong daily_revenue
+    private void refreshRevenue(Booking booking) {
+        if (booking != null && booking.getStatus() == Booking.Status.checked_out) {
+            revenueRollupService.onBookingChanged(booking);
+        }
+    }
+}
@@ -22,6 +22,9 @@ public class AdminUserService {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
+    private final PrincipalCacheService principalCacheService;
+    private final TokenRevocationService tokenRevocationService;
+    private final BookingSearchIndexService bookingSearchIndexService;
 
     @Transactional(readOnly = true)
     public Page<UserDTO> getUsersWithFilters(String search, Boolean isActive, Boolean emailVerified, String role, Pageable pageable) {
@@ -42,12 +45,19 @@ public class AdminUserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + id));
 
+        // Email / trạng thái active có thể đổi: bỏ principal đã cache theo email cũ
+        principalCacheService.invalidate(user.getEmail());
+
         if (request.getEmail() != null) {
             // Kiểm tra email trùng
             if (!user.getEmail().equals(request.getEmail()) &&
                     userRepository.existsByEmail(request.getEmail())) {
                 throw new IllegalArgumentException("Email already exists");
             }
+            if (!user.getEmail().equals(request.getEmail())) {
+                // Token cũ mang email cũ làm subject
+                tokenRevocationService.revokeUser(user.getEmail());
+            }
             user.setEmail(request.getEmail());
         }
 
@@ -61,6 +71,9 @@ public class AdminUserService {
 
         if (request.getIsActive() != null) {
             user.setIsActive(request.getIsActive());
+            if (!request.getIsActive()) {
+                tokenRevocationService.revokeUser(user.getEmail());
+            }
         }
 
         if (request.getEmailVerified() != null) {
@@ -73,6 +86,7 @@ public class AdminUserService {
         }
 
         User updatedUser = userRepository.save(user);
+        bookingSearchIndexService.indexUser(updatedUser);
         return convertToUserDTO(updatedUser);
     }
 
@@ -83,6 +97,7 @@ public class AdminUserService {
         user.setDeletedAt(LocalDateTime.now());
         user.setIsActive(false);
         userRepository.save(user);
+        tokenRevocationService.revokeUser(user.getEmail());
     }
 
     public UserDTO assignRoleToUser(Long userId, String roleName) {
@@ -94,6 +109,7 @@ public class AdminUserService {
 
         user.getRoles().add(role);
         User updatedUser = userRepository.save(user);
+        tokenRevocationService.revokeUser(user.getEmail());
         return convertToUserDTO(updatedUser);
     }
 
@@ -106,6 +122,7 @@ public class AdminUserService {
 
         user.getRoles().remove(role);
         User updatedUser = userRepository.save(user);
+        tokenRevocationService.revokeUser(user.getEmail());
         return convertToUserDTO(updatedUser);
     }
 
@@ -125,6 +142,7 @@ public class AdminUserService {
 
         user.setIsActive(false);
         User updatedUser = userRepository.save(user);
+        tokenRevocationService.revokeUser(user.getEmail());
         return convertToUserDTO(updatedUser);
     }
 
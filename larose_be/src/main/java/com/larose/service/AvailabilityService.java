@@ -0,0 +1,272 @@
+package com.larose.service;
+
+import com.larose.entity.AvailabilityCalendar;
+import com.larose.entity.Booking;
+import com.larose.repository.AvailabilityCalendarRepository;
+import com.larose.repository.BookingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * In-memory availability index: mỗi phòng giữ một BitSet, mỗi bit là một đêm đã được đặt.
+ * Index được dựng lúc khởi động từ bảng availability_calendar (và các booking còn hiệu lực),
+ * sau đó chỉ được cập nhật khi transaction ghi booking đã commit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AvailabilityService {
+
+    // Bit 0 ứng với đêm 2020-01-01, các ngày trước mốc này bị bỏ qua
+    private static final long ORIGIN_EPOCH_DAY = LocalDate.of(2020, 1, 1).toEpochDay();
+
+    private final AvailabilityCalendarRepository availabilityCalendarRepository;
+    private final BookingRepository bookingRepository;
+
+    private final Map<Long, BitSet> bookedNights = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadIndex() {
+        bookedNights.clear();
+        for (Object[] row : availabilityCalendarRepository.findAllBookedNights()) {
+            markNight((Long) row[0], (LocalDate) row[1]);
+        }
+        // Booking cũ chưa có dòng trong availability_calendar
+        for (Object[] row : bookingRepository.findOccupiedRanges()) {
+            mark((Long) row[0], (LocalDate) row[1], (LocalDate) row[2], true);
+        }
+        log.info("Availability index loaded for {} rooms", bookedNights.size());
+    }
+
+    /**
+     * Phòng còn trống cho toàn bộ các đêm [checkIn, checkOut) hay không.
+     */
+    public boolean isAvailable(Long roomId, LocalDate checkIn, LocalDate checkOut) {
+        BitSet bits = bookedNights.get(roomId);
+        if (bits == null) {
+            return true;
+        }
+        int from = toIndex(checkIn);
+        int to = toEndIndex(checkIn, checkOut);
+        synchronized (bits) {
+            return isFree(bits, from, to);
+        }
+    }
+
+    /**
+     * Lọc ra các phòng còn trống cho cả kỳ lưu trú, giữ nguyên thứ tự đầu vào.
+     */
+    public List<Long> filterAvailable(Collection<Long> roomIds, LocalDate checkIn, LocalDate checkOut) {
+        int from = toIndex(checkIn);
+        int to = toEndIndex(checkIn, checkOut);
+        List<Long> result = new ArrayList<>(roomIds.size());
+        for (Long roomId : roomIds) {
+            BitSet bits = bookedNights.get(roomId);
+            if (bits == null) {
+                result.add(roomId);
+                continue;
+            }
+            synchronized (bits) {
+                if (isFree(bits, from, to)) {
+                    result.add(roomId);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Số phòng có booking chạm vào khoảng [minDate, maxDate], cùng ngữ nghĩa với query cũ
+     * (check_in <= maxDate AND check_out >= minDate): booking trả phòng đúng ngày minDate vẫn được tính,
+     * nên bắt đầu quét từ đêm minDate - 1.
+     */
+    public long countBookedRooms(LocalDate minDate, LocalDate maxDate) {
+        int from = toIndex(minDate.minusDays(1));
+        int to = toIndex(maxDate) + 1;
+        long count = 0;
+        for (BitSet bits : bookedNights.values()) {
+            synchronized (bits) {
+                if (!isFree(bits, from, to)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Các đêm đã được đặt của một phòng trong khoảng [from, to).
+     */
+    public List<LocalDate> getBookedDates(Long roomId, LocalDate from, LocalDate to) {
+        BitSet bits = bookedNights.get(roomId);
+        if (bits == null) {
+            return Collections.emptyList();
+        }
+        int start = toIndex(from);
+        int end = toEndIndex(from, to);
+        List<LocalDate> dates = new ArrayList<>();
+        synchronized (bits) {
+            for (int i = bits.nextSetBit(start); i >= 0 && i < end; i = bits.nextSetBit(i + 1)) {
+                dates.add(LocalDate.ofEpochDay(ORIGIN_EPOCH_DAY + i));
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Các khoảng đã được đặt của một phòng tính từ đêm {@code from}: mỗi chuỗi đêm liền nhau là một khoảng
+     * [checkIn, checkOut), checkOut là ngày sau đêm cuối. Hai booking nối tiếp nhau được gộp thành một khoảng.
+     */
+    public List<BookedRange> getBookedRanges(Long roomId, LocalDate from) {
+        BitSet bits = bookedNights.get(roomId);
+        if (bits == null) {
+            return Collections.emptyList();
+        }
+        List<BookedRange> ranges = new ArrayList<>();
+        synchronized (bits) {
+            for (int start = bits.nextSetBit(toIndex(from)); start >= 0; start = bits.nextSetBit(start)) {
+                int end = bits.nextClearBit(start);
+                ranges.add(new BookedRange(LocalDate.ofEpochDay(ORIGIN_EPOCH_DAY + start),
+                        LocalDate.ofEpochDay(ORIGIN_EPOCH_DAY + end)));
+                start = end;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Giữ phòng cho booking: kiểm tra trùng lịch, ghi availability_calendar trong transaction hiện tại
+     * và chỉ bật bit trong index sau khi commit.
+     */
+    @Transactional
+    public void reserve(Booking booking) {
+        reserve(booking, null, null, null);
+    }
+
+    /**
+     * Như {@link #reserve(Booking)} nhưng bỏ qua các đêm booking đang giữ trước khi sửa
+     * (previousRoomId, previousCheckIn, previousCheckOut) khi kiểm tra trùng lịch.
+     */
+    @Transactional
+    public void reserve(Booking booking, Long previousRoomId, LocalDate previousCheckIn, LocalDate previousCheckOut) {
+        if (booking.getRoom() == null || booking.getCheckIn() == null || booking.getCheckOut() == null) {
+            return;
+        }
+        Long roomId = booking.getRoom().getId();
+        LocalDate checkIn = booking.getCheckIn();
+        LocalDate checkOut = booking.getCheckOut();
+
+        if (hasConflict(roomId, checkIn, checkOut, previousRoomId, previousCheckIn, previousCheckOut)) {
+            throw new IllegalArgumentException("Phòng đã được đặt trong khoảng thời gian này");
+        }
+
+        List<AvailabilityCalendar> nights = new ArrayList<>();
+        for (LocalDate dt = checkIn; dt.isBefore(checkOut) || dt.equals(checkIn); dt = dt.plusDays(1)) {
+            AvailabilityCalendar night = new AvailabilityCalendar();
+            night.setRoom(booking.getRoom());
+            night.setBooking(booking);
+            night.setDt(dt);
+            night.setIsBooked(true);
+            nights.add(night);
+        }
+        availabilityCalendarRepository.saveAll(nights);
+
+        afterCommit(() -> mark(roomId, checkIn, checkOut, true));
+    }
+
+    /**
+     * Trả phòng cho các đêm booking đang giữ (huỷ, no-show hoặc trước khi đổi lịch).
+     */
+    @Transactional
+    public void release(Booking booking) {
+        release(booking.getId(),
+                booking.getRoom() != null ? booking.getRoom().getId() : null,
+                booking.getCheckIn(),
+                booking.getCheckOut());
+    }
+
+    @Transactional
+    public void release(Long bookingId, Long roomId, LocalDate checkIn, LocalDate checkOut) {
+        if (bookingId != null) {
+            availabilityCalendarRepository.deleteByBookingId(bookingId);
+        }
+        if (roomId == null || checkIn == null || checkOut == null) {
+            return;
+        }
+        afterCommit(() -> mark(roomId, checkIn, checkOut, false));
+    }
+
+    private boolean hasConflict(Long roomId, LocalDate checkIn, LocalDate checkOut,
+                                Long previousRoomId, LocalDate previousCheckIn, LocalDate previousCheckOut) {
+        BitSet bits = bookedNights.get(roomId);
+        if (bits == null) {
+            return false;
+        }
+        int from = toIndex(checkIn);
+        int to = toEndIndex(checkIn, checkOut);
+        BitSet candidate;
+        synchronized (bits) {
+            candidate = bits.get(from, to);
+        }
+        if (roomId.equals(previousRoomId) && previousCheckIn != null && previousCheckOut != null) {
+            // Chuyển khoảng cũ về hệ toạ độ bắt đầu từ "from" rồi xoá đi
+            int prevFrom = Math.max(toIndex(previousCheckIn) - from, 0);
+            int prevTo = Math.min(toEndIndex(previousCheckIn, previousCheckOut) - from, to - from);
+            if (prevFrom < prevTo) {
+                candidate.clear(prevFrom, prevTo);
+            }
+        }
+        return !candidate.isEmpty();
+    }
+
+    private void mark(Long roomId, LocalDate checkIn, LocalDate checkOut, boolean booked) {
+        if (roomId == null || checkIn == null || checkOut == null) {
+            return;
+        }
+        int from = toIndex(checkIn);
+        int to = toEndIndex(checkIn, checkOut);
+        BitSet bits = bookedNights.computeIfAbsent(roomId, id -> new BitSet());
+        synchronized (bits) {
+            bits.set(from, to, booked);
+        }
+    }
+
+    private void markNight(Long roomId, LocalDate dt) {
+        if (roomId == null || dt == null) {
+            return;
+        }
+        BitSet bits = bookedNights.computeIfAbsent(roomId, id -> new BitSet());
+        synchronized (bits) {
+            bits.set(toIndex(dt));
+        }
+    }
+
+    private static boolean isFree(BitSet bits, int from, int to) {
+        int next = bits.nextSetBit(from);
+        return next < 0 || next >= to;
+    }
+
+    private static int toIndex(LocalDate date) {
+        return (int) Math.max(date.toEpochDay() - ORIGIN_EPOCH_DAY, 0);
+    }
+
+    // Ngày trả phòng không tính là một đêm; booking cùng ngày vẫn giữ ít nhất một đêm
+    private static int toEndIndex(LocalDate checkIn, LocalDate checkOut) {
+        int from = toIndex(checkIn);
+        return Math.max(toIndex(checkOut), from + 1);
+    }
+
+    public record BookedRange(LocalDate checkIn, LocalDate checkOut) {
+    }
+}
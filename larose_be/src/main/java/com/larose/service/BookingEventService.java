@@ -0,0 +1,249 @@
+package com.larose.service;
+
+import com.larose.dto.BookingEventDTO;
+import com.larose.entity.Booking;
+import com.larose.entity.BookingEvent;
+import com.larose.repository.BookingEventBatchRepository.EventRow;
+import com.larose.repository.BookingEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Nhật ký chuyển trạng thái booking (booking_events), chỉ thêm không sửa.
+ * Request chỉ đưa sự kiện vào hàng đợi trong bộ nhớ sau khi transaction commit (rollback thì không có
+ * sự kiện); một thread nền ghi theo lô bằng JDBC batch, nên cập nhật trạng thái không phải chờ thêm
+ * một câu INSERT. Sự kiện chỉ rời hàng đợi sau khi đã ghi xong, nên timeline đọc DB rồi ghép thêm
+ * các sự kiện còn trong hàng đợi mà không phải chờ thread ghi. Sự kiện còn trong hàng đợi được ghi nốt
+ * khi ứng dụng tắt bình thường.
+ */
+@Slf4j
+@Service
+public class BookingEventService {
+
+    private final BookingEventRepository bookingEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long flushMillis;
+    private final BlockingQueue<EventRow> pending;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "booking-event-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Đã có một lượt ghi đang chờ chạy thì không xếp thêm
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    public BookingEventService(BookingEventRepository bookingEventRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.booking-events.batch-size:200}") int batchSize,
+                               @Value("${app.booking-events.flush-ms:1000}") long flushMillis,
+                               @Value("${app.booking-events.queue-capacity:10000}") int queueCapacity) {
+        this.bookingEventRepository = bookingEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushMillis = flushMillis;
+        this.pending = new LinkedBlockingQueue<>(Math.max(this.batchSize, queueCapacity));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        writer.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Ghi nhận booking chuyển từ {@code from} sang {@code to} (from = null khi tạo mới).
+     * Người thay đổi là user đang đăng nhập của request hiện tại.
+     */
+    public void record(Booking booking, Booking.Status from, Booking.Status to, String reason) {
+        if (booking == null || booking.getId() == null || from == to) {
+            return;
+        }
+        EventRow event = new EventRow(booking.getId(),
+                from != null ? from.name() : null,
+                to != null ? to.name() : null,
+                currentUserEmail(),
+                reason,
+                // Làm tròn xuống giây như cột DATETIME, để timeline nhận ra sự kiện đã được ghi
+                LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        afterCommit(() -> enqueue(event));
+    }
+
+    /**
+     * Lịch sử trạng thái của booking, cũ trước mới sau, gồm cả các sự kiện đang chờ ghi.
+     */
+    public List<BookingEventDTO> getTimeline(Long bookingId) {
+        // Lấy hàng đợi trước khi đọc DB: sự kiện ghi xong giữa hai bước có ở cả hai nơi (bỏ bản trùng),
+        // không có sự kiện nào lọt khỏi cả hai
+        List<EventRow> unwritten = pending.stream()
+                .filter(event -> bookingId.equals(event.bookingId()))
+                .toList();
+        List<BookingEventDTO> timeline = new ArrayList<>();
+        Set<String> stored = new HashSet<>();
+        for (BookingEvent event : bookingEventRepository.findByBookingIdOrderByCreatedAtAscIdAsc(bookingId)) {
+            timeline.add(toDTO(event));
+            stored.add(key(event.getCreatedAt(), event.getFromStatus(), event.getToStatus()));
+        }
+        for (EventRow event : unwritten) {
+            if (stored.add(key(event.createdAt(), event.fromStatus(), event.toStatus()))) {
+                timeline.add(toDTO(event));
+            }
+        }
+        timeline.sort(Comparator.comparing(BookingEventDTO::getCreatedAt,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        return timeline;
+    }
+
+    private void enqueue(EventRow event) {
+        if (!pending.offer(event)) {
+            // Hàng đợi đầy (DB chậm / lỗi kéo dài): không ghi trên thread của request
+            log.error("Booking event queue full, dropping event for booking {}", event.bookingId());
+            return;
+        }
+        if (pending.size() >= batchSize && flushPending.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flushSafely);
+            } catch (RejectedExecutionException e) {
+                flushPending.set(false);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        flushPending.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Writing booking events failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // Chỉ thread ghi (và lúc tắt) lấy khỏi hàng đợi: đọc đầu hàng đợi, ghi xong mới bỏ đi
+    private synchronized void flush() {
+        while (true) {
+            List<EventRow> batch = new ArrayList<>(batchSize);
+            Iterator<EventRow> iterator = pending.iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            int done = write(batch);
+            for (int i = 0; i < done; i++) {
+                pending.poll();
+            }
+            if (done < batch.size()) {
+                // DB không truy cập được: giữ nguyên phần còn lại, lượt sau thử tiếp
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ghi một lô trong một transaction; lô lỗi thì ghi lại từng dòng, dòng vẫn lỗi (dữ liệu không hợp lệ,
+     * booking đã bị xoá...) bị bỏ để không chặn các sự kiện sau.
+     *
+     * @return số dòng đầu lô đã xử lý xong (ghi được hoặc bị bỏ); nhỏ hơn kích thước lô khi DB không truy cập được
+     */
+    private int write(List<EventRow> batch) {
+        try {
+            insert(batch);
+            return batch.size();
+        } catch (RuntimeException e) {
+            if (isUnavailable(e)) {
+                log.error("Could not write {} booking events, will retry: {}", batch.size(), e.getMessage());
+                return 0;
+            }
+            log.warn("Batch of {} booking events failed, writing one by one: {}", batch.size(), e.getMessage());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            EventRow event = batch.get(i);
+            try {
+                insert(List.of(event));
+            } catch (RuntimeException e) {
+                if (isUnavailable(e)) {
+                    log.error("Could not write booking events, will retry: {}", e.getMessage());
+                    return i;
+                }
+                log.error("Dropping booking event {} -> {} of booking {}: {}",
+                        event.fromStatus(), event.toStatus(), event.bookingId(), e.getMessage());
+            }
+        }
+        return batch.size();
+    }
+
+    // Cả lô commit hoặc rollback cùng nhau, để ghi lại từng dòng không tạo bản trùng
+    private void insert(List<EventRow> events) {
+        transactionTemplate.executeWithoutResult(status -> bookingEventRepository.batchInsert(events));
+    }
+
+    private static boolean isUnavailable(RuntimeException e) {
+        return e instanceof CannotCreateTransactionException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException;
+    }
+
+    private static String key(LocalDateTime createdAt, String fromStatus, String toStatus) {
+        return createdAt + "|" + fromStatus + "|" + toStatus;
+    }
+
+    private BookingEventDTO toDTO(BookingEvent event) {
+        BookingEventDTO dto = new BookingEventDTO();
+        dto.setId(event.getId());
+        dto.setFromStatus(event.getFromStatus());
+        dto.setToStatus(event.getToStatus());
+        dto.setReason(event.getReason());
+        dto.setCreatedAt(event.getCreatedAt());
+        if (event.getChangedBy() != null) {
+            dto.setChangedById(event.getChangedBy().getId());
+            dto.setChangedByName(event.getChangedBy().getFullName());
+            dto.setChangedByEmail(event.getChangedBy().getEmail());
+        }
+        return dto;
+    }
+
+    private BookingEventDTO toDTO(EventRow event) {
+        BookingEventDTO dto = new BookingEventDTO();
+        dto.setFromStatus(event.fromStatus());
+        dto.setToStatus(event.toStatus());
+        dto.setReason(event.reason());
+        dto.setCreatedAt(event.createdAt());
+        dto.setChangedByEmail(event.changedByEmail());
+        return dto;
+    }
+
+    private static String currentUserEmail() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
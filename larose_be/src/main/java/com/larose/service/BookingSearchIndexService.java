@@ -0,0 +1,380 @@
+package com.larose.service;
+
+import com.larose.entity.Booking;
+import com.larose.entity.User;
+import com.larose.repository.BookingRepository;
+import com.larose.util.SearchText;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Index tìm kiếm booking trong bộ nhớ cho ô tìm kiếm của admin.
+ * Mã booking và tên / email / số điện thoại của khách được chuẩn hóa (chữ thường, bỏ dấu) rồi tách thành
+ * trigram; mỗi trigram trỏ tới danh sách booking id (mã booking) hoặc user id (thông tin khách).
+ * Tìm kiếm giao các danh sách của trigram trong từ khóa, kiểm tra lại bằng so khớp chuỗi con và xếp hạng,
+ * DB chỉ còn phải load đúng các booking của trang kết quả.
+ * Index được dựng lúc khởi động, sau đó chỉ cập nhật khi transaction ghi booking / user đã commit.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingSearchIndexService {
+
+    private static final int GRAM = 3;
+
+    private final BookingRepository bookingRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    private boolean ready;
+    // Thay đổi xảy ra trong lúc đang dựng index, được áp lại lên index mới trước khi thay thế
+    private List<Consumer<Index>> replay;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        lock.writeLock().lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index loaded = new Index();
+        try {
+            for (Object[] row : bookingRepository.findSearchIndexRows()) {
+                Long userId = (Long) row[4];
+                if (userId != null) {
+                    loaded.putUser(userId, (String) row[5], (String) row[6], (String) row[7]);
+                }
+                loaded.putBooking((Long) row[0], (String) row[1], (Booking.Status) row[2], (LocalDateTime) row[3], userId);
+            }
+        } catch (RuntimeException e) {
+            // Không có index thì tìm kiếm quay về query LIKE trong DB
+            log.error("Could not build booking search index: {}", e.getMessage(), e);
+            lock.writeLock().lock();
+            try {
+                replay = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            replay.forEach(change -> change.accept(loaded));
+            replay = null;
+            index = loaded;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Booking search index loaded: {} bookings, {} users", loaded.bookings.size(), loaded.users.size());
+    }
+
+    /**
+     * Index chưa sẵn sàng (đang khởi động hoặc dựng lỗi) thì trả về null, người gọi tự tìm trong DB.
+     *
+     * @return id booking của trang [offset, offset + limit) theo độ liên quan, cùng tổng số kết quả
+     */
+    public SearchResult search(String term, Booking.Status status, int offset, int limit) {
+        String query = SearchText.normalize(term);
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return null;
+            }
+            if (query.isEmpty()) {
+                return new SearchResult(List.of(), 0);
+            }
+            List<Hit> hits = index.search(query, phoneQuery(term), status);
+            hits.sort(Comparator.comparingInt(Hit::score).reversed()
+                    .thenComparing(Hit::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(Hit::bookingId, Comparator.reverseOrder()));
+            int from = Math.min(Math.max(offset, 0), hits.size());
+            int to = Math.min(from + Math.max(limit, 0), hits.size());
+            List<Long> ids = new ArrayList<>(to - from);
+            for (Hit hit : hits.subList(from, to)) {
+                ids.add(hit.bookingId());
+            }
+            return new SearchResult(ids, hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Đưa booking (mã, trạng thái, khách) vào index sau khi transaction hiện tại commit.
+     * Đọc dữ liệu ngay lúc gọi, trong transaction, để không phải load lazy sau commit.
+     */
+    public void index(Booking booking) {
+        if (booking == null || booking.getId() == null) {
+            return;
+        }
+        Long bookingId = booking.getId();
+        String code = booking.getBookingCode();
+        Booking.Status status = booking.getStatus();
+        LocalDateTime createdAt = booking.getCreatedAt();
+        User user = booking.getUser();
+        Long userId = user != null ? user.getId() : null;
+        String fullName = user != null ? user.getFullName() : null;
+        String email = user != null ? user.getEmail() : null;
+        String phone = user != null ? user.getPhone() : null;
+        afterCommit(() -> apply(index -> {
+            if (userId != null) {
+                index.putUser(userId, fullName, email, phone);
+            }
+            index.putBooking(bookingId, code, status, createdAt, userId);
+        }));
+    }
+
+    /**
+     * Cập nhật tên / email / số điện thoại của khách trong index sau khi transaction hiện tại commit.
+     */
+    public void indexUser(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Long userId = user.getId();
+        String fullName = user.getFullName();
+        String email = user.getEmail();
+        String phone = user.getPhone();
+        afterCommit(() -> apply(index -> index.putUser(userId, fullName, email, phone)));
+    }
+
+    /**
+     * Bỏ thông tin khách khỏi index (user bị xóa hẳn), booking vẫn tìm được theo mã.
+     */
+    public void removeUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        afterCommit(() -> apply(index -> index.removeUser(userId)));
+    }
+
+    private void apply(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (replay != null) {
+                replay.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Từ khóa không có chữ cái thì so thêm với số điện thoại theo chữ số ("0901 234 567" khớp "0901234567")
+    private static String phoneQuery(String term) {
+        if (term == null || term.chars().anyMatch(Character::isLetter)) {
+            return "";
+        }
+        return digits(term);
+    }
+
+    private static String digits(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    public record SearchResult(List<Long> bookingIds, long total) {
+    }
+
+    private record Hit(Long bookingId, int score, LocalDateTime createdAt) {
+    }
+
+    private record BookingEntry(Long id, String code, Booking.Status status, LocalDateTime createdAt, Long userId) {
+    }
+
+    private record UserEntry(String fullName, String email, String phone) {
+    }
+
+    /**
+     * Dữ liệu của index; chỉ được đọc / sửa khi đang giữ lock tương ứng.
+     */
+    private static final class Index {
+        private final Map<Long, BookingEntry> bookings = new HashMap<>();
+        private final Map<Long, UserEntry> users = new HashMap<>();
+        private final Map<Long, Set<Long>> bookingsByUser = new HashMap<>();
+        // trigram -> booking id (mã booking)
+        private final Map<String, Set<Long>> codeGrams = new HashMap<>();
+        // trigram -> user id (tên, email, số điện thoại)
+        private final Map<String, Set<Long>> userGrams = new HashMap<>();
+
+        void putBooking(Long id, String code, Booking.Status status, LocalDateTime createdAt, Long userId) {
+            BookingEntry previous = bookings.get(id);
+            BookingEntry entry = new BookingEntry(id, SearchText.normalize(code), status, createdAt, userId);
+            if (previous != null) {
+                unlink(codeGrams, grams(previous.code()), id);
+                removeFrom(bookingsByUser, previous.userId(), id);
+            }
+            bookings.put(id, entry);
+            link(codeGrams, grams(entry.code()), id);
+            if (userId != null) {
+                bookingsByUser.computeIfAbsent(userId, k -> new HashSet<>()).add(id);
+            }
+        }
+
+        void putUser(Long id, String fullName, String email, String phone) {
+            UserEntry entry = new UserEntry(SearchText.normalize(fullName), SearchText.normalize(email), digits(phone));
+            UserEntry previous = users.put(id, entry);
+            if (entry.equals(previous)) {
+                return;
+            }
+            if (previous != null) {
+                unlink(userGrams, userGrams(previous), id);
+            }
+            link(userGrams, userGrams(entry), id);
+        }
+
+        void removeUser(Long id) {
+            UserEntry previous = users.remove(id);
+            if (previous != null) {
+                unlink(userGrams, userGrams(previous), id);
+            }
+        }
+
+        List<Hit> search(String query, String queryDigits, Booking.Status status) {
+            Collection<Long> candidates;
+            if (query.length() < GRAM) {
+                // Từ khóa quá ngắn để dùng trigram: duyệt toàn bộ
+                candidates = bookings.keySet();
+            } else {
+                Set<String> queryGrams = grams(query);
+                Set<Long> matched = new HashSet<>(intersect(codeGrams, queryGrams));
+                Set<Long> userIds = new HashSet<>(intersect(userGrams, queryGrams));
+                if (queryDigits.length() >= GRAM && !queryDigits.equals(query)) {
+                    userIds.addAll(intersect(userGrams, grams(queryDigits)));
+                }
+                for (Long userId : userIds) {
+                    matched.addAll(bookingsByUser.getOrDefault(userId, Set.of()));
+                }
+                candidates = matched;
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            for (Long id : candidates) {
+                BookingEntry booking = bookings.get(id);
+                if (booking == null || (status != null && booking.status() != status)) {
+                    continue;
+                }
+                // Trigram chỉ lọc sơ bộ, điểm bằng 0 nghĩa là không thực sự chứa từ khóa
+                int score = score(booking, query, queryDigits);
+                if (score > 0) {
+                    hits.add(new Hit(id, score, booking.createdAt()));
+                }
+            }
+            return hits;
+        }
+
+        private int score(BookingEntry booking, String query, String queryDigits) {
+            int score = fieldScore(booking.code(), query, 100, 60, 40);
+            UserEntry user = booking.userId() != null ? users.get(booking.userId()) : null;
+            if (user != null) {
+                score = Math.max(score, fieldScore(user.email(), query, 90, 50, 30));
+                score = Math.max(score, fieldScore(user.fullName(), query, 80, 45, 25));
+                if (!queryDigits.isEmpty()) {
+                    score = Math.max(score, fieldScore(user.phone(), queryDigits, 90, 40, 35));
+                }
+            }
+            return score;
+        }
+
+        private static int fieldScore(String value, String query, int exact, int prefix, int contains) {
+            if (value == null || value.isEmpty()) {
+                return 0;
+            }
+            if (value.equals(query)) {
+                return exact;
+            }
+            if (value.startsWith(query)) {
+                return prefix;
+            }
+            int at = value.indexOf(query);
+            if (at < 0) {
+                return 0;
+            }
+            // Khớp ở đầu một từ (ví dụ tên, không phải họ) xếp trên khớp giữa từ
+            char before = value.charAt(at - 1);
+            return Character.isLetterOrDigit(before) ? contains : (prefix + contains) / 2;
+        }
+
+        private static Set<String> userGrams(UserEntry entry) {
+            Set<String> grams = grams(entry.fullName());
+            grams.addAll(grams(entry.email()));
+            grams.addAll(grams(entry.phone()));
+            return grams;
+        }
+
+        private static Set<Long> intersect(Map<String, Set<Long>> postings, Set<String> grams) {
+            List<Set<Long>> lists = new ArrayList<>(grams.size());
+            for (String gram : grams) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    return Set.of();
+                }
+                lists.add(ids);
+            }
+            if (lists.isEmpty()) {
+                return Set.of();
+            }
+            // Bắt đầu từ danh sách ngắn nhất
+            lists.sort(Comparator.comparingInt(Set::size));
+            Set<Long> result = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.retainAll(lists.get(i));
+            }
+            return result;
+        }
+
+        private static void link(Map<String, Set<Long>> postings, Set<String> grams, Long id) {
+            for (String gram : grams) {
+                postings.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+            }
+        }
+
+        private static void unlink(Map<String, Set<Long>> postings, Set<String> grams, Long id) {
+            for (String gram : grams) {
+                removeFrom(postings, gram, id);
+            }
+        }
+
+        private static <K> void removeFrom(Map<K, Set<Long>> map, K key, Long id) {
+            if (key == null) {
+                return;
+            }
+            Set<Long> ids = map.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
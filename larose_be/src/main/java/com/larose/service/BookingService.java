@@ -1,6 +1,8 @@
 package com.larose.service;
 
 import com.larose.dto.BookingDTO;
+import com.larose.dto.BookingEventDTO;
+import com.larose.dto.BookingServiceDTO;
 import com.larose.dto.BookingSuggestionDTO;
 import com.larose.dto.projection.BookingProjection;
 import com.larose.dto.search.BookingSearchDto;
@@ -9,19 +11,23 @@ import com.larose.entity.Booking;
 import com.larose.entity.Room;
 import com.larose.entity.User;
 import com.larose.maptruct.BookingMapper;
+import com.larose.maptruct.BookingServiceMapper;
 import com.larose.repository.BookingRepository;
+import com.larose.repository.BookingServiceRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -34,6 +40,14 @@ public class BookingService {
     private final UserService userService;
     private final RoomService roomService;
     private final BookingMapper bookingMapper;
+    private final BookingServiceRepository bookingServiceRepository;
+    private final BookingServiceMapper bookingServiceMapper;
+    private final AvailabilityService availabilityService;
+    private final CodeSequenceService codeSequenceService;
+    private final RevenueRollupService revenueRollupService;
+    private final ReportCacheService reportCacheService;
+    private final BookingEventService bookingEventService;
+    private final BookingSearchIndexService bookingSearchIndexService;
 
     @Value("${app.hotel.code:La_Rose}")
     private String hotelCode;
@@ -81,11 +95,17 @@ public class BookingService {
         if (roomId == null) {
             return Collections.emptyList();
         }
-        List<Booking> list = bookingRepository.getBookingDateWithRoomId(roomId);
-        if (CollectionUtils.isEmpty(list)) {
-            return Collections.emptyList();
+        // Trả lời từ availability index: endpoint public nên chỉ trả khoảng ngày, không lộ thông tin booking
+        List<BookingDTO> result = new ArrayList<>();
+        for (AvailabilityService.BookedRange range : availabilityService.getBookedRanges(roomId, LocalDate.now())) {
+            BookingDTO dto = new BookingDTO();
+            dto.setRoomId(roomId);
+            dto.setCheckIn(range.checkIn());
+            dto.setCheckOut(range.checkOut());
+            dto.setNights((int) ChronoUnit.DAYS.between(range.checkIn(), range.checkOut()));
+            result.add(dto);
         }
-        return list.stream().map(bookingMapper::toBookingDTO).collect(Collectors.toList());
+        return result;
     }
 
     public BookingDTO getDetail(Long id) {
@@ -118,7 +138,12 @@ public class BookingService {
                 .multiply(BigDecimal.valueOf(request.getNights()));
         booking.setPriceTotal(total);
 
-        return this.convertToBookingDTO(bookingRepository.save(booking));
+        Booking saved = bookingRepository.save(booking);
+        availabilityService.reserve(saved);
+        bookingEventService.record(saved, null, saved.getStatus(), null);
+        bookingSearchIndexService.index(saved);
+        evictReports(saved);
+        return this.convertToBookingDTO(saved);
     }
 
     @Transactional
@@ -126,6 +151,11 @@ public class BookingService {
         Booking booking = bookingRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Not Found Booking with id: " + id));
 
+        // Giữ lại lịch cũ để trả phòng / bỏ qua khi kiểm tra trùng lịch
+        Long previousRoomId = booking.getRoom() != null ? booking.getRoom().getId() : null;
+        LocalDate previousCheckIn = booking.getCheckIn();
+        LocalDate previousCheckOut = booking.getCheckOut();
+
         booking.setCheckIn(request.getCheckIn());
         booking.setCheckOut(request.getCheckOut());
         booking.setGuests(request.getGuests());
@@ -148,48 +178,147 @@ public class BookingService {
                 .multiply(BigDecimal.valueOf(request.getNights()));
         booking.setPriceTotal(total);
 
-        return this.convertToBookingDTO(bookingRepository.save(booking));
+        Booking saved = bookingRepository.save(booking);
+        if (isHoldingRoom(saved.getStatus())) {
+            availabilityService.release(saved.getId(), previousRoomId, previousCheckIn, previousCheckOut);
+            availabilityService.reserve(saved, previousRoomId, previousCheckIn, previousCheckOut);
+        }
+        if (saved.getStatus() == Booking.Status.checked_out) {
+            revenueRollupService.onBookingChanged(saved, previousCheckOut);
+        }
+        reportCacheService.evictDates(previousCheckIn, previousCheckOut);
+        evictReports(saved);
+        return this.convertToBookingDTO(saved);
     }
 
     @Transactional
     public void delete(Long id) {
         Booking delete = bookingRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Not Found Booking with id: " + id));
+        boolean wasHoldingRoom = isHoldingRoom(delete.getStatus());
+        boolean wasCheckedOut = delete.getStatus() == Booking.Status.checked_out;
+        Booking.Status oldStatus = delete.getStatus();
         delete.setStatus(Booking.Status.no_show);
         bookingRepository.save(delete);
+        bookingEventService.record(delete, oldStatus, Booking.Status.no_show, "Xoá booking");
+        bookingSearchIndexService.index(delete);
+        if (wasHoldingRoom) {
+            availabilityService.release(delete);
+        }
+        if (wasCheckedOut) {
+            revenueRollupService.onBookingChanged(delete);
+        }
+        evictReports(delete);
     }
 
     @Transactional
     public void cancelBooking(Long bookingId) {
+        Booking.Status oldStatus = bookingRepository.findStatusById(bookingId).orElse(null);
         int updated = bookingRepository.setCancelledBooking(bookingId);
         if (updated == 0) {
             throw new IllegalArgumentException("Không thể hủy booking (đã quá 2h hoặc đã thanh toán)");
         }
+        bookingRepository.findById(bookingId).ifPresent(booking -> {
+            bookingEventService.record(booking, oldStatus, Booking.Status.cancelled, "Khách hủy booking");
+            bookingSearchIndexService.index(booking);
+            availabilityService.release(booking);
+            evictReports(booking);
+        });
     }
 
+    /**
+     * Danh sách booking cho admin, kèm dịch vụ đã đặt.
+     * Phân trang trên id trước (LIMIT/OFFSET trong DB), sau đó load booking và dịch vụ của đúng các id đó
+     * bằng hai câu IN, thay vì fetch collection cùng Pageable khiến Hibernate phân trang trong bộ nhớ.
+     * Có từ khóa thì id lấy từ search index, xếp theo độ liên quan thay cho {@code pageable.getSort()}.
+     */
     public Page<BookingDTO> getAllBookingsForAdmin(String status, String search, Pageable pageable) {
-        Page<Booking> bookings;
+        Page<Long> ids = findAdminPageIds(parseAdminStatus(status), normalizeSearch(search), pageable);
+        if (ids.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, ids.getTotalElements());
+        }
 
-        if (status != null && !status.isEmpty() && !status.equalsIgnoreCase("all")) {
-            try {
-                Booking.Status bookingStatus = Booking.Status.valueOf(status);
-                if (search != null && !search.isEmpty()) {
-                    bookings = bookingRepository.findByStatusAndSearchTerm(bookingStatus, search, pageable);
-                } else {
-                    bookings = bookingRepository.findByStatus(bookingStatus, pageable);
-                }
-            } catch (IllegalArgumentException e) {
-                throw new IllegalArgumentException("Invalid status: " + status);
+        Map<Long, Booking> bookings = bookingRepository.findByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(Booking::getId, booking -> booking));
+        Map<Long, List<BookingServiceDTO>> services = bookingServiceRepository.findByBookingIdIn(ids.getContent()).stream()
+                .map(bookingServiceMapper::toDTO)
+                .collect(Collectors.groupingBy(BookingServiceDTO::getBookingId));
+
+        // Giữ đúng thứ tự sắp xếp của trang id
+        List<BookingDTO> content = new ArrayList<>(ids.getNumberOfElements());
+        for (Long id : ids.getContent()) {
+            Booking booking = bookings.get(id);
+            if (booking == null) {
+                continue; // bị xóa giữa hai câu query
             }
-        } else {
-            if (search != null && !search.isEmpty()) {
-                bookings = bookingRepository.findBySearchTerm(search, pageable);
-            } else {
-                bookings = bookingRepository.findAll(pageable);
+            BookingDTO dto = bookingMapper.toBookingDTOWithoutServices(booking);
+            dto.setBookingServices(services.getOrDefault(id, new ArrayList<>()));
+            content.add(dto);
+        }
+        return new PageImpl<>(content, pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Danh sách booking dạng phẳng cho màn hình list: một câu query có phân trang, không có dịch vụ.
+     */
+    public Page<BookingDTO> getBookingSummariesForAdmin(String status, String search, Pageable pageable) {
+        Booking.Status bookingStatus = parseAdminStatus(status);
+        String term = normalizeSearch(search);
+        BookingSearchIndexService.SearchResult hits = term != null
+                ? bookingSearchIndexService.search(term, bookingStatus, (int) pageable.getOffset(), pageable.getPageSize())
+                : null;
+        if (hits == null) {
+            return bookingRepository.findAdminSummaries(bookingStatus, term, pageable)
+                    .map(bookingMapper::toBookingDTO);
+        }
+
+        Map<Long, BookingDTO> rows = new HashMap<>();
+        if (!hits.bookingIds().isEmpty()) {
+            for (BookingProjection row : bookingRepository.findAdminSummariesByIdIn(hits.bookingIds())) {
+                rows.put(row.getId(), bookingMapper.toBookingDTO(row));
             }
         }
+        List<BookingDTO> content = hits.bookingIds().stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, hits.total());
+    }
 
-        return bookings.map(this::convertToBookingDTO);
+    // Trang id cho danh sách admin: search index nếu có từ khóa và index đã sẵn sàng, ngược lại query DB
+    private Page<Long> findAdminPageIds(Booking.Status status, String search, Pageable pageable) {
+        if (search != null) {
+            BookingSearchIndexService.SearchResult hits =
+                    bookingSearchIndexService.search(search, status, (int) pageable.getOffset(), pageable.getPageSize());
+            if (hits != null) {
+                return new PageImpl<>(hits.bookingIds(), pageable, hits.total());
+            }
+        }
+        return bookingRepository.findAdminPageIds(status, search, pageable);
+    }
+
+    private static Booking.Status parseAdminStatus(String status) {
+        if (status == null || status.isEmpty() || status.equalsIgnoreCase("all")) {
+            return null;
+        }
+        try {
+            return Booking.Status.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid status: " + status);
+        }
+    }
+
+    private static String normalizeSearch(String search) {
+        return search == null || search.isEmpty() ? null : search;
+    }
+
+    // Ngoài transaction read-only: timeline ghi nốt các sự kiện đang chờ trước khi đọc
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookingEventDTO> getBookingTimeline(Long id) {
+        if (!bookingRepository.existsById(id)) {
+            throw new IllegalArgumentException("Booking not found with id: " + id);
+        }
+        return bookingEventService.getTimeline(id);
     }
 
     public BookingDTO getBookingById(Long id) {
@@ -203,13 +332,31 @@ public class BookingService {
         Booking booking = bookingRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Booking not found with id: " + id));
 
+        Booking.Status newStatus;
         try {
-            booking.setStatus(Booking.Status.valueOf(status));
-            Booking updated = bookingRepository.save(booking);
-            return convertToBookingDTO(updated);
+            newStatus = Booking.Status.valueOf(status);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid status: " + status);
         }
+
+        boolean wasHoldingRoom = isHoldingRoom(booking.getStatus());
+        Booking.Status oldStatus = booking.getStatus();
+        booking.setStatus(newStatus);
+        Booking updated = bookingRepository.save(booking);
+        bookingEventService.record(updated, oldStatus, newStatus, null);
+        bookingSearchIndexService.index(updated);
+        if (wasHoldingRoom && !isHoldingRoom(newStatus)) {
+            availabilityService.release(updated);
+        } else if (!wasHoldingRoom && isHoldingRoom(newStatus)) {
+            availabilityService.reserve(updated);
+        }
+        // Doanh thu được ghi nhận khi trả phòng: vào/ra trạng thái checked_out thì tính lại rollup
+        if (oldStatus != newStatus
+                && (oldStatus == Booking.Status.checked_out || newStatus == Booking.Status.checked_out)) {
+            revenueRollupService.onBookingChanged(updated);
+        }
+        evictReports(updated);
+        return convertToBookingDTO(updated);
     }
 
     @Transactional
@@ -217,53 +364,73 @@ public class BookingService {
         Booking booking = bookingRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Booking not found with id: " + id));
 
+        boolean wasHoldingRoom = isHoldingRoom(booking.getStatus());
+        boolean wasCheckedOut = booking.getStatus() == Booking.Status.checked_out;
+        Booking.Status oldStatus = booking.getStatus();
         booking.setStatus(Booking.Status.cancelled);
         booking.setCancelReason(reason);
         booking.setCancelledAt(java.time.LocalDateTime.now());
         bookingRepository.save(booking);
+        bookingEventService.record(booking, oldStatus, Booking.Status.cancelled, reason);
+        bookingSearchIndexService.index(booking);
+        if (wasHoldingRoom) {
+            availabilityService.release(booking);
+        }
+        if (wasCheckedOut) {
+            revenueRollupService.onBookingChanged(booking);
+        }
+        evictReports(booking);
+    }
+
+    public boolean isRoomAvailable(Long roomId, LocalDate checkIn, LocalDate checkOut) {
+        if (roomId == null || checkIn == null || checkOut == null) {
+            throw new IllegalArgumentException("roomId, checkIn và checkOut là bắt buộc");
+        }
+        return availabilityService.isAvailable(roomId, checkIn, checkOut);
+    }
+
+    // Báo cáo thống kê đã cache có khoảng ngày giao với ngày tạo / lưu trú của booking
+    private void evictReports(Booking booking) {
+        LocalDate createdDate = booking.getCreatedAt() != null ? booking.getCreatedAt().toLocalDate() : LocalDate.now();
+        reportCacheService.evictDates(createdDate, booking.getCheckIn(), booking.getCheckOut());
+    }
+
+    // Booking đã huỷ hoặc no-show thì không còn giữ phòng
+    private boolean isHoldingRoom(Booking.Status status) {
+        return status != Booking.Status.cancelled && status != Booking.Status.no_show;
     }
 
     private void genCode(Booking entity) {
-        // Format: [HOTEL_CODE]-BK-[YYYY-MM-DD]-[SEQUENCE]
-        // Ví dụ: LR-BK-2025-11-10-001
+        // Format: [HOTEL_CODE]-[YYYY-MM-DD]-[SEQUENCE]
+        // Ví dụ: LR-2025-11-10-001
         
         LocalDate today = LocalDate.now();
         String dateStr = today.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        String prefix = hotelCode + "-" + dateStr + "-";
+
+        // Sequence riêng cho từng ngày, cấp từ bộ nhớ (khối số được giữ trong bảng code_sequences)
+        long sequence = codeSequenceService.next("booking-" + dateStr, () -> nextSequenceFromLatestCode(prefix));
         
-        // Tìm booking mới nhất cùng ngày
-        Booking latestBooking = bookingRepository.getTop1();
-        
-        int sequence = 1;
-        
-        if (latestBooking != null && latestBooking.getBookingCode() != null) {
-            String latestCode = latestBooking.getBookingCode();
-            
-            // Kiểm tra xem code có format mới không (có chứa ngày)
-            if (latestCode.contains(dateStr)) {
-                // Lấy số thứ tự từ code cùng ngày
-                try {
-                    String[] parts = latestCode.split("-");
-                    if (parts.length >= 4) {
-                        String lastPart = parts[parts.length - 1];
-                        sequence = Integer.parseInt(lastPart) + 1;
-                    }
-                } catch (NumberFormatException e) {
-                    // Nếu không parse được, reset về 1
-                    sequence = 1;
-                }
-            } else {
-                // Code cũ hoặc khác ngày, reset về 1
-                sequence = 1;
-            }
-        }
-        
-        // Format: LR-BK-2025-11-10-001 (3 chữ số cho sequence)
-        String bookingCode = String.format("%s-%s-%03d", 
-            hotelCode, dateStr, sequence);
+        // Format: LR-2025-11-10-001 (tối thiểu 3 chữ số cho sequence)
+        String bookingCode = String.format("%s%03d", prefix, sequence);
         
         entity.setBookingCode(bookingCode);
     }
 
+    // Chỉ chạy khi sequence của ngày chưa có trong DB: tiếp nối từ booking đã tạo trong ngày (nếu có)
+    private long nextSequenceFromLatestCode(String prefix) {
+        return bookingRepository.findTopByBookingCodeStartingWithOrderByIdDesc(prefix)
+                .map(latest -> {
+                    try {
+                        return Long.parseLong(latest.getBookingCode().substring(prefix.length())) + 1;
+                    } catch (NumberFormatException e) {
+                        // Nếu không parse được, bắt đầu lại từ 1
+                        return 1L;
+                    }
+                })
+                .orElse(1L);
+    }
+
     public Booking getBookingByCode(String code) {
         return bookingRepository.findByBookingCode(code)
                 .orElseThrow(() -> new IllegalArgumentException("Booking not found with code: " + code));
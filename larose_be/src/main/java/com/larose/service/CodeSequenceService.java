@@ -0,0 +1,112 @@
+package com.larose.service;
+
+import com.larose.entity.CodeSequence;
+import com.larose.repository.CodeSequenceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Cấp phát số thứ tự cho các mã nghiệp vụ (booking code, room code...).
+ * Mỗi sequence có tên riêng trong bảng code_sequences; mỗi node giữ một khối số trong bộ nhớ
+ * và chỉ quay lại DB (SELECT ... FOR UPDATE trong transaction riêng) khi khối đã dùng hết,
+ * nên các node không bao giờ cấp trùng số. Số chưa dùng của khối bị bỏ qua khi restart.
+ */
+@Slf4j
+@Service
+public class CodeSequenceService {
+
+    private final CodeSequenceRepository codeSequenceRepository;
+    private final TransactionTemplate requiresNew;
+    private final int defaultBlockSize;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private final Map<String, Object> refillLocks = new ConcurrentHashMap<>();
+
+    public CodeSequenceService(CodeSequenceRepository codeSequenceRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.code-sequence.block-size:20}") int defaultBlockSize) {
+        this.codeSequenceRepository = codeSequenceRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.defaultBlockSize = Math.max(defaultBlockSize, 1);
+    }
+
+    /**
+     * Số tiếp theo của sequence {@code name}.
+     *
+     * @param seed chỉ được gọi khi sequence chưa tồn tại trong DB, trả về giá trị đầu tiên cần cấp
+     */
+    public long next(String name, LongSupplier seed) {
+        return next(name, defaultBlockSize, seed);
+    }
+
+    public long next(String name, int blockSize, LongSupplier seed) {
+        while (true) {
+            Block block = blocks.get(name);
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.limit) {
+                    return value;
+                }
+            }
+            refill(name, block, blockSize, seed);
+        }
+    }
+
+    /**
+     * Cấp liền một dải {@code count} số liên tiếp (dùng cho import hàng loạt), không đi qua khối trong bộ nhớ.
+     *
+     * @return số đầu tiên của dải
+     */
+    public long nextRange(String name, int count, LongSupplier seed) {
+        return reserve(name, Math.max(count, 1), seed);
+    }
+
+    private void refill(String name, Block exhausted, int blockSize, LongSupplier seed) {
+        Object lock = refillLocks.computeIfAbsent(name, key -> new Object());
+        synchronized (lock) {
+            // Thread khác đã nạp khối mới trong lúc chờ lock
+            if (blocks.get(name) != exhausted) {
+                return;
+            }
+            long start = reserve(name, blockSize, seed);
+            blocks.put(name, new Block(start, start + blockSize));
+        }
+    }
+
+    private long reserve(String name, int size, LongSupplier seed) {
+        Long start = requiresNew.execute(status -> {
+            CodeSequence sequence = codeSequenceRepository.findForUpdate(name).orElse(null);
+            if (sequence == null) {
+                codeSequenceRepository.insertIfAbsent(name, Math.max(seed.getAsLong(), 1));
+                sequence = codeSequenceRepository.findForUpdate(name)
+                        .orElseThrow(() -> new IllegalStateException("Cannot create code sequence: " + name));
+            }
+            long first = sequence.getNextValue();
+            sequence.setNextValue(first + size);
+            codeSequenceRepository.save(sequence);
+            return first;
+        });
+        log.debug("Reserved [{}, {}) for code sequence {}", start, start + size, name);
+        return start;
+    }
+
+    private static final class Block {
+        final AtomicLong next;
+        final long limit;
+
+        Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
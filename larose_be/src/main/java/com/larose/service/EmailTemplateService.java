@@ -0,0 +1,155 @@
+package com.larose.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larose.entity.NotificationTemplate;
+import com.larose.repository.NotificationTemplateRepository;
+import com.larose.util.TextTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Template email đã compile sẵn, theo tên (ví dụ "email-verification").
+ * Mặc định lấy từ classpath templates/email/{ten}.html (dòng đầu là &lt;!-- subject: ... --&gt;);
+ * các dòng EMAIL trong bảng notification_templates cùng tên sẽ ghi đè, nên sửa nội dung mail
+ * chỉ cần cập nhật DB rồi gọi {@link #reload()}, không phải deploy lại.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmailTemplateService {
+
+    private static final String CLASSPATH_PATTERN = "classpath*:templates/email/*.html";
+    private static final String SUBJECT_PREFIX = "<!-- subject:";
+    private static final String SUBJECT_SUFFIX = "-->";
+
+    private final NotificationTemplateRepository notificationTemplateRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Thay cả map khi reload, request đang render vẫn dùng bản cũ
+    private volatile Map<String, CompiledEmail> templates = Map.of();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * Nạp lại template từ classpath và DB, compile rồi thay thế bộ template hiện tại.
+     *
+     * @return số template đã nạp
+     */
+    public int reload() {
+        Map<String, CompiledEmail> loaded = new HashMap<>(loadClasspathTemplates());
+        int overridden = 0;
+        try {
+            for (NotificationTemplate template : notificationTemplateRepository.findByChannel(NotificationTemplate.Channel.EMAIL)) {
+                if (template.getBodyTemplate() == null || template.getBodyTemplate().isBlank()) {
+                    log.warn("Email template '{}' in DB has no body, keeping default", template.getName());
+                    continue;
+                }
+                try {
+                    CompiledEmail compiled = compile(template.getName(),
+                            template.getSubjectTemplate() != null ? template.getSubjectTemplate() : "",
+                            template.getBodyTemplate());
+                    checkVariables(template, compiled);
+                    loaded.put(template.getName(), compiled);
+                    overridden++;
+                } catch (IllegalArgumentException e) {
+                    log.warn("{}, keeping default", e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            // DB lỗi thì vẫn gửi được bằng template mặc định
+            log.error("Could not load email templates from DB: {}", e.getMessage(), e);
+        }
+        templates = Map.copyOf(loaded);
+        log.info("Loaded {} email templates ({} from DB)", loaded.size(), overridden);
+        return loaded.size();
+    }
+
+    /**
+     * Render subject và body của template {@code name} với {@code values}.
+     */
+    public RenderedEmail render(String name, Map<String, ?> values) {
+        CompiledEmail template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Email template not found: " + name);
+        }
+        return new RenderedEmail(template.subject().render(values).trim(), template.body().render(values));
+    }
+
+    public boolean hasTemplate(String name) {
+        return name != null && templates.containsKey(name);
+    }
+
+    private Map<String, CompiledEmail> loadClasspathTemplates() {
+        Map<String, CompiledEmail> loaded = new HashMap<>();
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(CLASSPATH_PATTERN);
+            for (Resource resource : resources) {
+                String fileName = resource.getFilename();
+                if (fileName == null) {
+                    continue;
+                }
+                String name = fileName.substring(0, fileName.length() - ".html".length());
+                String source = resource.getContentAsString(StandardCharsets.UTF_8);
+                String subject = "";
+                if (source.startsWith(SUBJECT_PREFIX)) {
+                    int end = source.indexOf(SUBJECT_SUFFIX);
+                    subject = source.substring(SUBJECT_PREFIX.length(), end).trim();
+                    int bodyStart = source.indexOf('\n', end);
+                    source = bodyStart >= 0 ? source.substring(bodyStart + 1) : "";
+                }
+                loaded.put(name, compile(name, subject, source));
+            }
+        } catch (IOException e) {
+            log.error("Could not load classpath email templates: {}", e.getMessage(), e);
+        }
+        return loaded;
+    }
+
+    private static CompiledEmail compile(String name, String subject, String body) {
+        try {
+            return new CompiledEmail(TextTemplate.compile(subject, false), TextTemplate.compile(body, true));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid email template '" + name + "': " + e.getMessage(), e);
+        }
+    }
+
+    // Cột variables (JSON array) khai báo biến mà template được dùng; biến lạ thường là gõ sai
+    private void checkVariables(NotificationTemplate template, CompiledEmail compiled) {
+        if (template.getVariables() == null || template.getVariables().isBlank()) {
+            return;
+        }
+        try {
+            Set<String> declared = new HashSet<>(objectMapper.readValue(template.getVariables(), new TypeReference<List<String>>() {}));
+            Set<String> used = new HashSet<>(compiled.subject().getVariables());
+            used.addAll(compiled.body().getVariables());
+            used.removeAll(declared);
+            if (!used.isEmpty()) {
+                log.warn("Email template '{}' uses undeclared variables {}", template.getName(), used);
+            }
+        } catch (IOException e) {
+            log.warn("Email template '{}' has invalid variables JSON: {}", template.getName(), e.getMessage());
+        }
+    }
+
+    private record CompiledEmail(TextTemplate subject, TextTemplate body) {
+    }
+
+    public record RenderedEmail(String subject, String body) {
+    }
+}
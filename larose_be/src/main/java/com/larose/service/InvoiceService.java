@@ -5,15 +5,15 @@ import com.larose.entity.Transaction;
 import com.larose.repository.BookingRepository;
 import com.larose.repository.TransactionRepository;
 import com.larose.util.InvoicePdfUtil;
-import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -21,7 +21,7 @@ import java.io.File;
 public class InvoiceService {
     private final BookingRepository bookingRepository;
     private final TransactionRepository transactionRepository;
-    private final JavaMailSender mailSender;
+    private final MailOutboxService mailOutboxService;
 
     public String sendInvoice(Long bookingId) {
         Booking booking = bookingRepository.findById(bookingId)
@@ -30,31 +30,55 @@ public class InvoiceService {
                 .orElseThrow(() -> new IllegalArgumentException("Can't find transaction with booking id: " + booking.getId()));
         String email = booking.getUser().getEmail();
 
-        File pdfFile = InvoicePdfUtil.generateInvoicePdf(booking, transaction);
+        byte[] pdf = InvoicePdfUtil.generateInvoicePdf(booking, transaction);
 
-        try {
-            sendEmail(email, booking, pdfFile);
-            log.info("Invoice sent to {}", email);
-        } finally {
-            if (pdfFile.exists()) pdfFile.delete();
-        }
+        sendEmail(email, booking, pdf);
+        log.info("Invoice queued for {}", email);
         return email;
     }
 
-    private void sendEmail(String to, Booking booking, File file) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    /**
+     * Booking và transaction để in hoá đơn, null nếu booking không tồn tại (transaction null nếu chưa thanh toán).
+     * Chỉ giữ connection trong lúc đọc: khách, phòng, loại phòng được load sẵn để kiểm tra quyền
+     * và render PDF ngoài transaction.
+     */
+    @Transactional(readOnly = true)
+    public InvoiceDocument findInvoice(Long bookingId) {
+        Booking booking = bookingRepository.findById(bookingId).orElse(null);
+        if (booking == null) {
+            return null;
+        }
+        Hibernate.initialize(booking.getUser());
+        if (booking.getRoom() != null) {
+            Hibernate.initialize(booking.getRoom());
+            Hibernate.initialize(booking.getRoom().getRoomType());
+        }
+        Transaction transaction = transactionRepository.getByBookingId(booking.getId()).orElse(null);
+        return new InvoiceDocument(booking, transaction);
+    }
+
+    /**
+     * Ghi hoá đơn PDF đã load bằng {@link #findInvoice} thẳng vào {@code out} (tải về), không qua file tạm
+     * và không mở transaction.
+     *
+     * @return kích thước file PDF
+     */
+    public int writeInvoice(InvoiceDocument invoice, OutputStream out) throws IOException {
+        return InvoicePdfUtil.writeInvoicePdf(invoice.booking(), invoice.transaction(), out);
+    }
 
-            helper.setTo(to);
-            helper.setSubject("Hóa đơn La Rose Hotel - #" + booking.getId());
-            helper.setText("Xin chào " + booking.getUser().getFullName() + ",\n\nCảm ơn bạn đã thanh toán thành công.\nFile hóa đơn được đính kèm bên dưới.\n\nTrân trọng,\nLa Rose Hotel");
-            helper.addAttachment("HoaDon_LaRose_" + booking.getId() + ".pdf", new FileSystemResource(file));
+    public static String invoiceFileName(Long bookingId) {
+        return "HoaDon_LaRose_" + bookingId + ".pdf";
+    }
 
-            mailSender.send(message);
-        } catch (Exception e) {
-            log.error("Error sending invoice email to {}", to, e);
-            throw new RuntimeException("Error sending invoice email", e);
-        }
+    // Đưa vào outbox kèm file PDF; MailOutboxWorker gửi ở background nên request không chờ SMTP
+    private void sendEmail(String to, Booking booking, byte[] pdf) {
+        String subject = "Hóa đơn La Rose Hotel - #" + booking.getId();
+        String body = "Xin chào " + booking.getUser().getFullName() + ",\n\nCảm ơn bạn đã thanh toán thành công.\nFile hóa đơn được đính kèm bên dưới.\n\nTrân trọng,\nLa Rose Hotel";
+        mailOutboxService.enqueue(booking.getUser(), to, subject, body, false,
+                List.of(MailOutboxService.file(invoiceFileName(booking.getId()), "application/pdf", pdf)));
+    }
+
+    public record InvoiceDocument(Booking booking, Transaction transaction) {
     }
 }
@@ -0,0 +1,96 @@
+package com.larose.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ảnh dùng trong mail được tạo một lần rồi dùng lại:
+ * - ảnh tĩnh trên classpath (logo) đọc một lần cho cả ứng dụng;
+ * - ảnh QR PNG của booking giữ trong LRU theo mã booking, nên gửi lại xác nhận
+ *   hay gửi lại hàng loạt sau sự cố không phải vẽ và encode PNG lại.
+ * Mảng byte trả về được dùng chung nên chỉ được đọc, không được sửa.
+ */
+@Slf4j
+@Service
+public class MailAssetCacheService {
+
+    private static final int QR_SIZE = 200;
+
+    private final Map<String, Optional<byte[]>> resources = new ConcurrentHashMap<>();
+    private final Map<String, QrEntry> qrCodes;
+
+    public MailAssetCacheService(@Value("${app.mail.assets.qr-cache-size:1000}") int qrCacheSize) {
+        this.qrCodes = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QrEntry> eldest) {
+                return size() > qrCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Nội dung file classpath {@code path}, đọc lần đầu rồi giữ lại; null nếu không có file.
+     */
+    public byte[] resource(String path) {
+        return resources.computeIfAbsent(path, this::loadResource).orElse(null);
+    }
+
+    /**
+     * Ảnh QR PNG chứa {@code content} của booking {@code bookingCode}.
+     * Chỉ dùng lại khi nội dung QR không đổi (ví dụ số tiền đã thanh toán thay đổi thì vẽ lại).
+     */
+    public byte[] qrCode(String bookingCode, String content) throws WriterException, IOException {
+        synchronized (qrCodes) {
+            QrEntry entry = qrCodes.get(bookingCode);
+            if (entry != null && entry.content().equals(content)) {
+                return entry.png();
+            }
+        }
+        byte[] png = renderQrCode(content);
+        synchronized (qrCodes) {
+            qrCodes.put(bookingCode, new QrEntry(content, png));
+        }
+        return png;
+    }
+
+    private Optional<byte[]> loadResource(String path) {
+        ClassPathResource resource = new ClassPathResource(path);
+        if (!resource.exists()) {
+            log.warn("Mail asset not found: {}", path);
+            return Optional.empty();
+        }
+        try (InputStream in = resource.getInputStream()) {
+            byte[] bytes = in.readAllBytes();
+            log.debug("Loaded mail asset {} ({} bytes)", path, bytes.length);
+            return Optional.of(bytes);
+        } catch (IOException e) {
+            // Không cache lỗi đọc, lần sau thử lại
+            throw new IllegalStateException("Could not read mail asset " + path, e);
+        }
+    }
+
+    private static byte[] renderQrCode(String content) throws WriterException, IOException {
+        BitMatrix bitMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, QR_SIZE, QR_SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(bitMatrix, "png", out);
+        return out.toByteArray();
+    }
+
+    private record QrEntry(String content, byte[] png) {
+    }
+}
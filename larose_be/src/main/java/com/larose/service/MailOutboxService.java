@@ -0,0 +1,102 @@
+package com.larose.service;
+
+import com.larose.entity.Notification;
+import com.larose.entity.NotificationAttachment;
+import com.larose.entity.User;
+import com.larose.repository.NotificationAttachmentRepository;
+import com.larose.repository.NotificationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Hàng đợi mail bền vững trên bảng notifications: mỗi mail là một dòng EMAIL / QUEUED,
+ * ghi trong cùng transaction với nghiệp vụ (rollback thì không có mail), rồi được
+ * {@link MailOutboxWorker} gửi ở background. Request không phải chờ SMTP.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MailOutboxService {
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationAttachmentRepository notificationAttachmentRepository;
+    private final MailOutboxWorker mailOutboxWorker;
+
+    public Notification enqueue(String to, String subject, String body, boolean html) {
+        return enqueue(null, to, subject, body, html, List.of());
+    }
+
+    public Notification enqueue(String to, String subject, String body, boolean html,
+                                List<NotificationAttachment> attachments) {
+        return enqueue(null, to, subject, body, html, attachments);
+    }
+
+    /**
+     * Đưa một mail vào hàng đợi. Worker được đánh thức ngay sau khi transaction hiện tại commit.
+     *
+     * @param user        user liên quan (có thể null)
+     * @param attachments tạo bằng {@link #inline}, {@link #inlineResource} hoặc {@link #file}
+     */
+    @Transactional
+    public Notification enqueue(User user, String to, String subject, String body, boolean html,
+                                List<NotificationAttachment> attachments) {
+        if (to == null || to.isBlank()) {
+            throw new IllegalArgumentException("Recipient is required");
+        }
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setRecipient(to);
+        notification.setType(Notification.NotificationType.EMAIL);
+        notification.setChannel("smtp");
+        notification.setSubject(subject);
+        notification.setBody(body);
+        notification.setHtml(html);
+        notification.setStatus(Notification.NotificationStatus.QUEUED);
+        notification = notificationRepository.save(notification);
+
+        if (attachments != null && !attachments.isEmpty()) {
+            for (NotificationAttachment attachment : attachments) {
+                attachment.setNotification(notification);
+            }
+            notificationAttachmentRepository.saveAll(attachments);
+        }
+        log.debug("Queued email {} to {}", notification.getId(), to);
+
+        afterCommit(mailOutboxWorker::wakeUp);
+        return notification;
+    }
+
+    // Ảnh inline, tham chiếu trong HTML bằng cid:contentId
+    public static NotificationAttachment inline(String contentId, String fileName, String contentType, byte[] content) {
+        NotificationAttachment attachment = new NotificationAttachment();
+        attachment.setContentId(contentId);
+        attachment.setFileName(fileName);
+        attachment.setContentType(contentType);
+        attachment.setContent(content);
+        return attachment;
+    }
+
+    // Ảnh inline lấy từ classpath lúc gửi (logo), không lưu bytes vào DB
+    public static NotificationAttachment inlineResource(String contentId, String fileName, String contentType, String resourcePath) {
+        NotificationAttachment attachment = new NotificationAttachment();
+        attachment.setContentId(contentId);
+        attachment.setFileName(fileName);
+        attachment.setContentType(contentType);
+        attachment.setResourcePath(resourcePath);
+        return attachment;
+    }
+
+    public static NotificationAttachment file(String fileName, String contentType, byte[] content) {
+        NotificationAttachment attachment = new NotificationAttachment();
+        attachment.setFileName(fileName);
+        attachment.setContentType(contentType);
+        attachment.setContent(content);
+        return attachment;
+    }
+}
@@ -0,0 +1,378 @@
+package com.larose.service;
+
+import com.larose.entity.Notification;
+import com.larose.entity.NotificationAttachment;
+import com.larose.repository.NotificationAttachmentRepository;
+import com.larose.repository.NotificationRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Gửi các mail QUEUED trong bảng notifications ở background.
+ * Một thread điều phối nhận (claim) tối đa workers × batch-size mail tới hạn, chia thành các lô cho
+ * một pool cố định {@code workers} thread; mỗi lô được gửi qua một kết nối SMTP duy nhất.
+ * Mail lỗi được thử lại với thời gian chờ tăng gấp đôi, quá max-attempts thì chuyển FAILED.
+ * max-per-second (nếu > 0) giới hạn tốc độ gửi của node, để chiến dịch hàng loạt không vượt quota SMTP.
+ * Mail đang gửi được giữ bằng lease trên next_attempt_at, nên node chết giữa chừng thì mail
+ * sẽ được gửi lại khi lease hết hạn.
+ */
+@Slf4j
+@Component
+public class MailOutboxWorker {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationAttachmentRepository notificationAttachmentRepository;
+    private final JavaMailSender mailSender;
+    private final MailAssetCacheService mailAssetCacheService;
+    private final TransactionTemplate requiresNew;
+
+    private final int workers;
+    private final int batchSize;
+    private final long pollMillis;
+    private final int maxAttempts;
+    private final long backoffBaseSeconds;
+    private final long backoffMaxSeconds;
+    private final long leaseSeconds;
+    private final double permitsPerMilli;
+
+    // Token bucket của giới hạn tốc độ, chỉ thread điều phối dùng
+    private double permits;
+    private long permitsRefilledAt = System.currentTimeMillis();
+
+    @Value("${app.email.from:noreply@larose.com}")
+    private String fromEmail;
+
+    @Value("${app.name:Larose Hotel}")
+    private String appName;
+
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService senders;
+    // Đã có một lượt drain đang chờ chạy thì không xếp thêm
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+
+    public MailOutboxWorker(NotificationRepository notificationRepository,
+                            NotificationAttachmentRepository notificationAttachmentRepository,
+                            JavaMailSender mailSender,
+                            MailAssetCacheService mailAssetCacheService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.mail.outbox.workers:2}") int workers,
+                            @Value("${app.mail.outbox.batch-size:20}") int batchSize,
+                            @Value("${app.mail.outbox.poll-ms:5000}") long pollMillis,
+                            @Value("${app.mail.outbox.max-attempts:6}") int maxAttempts,
+                            @Value("${app.mail.outbox.backoff-base-seconds:30}") long backoffBaseSeconds,
+                            @Value("${app.mail.outbox.backoff-max-seconds:3600}") long backoffMaxSeconds,
+                            @Value("${app.mail.outbox.lease-seconds:300}") long leaseSeconds,
+                            @Value("${app.mail.outbox.max-per-second:0}") double maxPerSecond) {
+        this.notificationRepository = notificationRepository;
+        this.notificationAttachmentRepository = notificationAttachmentRepository;
+        this.mailSender = mailSender;
+        this.mailAssetCacheService = mailAssetCacheService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.pollMillis = pollMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseSeconds = backoffBaseSeconds;
+        this.backoffMaxSeconds = backoffMaxSeconds;
+        this.leaseSeconds = leaseSeconds;
+        this.permitsPerMilli = Math.max(0, maxPerSecond) / 1000;
+
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(namedThreads("mail-outbox-dispatcher"));
+        // Pool cố định, hàng đợi không vượt quá số lô của một lượt drain
+        this.senders = new ThreadPoolExecutor(this.workers, this.workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.workers), namedThreads("mail-outbox-sender"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        dispatcher.scheduleWithFixedDelay(this::drainSafely, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        log.info("Mail outbox worker started ({} senders, batch size {})", workers, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        dispatcher.shutdownNow();
+        senders.shutdown();
+        if (!senders.awaitTermination(30, TimeUnit.SECONDS)) {
+            senders.shutdownNow();
+        }
+    }
+
+    /**
+     * Có mail mới: drain ngay thay vì chờ lượt poll kế tiếp.
+     */
+    public void wakeUp() {
+        if (drainPending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::drainSafely);
+            } catch (RejectedExecutionException e) {
+                // Đang tắt ứng dụng: mail vẫn QUEUED, lần khởi động sau sẽ gửi
+                drainPending.set(false);
+            }
+        }
+    }
+
+    private void drainSafely() {
+        drainPending.set(false);
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.error("Mail outbox drain failed: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void drain() throws InterruptedException {
+        int capacity = workers * batchSize;
+        while (!Thread.currentThread().isInterrupted()) {
+            int limit = acquirePermits(capacity);
+            List<Long> claimed = claimDue(limit);
+            releasePermits(limit - claimed.size());
+            if (claimed.isEmpty()) {
+                return;
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < claimed.size(); from += batchSize) {
+                List<Long> batch = claimed.subList(from, Math.min(from + batchSize, claimed.size()));
+                futures.add(senders.submit(() -> sendBatch(batch)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Mail outbox batch failed: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+            if (claimed.size() < limit) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Số mail được phép nhận ở lượt này (tối đa {@code wanted}); chờ tới khi có ít nhất một.
+     * Không giới hạn tốc độ thì trả về ngay {@code wanted}.
+     */
+    private int acquirePermits(int wanted) throws InterruptedException {
+        if (permitsPerMilli <= 0) {
+            return wanted;
+        }
+        refillPermits(wanted);
+        if (permits < 1) {
+            Thread.sleep((long) Math.ceil((1 - permits) / permitsPerMilli));
+            refillPermits(wanted);
+        }
+        int granted = (int) Math.max(1, Math.min(wanted, Math.floor(permits)));
+        permits -= granted;
+        return granted;
+    }
+
+    private void releasePermits(int unused) {
+        if (permitsPerMilli > 0 && unused > 0) {
+            permits += unused;
+        }
+    }
+
+    // Bucket đầy tối đa một lượt drain, nên sau thời gian rảnh chỉ được gửi dồn một lượt
+    private void refillPermits(int capacity) {
+        long now = System.currentTimeMillis();
+        permits = Math.min(capacity, permits + (now - permitsRefilledAt) * permitsPerMilli);
+        permitsRefilledAt = now;
+    }
+
+    private List<Long> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseUntil = now.plusSeconds(leaseSeconds);
+        return requiresNew.execute(status -> {
+            List<Long> due = notificationRepository.findDueIds(Notification.NotificationType.EMAIL,
+                    Notification.NotificationStatus.QUEUED, now, PageRequest.of(0, limit));
+            List<Long> claimed = new ArrayList<>(due.size());
+            for (Long id : due) {
+                if (notificationRepository.claim(id, Notification.NotificationStatus.QUEUED, now, leaseUntil) == 1) {
+                    claimed.add(id);
+                }
+            }
+            return claimed;
+        });
+    }
+
+    private void sendBatch(List<Long> ids) {
+        Map<Long, String> errors = new HashMap<>();
+        Map<Long, MimeMessage> messages = new LinkedHashMap<>();
+
+        requiresNew.executeWithoutResult(status -> {
+            Map<Long, List<NotificationAttachment>> attachments = notificationAttachmentRepository.findByNotificationIdIn(ids)
+                    .stream()
+                    .collect(Collectors.groupingBy(a -> a.getNotification().getId()));
+            for (Notification notification : notificationRepository.findAllById(ids)) {
+                try {
+                    messages.put(notification.getId(),
+                            toMimeMessage(notification, attachments.getOrDefault(notification.getId(), List.of())));
+                } catch (MessagingException | RuntimeException e) {
+                    errors.put(notification.getId(), "Invalid message: " + e.getMessage());
+                }
+            }
+        });
+
+        Map<Long, String> messageIds = new HashMap<>();
+        if (!messages.isEmpty()) {
+            try {
+                // Một lần gọi = một kết nối SMTP cho cả lô
+                mailSender.send(messages.values().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                Map<Object, Exception> failed = e.getFailedMessages();
+                messages.forEach((id, message) -> {
+                    if (failed.containsKey(message)) {
+                        errors.put(id, failed.get(message).getMessage());
+                    }
+                });
+                if (failed.isEmpty()) {
+                    messages.keySet().forEach(id -> errors.put(id, e.getMessage()));
+                }
+            } catch (MailException e) {
+                // Không kết nối / xác thực được: cả lô thử lại sau
+                messages.keySet().forEach(id -> errors.put(id, e.getMessage()));
+            }
+            messages.forEach((id, message) -> {
+                if (!errors.containsKey(id)) {
+                    messageIds.put(id, messageId(message));
+                }
+            });
+        }
+
+        recordResults(ids, messageIds, errors);
+    }
+
+    private void recordResults(List<Long> ids, Map<Long, String> messageIds, Map<Long, String> errors) {
+        LocalDateTime now = LocalDateTime.now();
+        AtomicInteger sent = new AtomicInteger();
+        requiresNew.executeWithoutResult(status -> {
+            for (Notification notification : notificationRepository.findAllById(ids)) {
+                Long id = notification.getId();
+                if (messageIds.containsKey(id)) {
+                    notification.setStatus(Notification.NotificationStatus.SENT);
+                    notification.setSentAt(now);
+                    notification.setProviderMsgId(messageIds.get(id));
+                    notification.setNextAttemptAt(null);
+                    notification.setLastError(null);
+                    sent.incrementAndGet();
+                } else {
+                    String error = errors.getOrDefault(id, "Not sent");
+                    int attempt = notification.getAttempts();
+                    notification.setLastError(truncate(error));
+                    if (attempt >= maxAttempts) {
+                        notification.setStatus(Notification.NotificationStatus.FAILED);
+                        notification.setNextAttemptAt(null);
+                        log.error("Email {} to {} failed after {} attempts: {}", id, notification.getRecipient(), attempt, error);
+                    } else {
+                        notification.setNextAttemptAt(now.plusSeconds(backoffSeconds(attempt)));
+                        log.warn("Email {} to {} failed (attempt {}), retrying later: {}", id, notification.getRecipient(), attempt, error);
+                    }
+                }
+            }
+        });
+        log.debug("Mail outbox batch: {} sent, {} failed", sent.get(), ids.size() - sent.get());
+    }
+
+    private MimeMessage toMimeMessage(Notification notification, List<NotificationAttachment> attachments)
+            throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, !attachments.isEmpty(), "UTF-8");
+        try {
+            helper.setFrom(fromEmail, appName);
+        } catch (java.io.UnsupportedEncodingException e) {
+            helper.setFrom(fromEmail);
+        }
+        helper.setTo(notification.getRecipient());
+        helper.setSubject(notification.getSubject() != null ? notification.getSubject() : "");
+        helper.setText(notification.getBody() != null ? notification.getBody() : "", Boolean.TRUE.equals(notification.getHtml()));
+
+        // setText phải gọi trước addInline
+        for (NotificationAttachment attachment : attachments) {
+            InputStreamSource source = attachmentSource(attachment);
+            if (source == null) {
+                continue;
+            }
+            if (attachment.getContentId() != null) {
+                helper.addInline(attachment.getContentId(), source, attachment.getContentType());
+            } else {
+                helper.addAttachment(attachment.getFileName(), source, attachment.getContentType());
+            }
+        }
+        return message;
+    }
+
+    private InputStreamSource attachmentSource(NotificationAttachment attachment) {
+        byte[] content = attachment.getContent();
+        // Ảnh tĩnh (logo) lấy từ cache, không đọc lại classpath cho mỗi mail
+        if ((content == null || content.length == 0) && attachment.getResourcePath() != null) {
+            content = mailAssetCacheService.resource(attachment.getResourcePath());
+        }
+        if (content == null || content.length == 0) {
+            return null;
+        }
+        String fileName = attachment.getFileName();
+        return new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+    }
+
+    private long backoffSeconds(int attempt) {
+        long delay = backoffBaseSeconds << Math.min(attempt - 1, 20);
+        return Math.min(delay, backoffMaxSeconds);
+    }
+
+    private static String messageId(MimeMessage message) {
+        try {
+            return message.getMessageID();
+        } catch (MessagingException e) {
+            return null;
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,315 @@
+package com.larose.service;
+
+import com.larose.dto.projection.CampaignRecipientProjection;
+import com.larose.dto.request.CampaignRequest;
+import com.larose.dto.response.CampaignResponse;
+import com.larose.entity.Booking;
+import com.larose.entity.Notification;
+import com.larose.entity.NotificationCampaign;
+import com.larose.repository.BookingRepository;
+import com.larose.repository.NotificationCampaignRepository;
+import com.larose.repository.NotificationRepository;
+import com.larose.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Chiến dịch gửi mail hàng loạt cho khách có booking sắp tới (ví dụ thông báo đổi chính sách).
+ * Người nhận được đọc theo từng đợt keyset trên user id; mỗi đợt được render song song rồi ghi vào
+ * outbox (notifications, cờ bulk) cùng với điểm tiếp tục last_user_id trong một transaction,
+ * nên chạy lại sau khi sập sẽ tiếp tục đúng chỗ mà không gửi trùng.
+ * Việc gửi thật do {@link MailOutboxWorker} đảm nhận (pool kết nối SMTP, giới hạn tốc độ, thử lại).
+ */
+@Slf4j
+@Service
+public class NotificationCampaignService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final List<Booking.Status> DEFAULT_BOOKING_STATUSES =
+            List.of(Booking.Status.pending, Booking.Status.confirmed);
+
+    private final NotificationCampaignRepository campaignRepository;
+    private final NotificationRepository notificationRepository;
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+    private final EmailTemplateService emailTemplateService;
+    private final MailOutboxWorker mailOutboxWorker;
+    private final TransactionTemplate requiresNew;
+    private final int chunkSize;
+
+    @Value("${app.name:Larose Hotel}")
+    private String appName;
+
+    @Value("${app.frontend.base-url:http://localhost:5173}")
+    private String baseUrl;
+
+    // Một chiến dịch chạy tại một thời điểm; chiến dịch sau xếp hàng chờ
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "notification-campaign");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NotificationCampaignService(NotificationCampaignRepository campaignRepository,
+                                       NotificationRepository notificationRepository,
+                                       BookingRepository bookingRepository,
+                                       UserRepository userRepository,
+                                       EmailTemplateService emailTemplateService,
+                                       MailOutboxWorker mailOutboxWorker,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.mail.campaign.chunk-size:500}") int chunkSize) {
+        this.campaignRepository = campaignRepository;
+        this.notificationRepository = notificationRepository;
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+        this.emailTemplateService = emailTemplateService;
+        this.mailOutboxWorker = mailOutboxWorker;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Chiến dịch đang chạy dở khi ứng dụng tắt / sập được chạy tiếp từ last_user_id.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeRunning() {
+        for (NotificationCampaign campaign : campaignRepository.findByStatus(NotificationCampaign.CampaignStatus.RUNNING)) {
+            log.info("Resuming campaign {} after user {}", campaign.getId(), campaign.getLastUserId());
+            submit(campaign.getId());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+
+    @Transactional
+    public CampaignResponse create(CampaignRequest request, String createdByEmail) {
+        if (request.getName() == null || request.getName().isBlank()) {
+            throw new IllegalArgumentException("Campaign name is required");
+        }
+        if (!emailTemplateService.hasTemplate(request.getTemplateName())) {
+            throw new IllegalArgumentException("Email template not found: " + request.getTemplateName());
+        }
+        if (request.getCheckInFrom() == null || request.getCheckInTo() == null
+                || request.getCheckInTo().isBefore(request.getCheckInFrom())) {
+            throw new IllegalArgumentException("Invalid check-in range");
+        }
+        List<Booking.Status> statuses = parseStatuses(request.getBookingStatuses());
+
+        NotificationCampaign campaign = new NotificationCampaign();
+        campaign.setName(request.getName().trim());
+        campaign.setTemplateName(request.getTemplateName());
+        campaign.setCheckInFrom(request.getCheckInFrom());
+        campaign.setCheckInTo(request.getCheckInTo());
+        campaign.setBookingStatuses(statuses.stream().map(Enum::name).collect(Collectors.joining(",")));
+        if (createdByEmail != null) {
+            userRepository.findByEmail(createdByEmail).ifPresent(campaign::setCreatedBy);
+        }
+        campaign = campaignRepository.save(campaign);
+
+        Long campaignId = campaign.getId();
+        afterCommit(() -> submit(campaignId));
+        log.info("Created campaign {} ({}) with template {}", campaignId, campaign.getName(), campaign.getTemplateName());
+        return toResponse(campaign);
+    }
+
+    @Transactional(readOnly = true)
+    public CampaignResponse get(Long id) {
+        return toResponse(findCampaign(id));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<CampaignResponse> list(Pageable pageable) {
+        return campaignRepository.findAllByOrderByCreatedAtDesc(pageable).map(this::toResponse);
+    }
+
+    /**
+     * Dừng chiến dịch: không đưa thêm người nhận vào outbox và bỏ các mail chưa gửi.
+     */
+    @Transactional
+    public CampaignResponse cancel(Long id) {
+        NotificationCampaign campaign = findCampaign(id);
+        if (campaign.getStatus() != NotificationCampaign.CampaignStatus.RUNNING
+                && campaign.getStatus() != NotificationCampaign.CampaignStatus.COMPLETED) {
+            throw new IllegalArgumentException("Campaign is already " + campaign.getStatus());
+        }
+        campaign.setStatus(NotificationCampaign.CampaignStatus.CANCELLED);
+        campaign.setCompletedAt(LocalDateTime.now());
+        int dropped = notificationRepository.failQueuedByCampaign(id, Notification.NotificationStatus.QUEUED,
+                Notification.NotificationStatus.FAILED, "Campaign cancelled");
+        log.info("Cancelled campaign {}, dropped {} queued emails", id, dropped);
+        return toResponse(campaign);
+    }
+
+    private void submit(Long campaignId) {
+        try {
+            runner.execute(() -> run(campaignId));
+        } catch (RejectedExecutionException e) {
+            // Đang tắt ứng dụng: chiến dịch vẫn RUNNING, lần khởi động sau sẽ chạy tiếp
+            log.warn("Campaign {} not started, application is shutting down", campaignId);
+        }
+    }
+
+    void run(Long campaignId) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                NotificationCampaign campaign = campaignRepository.findById(campaignId).orElse(null);
+                if (campaign == null || campaign.getStatus() != NotificationCampaign.CampaignStatus.RUNNING) {
+                    return;
+                }
+                List<CampaignRecipientProjection> recipients = bookingRepository.findCampaignRecipients(
+                        campaign.getCheckInFrom(), campaign.getCheckInTo(), parseStatuses(campaign.getBookingStatuses()),
+                        campaign.getLastUserId(), PageRequest.of(0, chunkSize));
+                if (recipients.isEmpty()) {
+                    finish(campaign, NotificationCampaign.CampaignStatus.COMPLETED, null);
+                    log.info("Campaign {} completed, {} emails enqueued", campaignId, campaign.getEnqueuedCount());
+                    return;
+                }
+                enqueueChunk(campaign, recipients, render(campaign.getTemplateName(), recipients));
+                mailOutboxWorker.wakeUp();
+            }
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Node khác (hoặc thao tác huỷ) vừa cập nhật chiến dịch; đợt này đã rollback, không gửi trùng
+            log.warn("Campaign {} was updated concurrently, stopping this runner", campaignId);
+        } catch (RuntimeException e) {
+            log.error("Campaign {} failed: {}", campaignId, e.getMessage(), e);
+            campaignRepository.findById(campaignId).ifPresent(campaign -> {
+                try {
+                    finish(campaign, NotificationCampaign.CampaignStatus.FAILED, e.getMessage());
+                } catch (RuntimeException ignored) {
+                    // Giữ RUNNING; lần khởi động sau sẽ thử lại
+                }
+            });
+        }
+    }
+
+    // Render song song: template đã compile sẵn và thread-safe, mỗi thread dùng buffer riêng
+    private List<EmailTemplateService.RenderedEmail> render(String templateName, List<CampaignRecipientProjection> recipients) {
+        return recipients.parallelStream()
+                .map(recipient -> {
+                    Map<String, Object> values = new HashMap<>();
+                    values.put("name", recipient.getFullName() != null ? recipient.getFullName() : "Quý khách");
+                    values.put("email", recipient.getEmail());
+                    values.put("checkIn", recipient.getCheckIn());
+                    values.put("appName", appName);
+                    values.put("baseUrl", baseUrl);
+                    return emailTemplateService.render(templateName, values);
+                })
+                .toList();
+    }
+
+    // Mail của cả đợt và điểm tiếp tục được ghi cùng một transaction
+    private void enqueueChunk(NotificationCampaign snapshot, List<CampaignRecipientProjection> recipients,
+                              List<EmailTemplateService.RenderedEmail> emails) {
+        requiresNew.executeWithoutResult(status -> {
+            NotificationCampaign campaign = campaignRepository.findById(snapshot.getId())
+                    .orElseThrow(() -> new IllegalArgumentException("Campaign not found: " + snapshot.getId()));
+            if (!Objects.equals(campaign.getVersion(), snapshot.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(NotificationCampaign.class, snapshot.getId());
+            }
+            List<Notification> notifications = new ArrayList<>(recipients.size());
+            for (int i = 0; i < recipients.size(); i++) {
+                CampaignRecipientProjection recipient = recipients.get(i);
+                Notification notification = new Notification();
+                notification.setUser(userRepository.getReferenceById(recipient.getUserId()));
+                notification.setCampaign(campaign);
+                notification.setRecipient(recipient.getEmail());
+                notification.setType(Notification.NotificationType.EMAIL);
+                notification.setChannel("smtp");
+                notification.setSubject(emails.get(i).subject());
+                notification.setBody(emails.get(i).body());
+                notification.setHtml(true);
+                notification.setBulk(true);
+                notification.setStatus(Notification.NotificationStatus.QUEUED);
+                notifications.add(notification);
+            }
+            notificationRepository.saveAll(notifications);
+            campaign.setLastUserId(recipients.get(recipients.size() - 1).getUserId());
+            campaign.setEnqueuedCount(campaign.getEnqueuedCount() + notifications.size());
+        });
+    }
+
+    private void finish(NotificationCampaign snapshot, NotificationCampaign.CampaignStatus status, String error) {
+        requiresNew.executeWithoutResult(tx -> campaignRepository.findById(snapshot.getId()).ifPresent(campaign -> {
+            if (campaign.getStatus() != NotificationCampaign.CampaignStatus.RUNNING) {
+                return;
+            }
+            campaign.setStatus(status);
+            campaign.setCompletedAt(LocalDateTime.now());
+            campaign.setLastError(error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        }));
+    }
+
+    private NotificationCampaign findCampaign(Long id) {
+        return campaignRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Campaign not found: " + id));
+    }
+
+    private static List<Booking.Status> parseStatuses(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            return DEFAULT_BOOKING_STATUSES;
+        }
+        List<Booking.Status> statuses = new ArrayList<>();
+        for (String value : values) {
+            try {
+                statuses.add(Booking.Status.valueOf(value.trim().toLowerCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid booking status: " + value);
+            }
+        }
+        return statuses;
+    }
+
+    private static List<Booking.Status> parseStatuses(String csv) {
+        return parseStatuses(Arrays.asList(csv.split(",")));
+    }
+
+    private CampaignResponse toResponse(NotificationCampaign campaign) {
+        Map<Notification.NotificationStatus, Long> counts = new EnumMap<>(Notification.NotificationStatus.class);
+        if (campaign.getId() != null) {
+            for (Object[] row : notificationRepository.countByCampaignGroupByStatus(campaign.getId())) {
+                counts.put((Notification.NotificationStatus) row[0], (Long) row[1]);
+            }
+        }
+        return CampaignResponse.builder()
+                .id(campaign.getId())
+                .name(campaign.getName())
+                .templateName(campaign.getTemplateName())
+                .checkInFrom(campaign.getCheckInFrom())
+                .checkInTo(campaign.getCheckInTo())
+                .bookingStatuses(Arrays.asList(campaign.getBookingStatuses().split(",")))
+                .status(campaign.getStatus().name())
+                .enqueuedCount(campaign.getEnqueuedCount())
+                .sentCount(counts.getOrDefault(Notification.NotificationStatus.SENT, 0L))
+                .failedCount(counts.getOrDefault(Notification.NotificationStatus.FAILED, 0L))
+                .queuedCount(counts.getOrDefault(Notification.NotificationStatus.QUEUED, 0L))
+                .lastError(campaign.getLastError())
+                .createdAt(campaign.getCreatedAt())
+                .completedAt(campaign.getCompletedAt())
+                .build();
+    }
+}
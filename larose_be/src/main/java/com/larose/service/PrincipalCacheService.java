@@ -0,0 +1,90 @@
+package com.larose.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Cache UserDetails theo email cho JwtAuthFilter, để mỗi request có token không phải
+ * query users + roles. Giới hạn số phần tử (bỏ phần tử cũ nhất) và thời gian sống của mỗi phần tử.
+ * Phải invalidate khi user bị khoá/xoá, đổi role hoặc đổi mật khẩu.
+ */
+@Service
+public class PrincipalCacheService {
+
+    private final UserDetailsService userDetailsService;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    // Tăng mỗi lần invalidate; kết quả load trước lần invalidate không được đưa vào cache
+    private long invalidations;
+
+    public PrincipalCacheService(UserDetailsService userDetailsService,
+                                 @Value("${app.security.principal-cache.ttl-seconds:300}") long ttlSeconds,
+                                 @Value("${app.security.principal-cache.max-size:10000}") int maxSize) {
+        this.userDetailsService = userDetailsService;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * UserDetails của user đang active, load từ DB khi chưa có hoặc đã hết hạn.
+     * User không tồn tại / bị khoá thì ném UsernameNotFoundException như loadUserByUsername.
+     */
+    public UserDetails get(String email) {
+        long now = System.currentTimeMillis();
+        long version;
+        synchronized (entries) {
+            Entry entry = entries.get(email);
+            if (entry != null && entry.expiresAt > now) {
+                return entry.userDetails;
+            }
+            version = invalidations;
+        }
+        UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        synchronized (entries) {
+            if (version == invalidations) {
+                entries.put(email, new Entry(userDetails, now + ttlMillis));
+            }
+        }
+        return userDetails;
+    }
+
+    /**
+     * Xoá user khỏi cache sau khi transaction hiện tại commit.
+     */
+    public void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (entries) {
+                invalidations++;
+                entries.remove(email);
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            synchronized (entries) {
+                invalidations++;
+                entries.clear();
+            }
+        });
+    }
+
+    private record Entry(UserDetails userDetails, long expiresAt) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.larose.service;
+
+import com.larose.entity.Review;
+import com.larose.entity.RoomRatingAggregate;
+import com.larose.entity.RoomTypeRatingAggregate;
+import com.larose.repository.RoomRatingAggregateRepository;
+import com.larose.repository.RoomTypeRatingAggregateRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tổng hợp rating (số review, tổng điểm, phân bố 1-5 sao) theo phòng và theo loại phòng.
+ * Chỉ review published có gắn phòng được tính. Mỗi thay đổi review cộng/trừ phần đóng góp
+ * của nó trong cùng transaction, nên đọc điểm trung bình hay sắp phòng theo rating
+ * không phải quét bảng reviews.
+ */
+@Service
+@RequiredArgsConstructor
+public class RatingAggregateService {
+
+    private final RoomRatingAggregateRepository roomRatingAggregateRepository;
+    private final RoomTypeRatingAggregateRepository roomTypeRatingAggregateRepository;
+    private final RoomResponseCacheService roomResponseCacheService;
+
+    /**
+     * Phần đóng góp hiện tại của review vào aggregate, null nếu review không được tính.
+     * Phải lấy trước khi sửa review để so sánh với trạng thái sau khi sửa.
+     */
+    public Contribution contributionOf(Review review) {
+        if (review == null || review.getStatus() != Review.ReviewStatus.published
+                || review.getRoom() == null || review.getRating() == null) {
+            return null;
+        }
+        Long roomTypeId = review.getRoom().getRoomType() != null ? review.getRoom().getRoomType().getId() : null;
+        return new Contribution(review.getRoom().getId(), roomTypeId, review.getRating());
+    }
+
+    /**
+     * Trừ phần đóng góp cũ và cộng phần đóng góp mới (null = không tính).
+     */
+    @Transactional
+    public void apply(Contribution before, Contribution after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        Map<Long, int[]> roomDeltas = new HashMap<>();
+        Map<Long, int[]> roomTypeDeltas = new HashMap<>();
+        if (before != null) {
+            addDelta(roomDeltas, before.roomId(), before.rating(), -1);
+            addDelta(roomTypeDeltas, before.roomTypeId(), before.rating(), -1);
+        }
+        if (after != null) {
+            addDelta(roomDeltas, after.roomId(), after.rating(), 1);
+            addDelta(roomTypeDeltas, after.roomTypeId(), after.rating(), 1);
+        }
+        roomDeltas.forEach((roomId, d) ->
+                roomRatingAggregateRepository.addDelta(roomId, d[0], d[1], d[2], d[3], d[4], d[5], d[6]));
+        roomTypeDeltas.forEach((roomTypeId, d) ->
+                roomTypeRatingAggregateRepository.addDelta(roomTypeId, d[0], d[1], d[2], d[3], d[4], d[5], d[6]));
+        // Danh sách phòng hiển thị số review / điểm trung bình
+        roomResponseCacheService.evict(roomDeltas.keySet());
+    }
+
+    /**
+     * Phòng đổi loại: chuyển toàn bộ rating của phòng từ loại cũ sang loại mới.
+     */
+    @Transactional
+    public void onRoomTypeChanged(Long roomId, Long oldRoomTypeId, Long newRoomTypeId) {
+        if (Objects.equals(oldRoomTypeId, newRoomTypeId)) {
+            return;
+        }
+        RoomRatingAggregate room = roomRatingAggregateRepository.findById(roomId).orElse(null);
+        if (room == null || room.getReviewCount() == 0) {
+            return;
+        }
+        if (oldRoomTypeId != null) {
+            roomTypeRatingAggregateRepository.addDelta(oldRoomTypeId, -room.getReviewCount(), -room.getRatingSum(),
+                    -room.getStars1(), -room.getStars2(), -room.getStars3(), -room.getStars4(), -room.getStars5());
+        }
+        if (newRoomTypeId != null) {
+            roomTypeRatingAggregateRepository.addDelta(newRoomTypeId, room.getReviewCount(), room.getRatingSum(),
+                    room.getStars1(), room.getStars2(), room.getStars3(), room.getStars4(), room.getStars5());
+        }
+    }
+
+    public Optional<RoomRatingAggregate> getRoomAggregate(Long roomId) {
+        return roomRatingAggregateRepository.findById(roomId);
+    }
+
+    public Map<Long, RoomRatingAggregate> getRoomAggregates(Collection<Long> roomIds) {
+        if (roomIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return roomRatingAggregateRepository.findByRoomIdIn(roomIds).stream()
+                .collect(Collectors.toMap(RoomRatingAggregate::getRoomId, Function.identity()));
+    }
+
+    public Map<Long, RoomTypeRatingAggregate> getRoomTypeAggregates(Collection<Long> roomTypeIds) {
+        if (roomTypeIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return roomTypeRatingAggregateRepository.findByRoomTypeIdIn(roomTypeIds).stream()
+                .collect(Collectors.toMap(RoomTypeRatingAggregate::getRoomTypeId, Function.identity()));
+    }
+
+    /**
+     * Điểm trung bình làm tròn 1 chữ số thập phân, null khi chưa có review.
+     */
+    public static Double average(Integer reviewCount, Integer ratingSum) {
+        if (reviewCount == null || reviewCount <= 0 || ratingSum == null) {
+            return null;
+        }
+        return Math.round(ratingSum * 10.0 / reviewCount) / 10.0;
+    }
+
+    // delta: [count, sum, stars_1..stars_5]
+    private static void addDelta(Map<Long, int[]> deltas, Long id, int rating, int sign) {
+        if (id == null) {
+            return;
+        }
+        int[] delta = deltas.computeIfAbsent(id, key -> new int[7]);
+        delta[0] += sign;
+        delta[1] += sign * rating;
+        if (rating >= 1 && rating <= 5) {
+            delta[1 + rating] += sign;
+        }
+    }
+
+    public record Contribution(Long roomId, Long roomTypeId, int rating) {
+    }
+}
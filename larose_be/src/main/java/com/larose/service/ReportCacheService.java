@@ -0,0 +1,136 @@
+package com.larose.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.larose.entity.ReportsCache;
+import com.larose.repository.ReportsCacheRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Cache kết quả thống kê trong bảng reports_cache.
+ * Mỗi dòng là payload JSON của một endpoint với tham số đã chuẩn hoá (khoảng ngày cụ thể),
+ * kèm khoảng ngày dữ liệu mà nó phụ thuộc. Booking/transaction thay đổi sẽ xoá các dòng
+ * có khoảng ngày giao với ngày bị ảnh hưởng, sau khi transaction nghiệp vụ commit.
+ */
+@Slf4j
+@Service
+public class ReportCacheService {
+
+    private final ReportsCacheRepository reportsCacheRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate requiresNew;
+    private final long maxAgeMinutes;
+
+    // Tăng mỗi lần xoá cache; kết quả tính trước lần xoá không được ghi lại
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ReportCacheService(ReportsCacheRepository reportsCacheRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.reports-cache.max-age-minutes:1440}") long maxAgeMinutes) {
+        this.reportsCacheRepository = reportsCacheRepository;
+        this.objectMapper = objectMapper;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAgeMinutes = maxAgeMinutes;
+    }
+
+    /**
+     * Trả payload đã cache của {@code name}, hoặc tính bằng {@code loader} rồi lưu lại.
+     *
+     * @param windowStart ngày đầu của dữ liệu báo cáo phụ thuộc (null = mọi ngày)
+     * @param windowEnd   ngày cuối của dữ liệu báo cáo phụ thuộc (null = mọi ngày)
+     */
+    public <T> T get(String name, LocalDate windowStart, LocalDate windowEnd,
+                     TypeReference<T> type, Supplier<T> loader) {
+        ReportsCache cached = reportsCacheRepository.findByName(name).orElse(null);
+        if (cached != null && isFresh(cached)) {
+            try {
+                return objectMapper.readValue(cached.getPayload(), type);
+            } catch (JsonProcessingException e) {
+                log.warn("Discarding unreadable report cache entry {}: {}", name, e.getMessage());
+            }
+        }
+
+        long version = evictions.get();
+        T value = loader.get();
+        if (version == evictions.get()) {
+            put(name, windowStart, windowEnd, value);
+        }
+        return value;
+    }
+
+    /**
+     * Xoá (sau khi commit) các báo cáo phụ thuộc vào bất kỳ ngày nào trong {@code dates}.
+     * Ngày null bị bỏ qua; cả khoảng [min, max] của các ngày còn lại được coi là bị ảnh hưởng.
+     */
+    public void evictDates(LocalDate... dates) {
+        List<LocalDate> present = Arrays.stream(dates).filter(Objects::nonNull).toList();
+        if (present.isEmpty()) {
+            return;
+        }
+        LocalDate from = present.stream().min(Comparator.naturalOrder()).get();
+        LocalDate to = present.stream().max(Comparator.naturalOrder()).get();
+        afterCommit(() -> evict(from, to));
+    }
+
+    /**
+     * Xoá toàn bộ cache (ví dụ khi số phòng thay đổi).
+     */
+    public void evictAll() {
+        afterCommit(() -> {
+            evictions.incrementAndGet();
+            try {
+                requiresNew.executeWithoutResult(status -> reportsCacheRepository.deleteAllInBatch());
+            } catch (RuntimeException e) {
+                log.error("Failed to clear report cache: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    private void evict(LocalDate from, LocalDate to) {
+        evictions.incrementAndGet();
+        try {
+            Integer removed = requiresNew.execute(status -> reportsCacheRepository.deleteOverlapping(from, to));
+            log.debug("Evicted {} report cache entries overlapping {} - {}", removed, from, to);
+        } catch (RuntimeException e) {
+            log.error("Failed to evict report cache for {} - {}: {}", from, to, e.getMessage(), e);
+        }
+    }
+
+    private void put(String name, LocalDate windowStart, LocalDate windowEnd, Object value) {
+        try {
+            String payload = objectMapper.writeValueAsString(value);
+            LocalDateTime now = LocalDateTime.now();
+            requiresNew.executeWithoutResult(status -> {
+                reportsCacheRepository.upsert(name, payload, now, windowStart, windowEnd);
+                reportsCacheRepository.deleteGeneratedBefore(now.minusMinutes(maxAgeMinutes));
+            });
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Cache chỉ là phụ, lỗi ghi không làm hỏng response
+            log.warn("Failed to store report cache entry {}: {}", name, e.getMessage());
+        }
+    }
+
+    private boolean isFresh(ReportsCache cached) {
+        return cached.getGeneratedAt() != null
+                && cached.getGeneratedAt().isAfter(LocalDateTime.now().minusMinutes(maxAgeMinutes));
+    }
+}
@@ -0,0 +1,224 @@
+package com.larose.service;
+
+import com.larose.entity.Booking;
+import com.larose.entity.DailyRevenue;
+import com.larose.entity.Transaction;
+import com.larose.repository.DailyRevenueRepository;
+import com.larose.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Bảng daily_revenue: doanh thu phòng, dịch vụ và transaction đã cộng sẵn theo ngày.
+ * Khi booking/transaction đổi trạng thái, các ngày bị ảnh hưởng được tính lại trong DB
+ * (sau khi transaction nghiệp vụ commit), nên thống kê và báo cáo VAT chỉ đọc vài trăm dòng.
+ * Lần tính lại nào lỗi thì các ngày đó được ghi vào daily_revenue_dirty và một thread nền thử lại định kỳ.
+ */
+@Slf4j
+@Service
+public class RevenueRollupService {
+
+    private final DailyRevenueRepository dailyRevenueRepository;
+    private final TransactionRepository transactionRepository;
+    private final ReportCacheService reportCacheService;
+    private final TransactionTemplate requiresNew;
+    private final long retryMillis;
+
+    // Ngày rebuild lỗi mà cũng không ghi được vào daily_revenue_dirty (DB mất kết nối): thử lại từ bộ nhớ
+    private final Set<LocalDate> pendingDays = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService retrier = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "revenue-rollup-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RevenueRollupService(DailyRevenueRepository dailyRevenueRepository,
+                                TransactionRepository transactionRepository,
+                                ReportCacheService reportCacheService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.revenue.retry-ms:60000}") long retryMillis) {
+        this.dailyRevenueRepository = dailyRevenueRepository;
+        this.transactionRepository = transactionRepository;
+        this.reportCacheService = reportCacheService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.retryMillis = Math.max(retryMillis, 1000);
+    }
+
+    /**
+     * Lần đầu chạy (bảng rỗng): dựng rollup cho toàn bộ sổ hiện có.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (dailyRevenueRepository.count() > 0) {
+            return;
+        }
+        List<Object[]> range = dailyRevenueRepository.findLedgerDateRange();
+        if (range.isEmpty() || range.get(0)[0] == null) {
+            return;
+        }
+        LocalDate start = toLocalDate(range.get(0)[0]);
+        LocalDate end = toLocalDate(range.get(0)[1]);
+        int days = rebuild(start, end);
+        log.info("Daily revenue rollup built for {} days ({} - {})", days, start, end);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRetry() {
+        retrier.scheduleWithFixedDelay(this::retryDirtyDays, retryMillis, retryMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        retrier.shutdownNow();
+    }
+
+    /**
+     * Tính lại toàn bộ các ngày trong [startDate, endDate] từ bookings/transactions.
+     *
+     * @return số ngày có doanh thu
+     */
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("startDate must be before or equal to endDate");
+        }
+        Integer rows = requiresNew.execute(status -> {
+            // Các ngày này đang được tính lại nên không còn cần thử lại nữa
+            dailyRevenueRepository.clearDirtyBetween(startDate, endDate);
+            dailyRevenueRepository.deleteBetween(startDate, endDate);
+            // Báo cáo đã cache của các ngày này bị xoá ngay sau khi rollup mới commit
+            reportCacheService.evictDates(startDate, endDate);
+            return dailyRevenueRepository.aggregateBetween(startDate, endDate, endDate.plusDays(1));
+        });
+        return rows != null ? rows : 0;
+    }
+
+    public List<DailyRevenue> getDays(LocalDate startDate, LocalDate endDate) {
+        return dailyRevenueRepository.findByRevenueDateBetweenOrderByRevenueDateAsc(startDate, endDate);
+    }
+
+    public BigDecimal sumRevenue(LocalDate startDate, LocalDate endDate) {
+        return dailyRevenueRepository.sumRevenueBetween(startDate, endDate);
+    }
+
+    /**
+     * Booking đổi trạng thái / giá / dịch vụ: ngày check_out (cũ và mới) và ngày của các
+     * transaction success thuộc booking đều phải tính lại.
+     */
+    public void onBookingChanged(Booking booking, LocalDate previousCheckOut) {
+        if (booking == null) {
+            return;
+        }
+        Set<LocalDate> days = new HashSet<>();
+        addIfPresent(days, booking.getCheckOut());
+        addIfPresent(days, previousCheckOut);
+        if (booking.getId() != null) {
+            for (LocalDateTime createdAt : transactionRepository.findSuccessCreatedAtByBookingId(booking.getId())) {
+                addIfPresent(days, createdAt != null ? createdAt.toLocalDate() : null);
+            }
+        }
+        refreshAfterCommit(days);
+    }
+
+    public void onBookingChanged(Booking booking) {
+        onBookingChanged(booking, null);
+    }
+
+    /**
+     * Transaction đổi trạng thái (thành hoặc khỏi success).
+     */
+    public void onTransactionChanged(Transaction transaction) {
+        if (transaction == null || transaction.getCreatedAt() == null) {
+            return;
+        }
+        refreshAfterCommit(Set.of(transaction.getCreatedAt().toLocalDate()));
+    }
+
+    private void refreshAfterCommit(Set<LocalDate> days) {
+        if (days.isEmpty()) {
+            return;
+        }
+        List<LocalDate> sorted = new ArrayList<>(days);
+        Collections.sort(sorted);
+        Runnable refresh = () -> {
+            try {
+                for (LocalDate day : sorted) {
+                    rebuild(day, day);
+                }
+            } catch (RuntimeException e) {
+                // Không làm hỏng nghiệp vụ đã commit: ghi lại các ngày để thread nền tính lại sau
+                log.error("Failed to refresh daily revenue for {}: {}", sorted, e.getMessage(), e);
+                markDirty(sorted);
+            }
+        };
+        afterCommit(refresh);
+    }
+
+    private void markDirty(List<LocalDate> days) {
+        try {
+            requiresNew.executeWithoutResult(status -> days.forEach(dailyRevenueRepository::markDirty));
+        } catch (RuntimeException e) {
+            log.warn("Could not record dirty revenue days {}, keeping them in memory: {}", days, e.getMessage());
+            pendingDays.addAll(days);
+        }
+    }
+
+    /**
+     * Tính lại các ngày trong daily_revenue_dirty (của mọi node) và các ngày chỉ còn trong bộ nhớ.
+     */
+    private void retryDirtyDays() {
+        Set<LocalDate> days = new TreeSet<>(pendingDays);
+        try {
+            for (Object day : dailyRevenueRepository.findDirtyDays()) {
+                days.add(toLocalDate(day));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read dirty revenue days: {}", e.getMessage());
+        }
+        for (LocalDate day : days) {
+            try {
+                rebuild(day, day);
+                pendingDays.remove(day);
+            } catch (RuntimeException e) {
+                // Thường là DB đang lỗi: dừng lượt này, lần sau thử lại từ đầu
+                log.warn("Retry of daily revenue for {} failed: {}", day, e.getMessage());
+                return;
+            }
+        }
+        if (!days.isEmpty()) {
+            log.info("Daily revenue recomputed for {} dirty days", days.size());
+        }
+    }
+
+    private static void addIfPresent(Set<LocalDate> days, LocalDate day) {
+        if (day != null) {
+            days.add(day);
+        }
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        return ((Date) value).toLocalDate();
+    }
+}
@@ -0,0 +1,91 @@
+package com.larose.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Cache trong bộ nhớ các trang feed review / tổng hợp rating đã render theo phòng,
+ * để trang chi tiết phòng không phải query và parse lại JSON images/videos mỗi lần.
+ * Giá trị trả về được dùng chung giữa các request nên chỉ được đọc, không được sửa.
+ * Mọi thay đổi review / phản hồi của một phòng phải gọi {@link #invalidateRoom(Long)}.
+ */
+@Service
+public class ReviewFeedCacheService {
+
+    private final long ttlMillis;
+    private final Map<Key, Entry> entries;
+
+    // Tăng mỗi lần invalidate; kết quả load trước lần invalidate không được đưa vào cache
+    private long invalidations;
+
+    public ReviewFeedCacheService(@Value("${app.reviews.feed-cache.ttl-seconds:600}") long ttlSeconds,
+                                  @Value("${app.reviews.feed-cache.max-size:2000}") int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Giá trị đã cache của {@code name} trong phòng {@code roomId}, hoặc load bằng {@code loader}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Long roomId, String name, Supplier<T> loader) {
+        Key key = new Key(roomId, name);
+        long now = System.currentTimeMillis();
+        long version;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return (T) entry.value;
+            }
+            version = invalidations;
+        }
+        T value = loader.get();
+        synchronized (entries) {
+            if (version == invalidations) {
+                entries.put(key, new Entry(value, now + ttlMillis));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Xoá mọi trang đã cache của phòng sau khi transaction hiện tại commit.
+     */
+    public void invalidateRoom(Long roomId) {
+        if (roomId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (entries) {
+                invalidations++;
+                entries.keySet().removeIf(key -> roomId.equals(key.roomId));
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            synchronized (entries) {
+                invalidations++;
+                entries.clear();
+            }
+        });
+    }
+
+    private record Key(Long roomId, String name) {
+    }
+
+    private record Entry(Object value, long expiresAt) {
+    }
+}
@@ -23,6 +23,8 @@ public class ReviewResponseService {
     private final UserService userService;
     private final ReviewResponseMapper responseMapper;
     private final JwtTokenUtil jwtTokenUtil;
+    private final ReviewFeedCacheService reviewFeedCacheService;
+    private final RatingAggregateService ratingAggregateService;
 
     public String getEmailFromRequest(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
@@ -48,9 +50,12 @@ public class ReviewResponseService {
 
         reviewResponseRepository.save(reviewResponse);
 
+        RatingAggregateService.Contribution before = ratingAggregateService.contributionOf(review);
         review.setStatus(Review.ReviewStatus.published);
 
         reviewRepository.save(review);
+        ratingAggregateService.apply(before, ratingAggregateService.contributionOf(review));
+        evictRoomFeed(review);
 
         return responseMapper.toResReviewResponse(reviewResponse);
     }
@@ -62,6 +67,7 @@ public class ReviewResponseService {
         reviewResponse.setContent(request.getContent());
 
         reviewResponseRepository.save(reviewResponse);
+        evictRoomFeed(reviewResponse.getReview());
 
         return responseMapper.toResReviewResponse(reviewResponse);
     }
@@ -70,7 +76,15 @@ public class ReviewResponseService {
     public void delete(Long id) {
         ReviewResponse delete = reviewResponseRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Review response not found"));
+        evictRoomFeed(delete.getReview());
         reviewResponseRepository.delete(delete);
     }
 
+    // Phản hồi hiển thị trong feed review của phòng
+    private void evictRoomFeed(Review review) {
+        if (review != null && review.getRoom() != null) {
+            reviewFeedCacheService.invalidateRoom(review.getRoom().getId());
+        }
+    }
+
 }
@@ -4,11 +4,14 @@ package com.larose.service;
 
 import com.larose.config.JwtTokenUtil;
 import com.larose.dto.ReviewDTO;
+import com.larose.dto.ReviewFeedDTO;
 import com.larose.dto.ReviewResponseDTO;
+import com.larose.dto.RoomRatingSummaryDTO;
 import com.larose.entity.Booking;
 import com.larose.entity.Review;
 import com.larose.entity.ReviewResponse;
 import com.larose.entity.Room;
+import com.larose.entity.RoomRatingAggregate;
 import com.larose.entity.User;
 import com.larose.maptruct.ReviewMapper;
 import com.larose.repository.BookingRepository;
@@ -20,14 +23,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,6 +43,8 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class ReviewService {
 
+    private static final int MAX_FEED_PAGE_SIZE = 50;
+
     private final ReviewRepository reviewRepository;
     private final UserService userService;
     private final ReviewMapper reviewMapper;
@@ -42,6 +52,8 @@ public class ReviewService {
     private final RoomRepository roomRepository;
     private final ReviewResponseRepository reviewResponseRepository;
     private final JwtTokenUtil jwtTokenUtil; // Đảm bảo đã inject JwtTokenUtil
+    private final ReviewFeedCacheService reviewFeedCacheService;
+    private final RatingAggregateService ratingAggregateService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -50,9 +62,7 @@ public class ReviewService {
     public List<ReviewDTO> getAllReviews() {
         List<Review> publishedReviews = reviewRepository.findByStatus(Review.ReviewStatus.published);
         
-        return publishedReviews.stream()
-                .map(this::convertToReviewDTO)
-                .collect(Collectors.toList());
+        return convertToReviewDTOs(publishedReviews);
     }
 
     /**
@@ -75,7 +85,7 @@ public class ReviewService {
             reviews = reviewRepository.findAllByOrderByCreatedAtDesc(pageable);
         }
         
-        return reviews.map(this::convertToReviewDTO);
+        return new PageImpl<>(convertToReviewDTOs(reviews.getContent()), reviews.getPageable(), reviews.getTotalElements());
     }
 
 
@@ -135,6 +145,8 @@ public class ReviewService {
         
         // 4. Lưu vào database
         Review savedReview = reviewRepository.save(review);
+        ratingAggregateService.apply(null, ratingAggregateService.contributionOf(savedReview));
+        evictRoomFeed(savedReview);
         return convertToReviewDTO(savedReview); // Trả về DTO sau khi save
     }
 
@@ -149,6 +161,7 @@ public class ReviewService {
         
         Review review = reviewRepository.findById(reviewDTO.getId())
                 .orElseThrow(() -> new IllegalArgumentException("Review not found"));
+        RatingAggregateService.Contribution before = ratingAggregateService.contributionOf(review);
         
         review.setRating(reviewDTO.getRating());
         review.setTitle(reviewDTO.getTitle());
@@ -164,6 +177,8 @@ public class ReviewService {
         }
 
         Review updatedReview = reviewRepository.save(review);
+        ratingAggregateService.apply(before, ratingAggregateService.contributionOf(updatedReview));
+        evictRoomFeed(updatedReview);
         return convertToReviewDTO(updatedReview);
     }
 
@@ -174,6 +189,7 @@ public class ReviewService {
     public ReviewDTO updateStatus(Long id, String status) {
         Review review = reviewRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Review not found with id: " + id));
+        RatingAggregateService.Contribution before = ratingAggregateService.contributionOf(review);
         
         try {
             Review.ReviewStatus reviewStatus = Review.ReviewStatus.valueOf(status.toLowerCase());
@@ -184,6 +200,8 @@ public class ReviewService {
         }
 
         Review updatedReview = reviewRepository.save(review);
+        ratingAggregateService.apply(before, ratingAggregateService.contributionOf(updatedReview));
+        evictRoomFeed(updatedReview);
         return convertToReviewDTO(updatedReview);
     }
 
@@ -194,9 +212,88 @@ public class ReviewService {
     public void delete(Long id) {
         Review review = reviewRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Review not found"));
+        ratingAggregateService.apply(ratingAggregateService.contributionOf(review), null);
+        evictRoomFeed(review);
         reviewRepository.delete(review);
     }
 
+    /**
+     * Feed review đã published của một phòng, mới nhất trước, phân trang keyset.
+     *
+     * @param cursor nextCursor của trang trước, null cho trang đầu (kèm tổng hợp rating)
+     * @param size   số review mỗi trang (1..50)
+     */
+    public ReviewFeedDTO getRoomReviewFeed(Long roomId, String cursor, int size) {
+        if (size < 1 || size > MAX_FEED_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_FEED_PAGE_SIZE);
+        }
+        String normalizedCursor = cursor != null && !cursor.isBlank() ? cursor : null;
+        String cacheName = "feed:" + (normalizedCursor != null ? normalizedCursor : "") + ":" + size;
+        return reviewFeedCacheService.get(roomId, cacheName, () -> loadRoomReviewFeed(roomId, normalizedCursor, size));
+    }
+
+    /**
+     * Tổng hợp rating (số lượng, trung bình, phân bố theo số sao) các review published của phòng.
+     */
+    public RoomRatingSummaryDTO getRoomRatingSummary(Long roomId) {
+        return reviewFeedCacheService.get(roomId, "summary", () -> loadRoomRatingSummary(roomId));
+    }
+
+    private ReviewFeedDTO loadRoomReviewFeed(Long roomId, String cursor, int size) {
+        // Lấy dư một phần tử để biết còn trang sau hay không
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Review> reviews;
+        if (cursor == null) {
+            reviews = reviewRepository.findRoomFeed(roomId, Review.ReviewStatus.published, limit);
+        } else {
+            FeedCursor position = FeedCursor.decode(cursor);
+            reviews = reviewRepository.findRoomFeedAfter(roomId, Review.ReviewStatus.published,
+                    position.createdAt(), position.id(), limit);
+        }
+
+        boolean hasMore = reviews.size() > size;
+        List<Review> page = hasMore ? reviews.subList(0, size) : reviews;
+
+        ReviewFeedDTO feed = new ReviewFeedDTO();
+        feed.setRoomId(roomId);
+        feed.setItems(convertToReviewDTOs(page));
+        feed.setHasMore(hasMore);
+        if (hasMore) {
+            Review last = page.get(page.size() - 1);
+            feed.setNextCursor(new FeedCursor(last.getCreatedAt(), last.getId()).encode());
+        }
+        if (cursor == null) {
+            feed.setSummary(getRoomRatingSummary(roomId));
+        }
+        return feed;
+    }
+
+    // Đọc từ aggregate đã cộng dồn, không quét bảng reviews
+    private RoomRatingSummaryDTO loadRoomRatingSummary(Long roomId) {
+        RoomRatingAggregate aggregate = ratingAggregateService.getRoomAggregate(roomId).orElseGet(RoomRatingAggregate::new);
+
+        Map<Integer, Long> ratingCounts = new LinkedHashMap<>();
+        ratingCounts.put(1, aggregate.getStars1().longValue());
+        ratingCounts.put(2, aggregate.getStars2().longValue());
+        ratingCounts.put(3, aggregate.getStars3().longValue());
+        ratingCounts.put(4, aggregate.getStars4().longValue());
+        ratingCounts.put(5, aggregate.getStars5().longValue());
+
+        RoomRatingSummaryDTO summary = new RoomRatingSummaryDTO();
+        summary.setRoomId(roomId);
+        summary.setTotalReviews(aggregate.getReviewCount().longValue());
+        Double average = RatingAggregateService.average(aggregate.getReviewCount(), aggregate.getRatingSum());
+        summary.setAverageRating(average != null ? average : 0.0);
+        summary.setRatingCounts(ratingCounts);
+        return summary;
+    }
+
+    private void evictRoomFeed(Review review) {
+        if (review.getRoom() != null) {
+            reviewFeedCacheService.invalidateRoom(review.getRoom().getId());
+        }
+    }
+
     // Lấy email từ JWT Token
     private String getEmailFromRequest(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
@@ -213,9 +310,7 @@ public class ReviewService {
             Review.ReviewStatus reviewStatus = Review.ReviewStatus.valueOf(status);
             Page<Review> reviews = reviewRepository.findByStatus(reviewStatus, pageable);
 
-            return reviews.stream()
-                    .map(this::convertToReviewDTO)
-                    .collect(Collectors.toList());
+            return convertToReviewDTOs(reviews.getContent());
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid status: " + status);
         }
@@ -247,9 +342,7 @@ public class ReviewService {
         Page<Review> reviewsPage = reviewRepository.findByUserIdAndStatusOrderByCreatedAtDesc(user.getId(), reviewStatus, pageable);
 
         // 5. Chuyển đổi sang List<ReviewDTO>
-        return reviewsPage.stream()
-                .map(this::convertToReviewDTO)
-                .collect(Collectors.toList());
+        return convertToReviewDTOs(reviewsPage.getContent());
     }
     // === KẾT THÚC PHẦN THÊM MỚI ===
 
@@ -271,8 +364,31 @@ public class ReviewService {
                 .orElse(null);
     }
 
-    // (Phương thức cũ của bạn)
     private ReviewDTO convertToReviewDTO(Review review) {
+        return convertToReviewDTOs(List.of(review)).get(0);
+    }
+
+    /**
+     * Chuyển một danh sách review sang DTO. booking/room/user đã được fetch cùng review
+     * (EntityGraph trong ReviewRepository), phản hồi của cả danh sách lấy bằng một query IN.
+     */
+    private List<ReviewDTO> convertToReviewDTOs(List<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> reviewIds = reviews.stream().map(Review::getId).collect(Collectors.toList());
+        // Query đã sắp createdAt DESC nên mỗi nhóm giữ đúng thứ tự
+        Map<Long, List<ReviewResponse>> responsesByReview = reviewResponseRepository.findByReviewIdIn(reviewIds).stream()
+                .collect(Collectors.groupingBy(response -> response.getReview().getId()));
+
+        List<ReviewDTO> dtos = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            dtos.add(convertToReviewDTO(review, responsesByReview.getOrDefault(review.getId(), List.of())));
+        }
+        return dtos;
+    }
+
+    private ReviewDTO convertToReviewDTO(Review review, List<ReviewResponse> responses) {
         ReviewDTO dto = new ReviewDTO();
         dto.setId(review.getId());
         dto.setRating(review.getRating());
@@ -317,9 +433,7 @@ public class ReviewService {
             dto.setUserFullName(review.getUser().getFullName()); 
         }
         
-        // Fetch và thêm responses
-        List<ReviewResponse> responses = reviewResponseRepository.findByReviewIdOrderByCreatedAtDesc(review.getId());
-        if (responses != null && !responses.isEmpty()) {
+        if (!responses.isEmpty()) {
             List<ReviewResponseDTO> responseDTOs = responses.stream()
                     .map(this::convertToReviewResponseDTO)
                     .collect(Collectors.toList());
@@ -329,6 +443,26 @@ public class ReviewService {
         return dto;
     }
     
+    // Vị trí (createdAt, id) của review cuối trang, mã hoá base64 để client truyền lại nguyên vẹn
+    private record FeedCursor(LocalDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static FeedCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new FeedCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+    }
+
     private ReviewResponseDTO convertToReviewResponseDTO(ReviewResponse response) {
         ReviewResponseDTO dto = new ReviewResponseDTO();
         dto.setId(response.getId());
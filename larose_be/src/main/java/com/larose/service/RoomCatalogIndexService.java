@@ -0,0 +1,281 @@
+package com.larose.service;
+
+import com.larose.dto.response.RoomFacetsResponse;
+import com.larose.dto.search.RoomSearchDto;
+import com.larose.entity.Room;
+import com.larose.repository.RoomRepository;
+import com.larose.util.SearchText;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.LongPredicate;
+import java.util.function.UnaryOperator;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Index danh mục phòng trong bộ nhớ cho trang tìm phòng: lọc theo từ khóa, khoảng giá, loại phòng, sức chứa
+ * và đếm facet cho sidebar mà không cần query MySQL.
+ * Danh mục nhỏ và ít thay đổi nên index là một snapshot bất biến: mỗi lần ghi (sau khi transaction commit)
+ * tạo bản sao có thay đổi rồi thay tham chiếu, request đang đọc vẫn dùng bản cũ mà không cần lock.
+ */
+@Slf4j
+@Service
+public class RoomCatalogIndexService {
+
+    // Thứ tự mặc định giống trang danh sách phòng: phòng mới nhất trước
+    private static final Comparator<RoomEntry> NEWEST_FIRST = Comparator
+            .comparing(RoomEntry::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(RoomEntry::id, Comparator.reverseOrder());
+
+    // Ngăn cách các trường khi nối, để từ khóa không khớp vắt qua hai trường
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final RoomRepository roomRepository;
+    private final BigDecimal priceStep;
+    private final Object writeLock = new Object();
+
+    // null cho tới lần dựng đầu tiên
+    private volatile Snapshot snapshot;
+
+    public RoomCatalogIndexService(RoomRepository roomRepository,
+                                   @Value("${app.rooms.price-facet-step:500000}") BigDecimal priceStep) {
+        this.roomRepository = roomRepository;
+        this.priceStep = priceStep.signum() > 0 ? priceStep : new BigDecimal("500000");
+    }
+
+    /**
+     * Dựng lại toàn bộ index từ DB.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        synchronized (writeLock) {
+            List<RoomEntry> rooms = new ArrayList<>();
+            for (Object[] row : roomRepository.findCatalogIndexRows()) {
+                rooms.add(entry((Long) row[0], (String) row[1], (String) row[2], (String) row[3],
+                        (BigDecimal) row[4], (Integer) row[5], (LocalDateTime) row[6], (Long) row[7], (String) row[8]));
+            }
+            snapshot = new Snapshot(rooms);
+            log.info("Room catalogue index loaded: {} rooms", rooms.size());
+        }
+    }
+
+    /**
+     * Id các phòng (chưa xóa) khớp bộ lọc, phòng mới nhất trước.
+     */
+    public List<Long> search(RoomSearchDto request) {
+        Filter filter = Filter.of(request);
+        List<Long> ids = new ArrayList<>();
+        for (RoomEntry room : current().rooms()) {
+            if (filter.matchesAll(room)) {
+                ids.add(room.id());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Facet cho sidebar: số phòng theo loại phòng, sức chứa và khoảng giá.
+     *
+     * @param available chỉ tính các phòng thỏa điều kiện này (ví dụ còn trống theo ngày ở), null nếu không lọc
+     */
+    public RoomFacetsResponse facets(RoomSearchDto request, LongPredicate available) {
+        Filter filter = Filter.of(request);
+        Map<Long, RoomFacetsResponse.FacetCount> types = new TreeMap<>();
+        Map<Long, RoomFacetsResponse.FacetCount> capacities = new TreeMap<>();
+        Map<BigDecimal, RoomFacetsResponse.PriceBucket> prices = new TreeMap<>();
+        BigDecimal minPrice = null;
+        BigDecimal maxPrice = null;
+        long total = 0;
+
+        for (RoomEntry room : current().rooms()) {
+            if (!filter.matchesKeyword(room) || (available != null && !available.test(room.id()))) {
+                continue;
+            }
+            boolean price = filter.matchesPrice(room);
+            boolean type = filter.matchesType(room);
+            boolean capacity = filter.matchesCapacity(room);
+
+            if (price && type && capacity) {
+                total++;
+            }
+            if (price && capacity && room.typeId() != null) {
+                RoomFacetsResponse.FacetCount count = types.computeIfAbsent(room.typeId(),
+                        id -> new RoomFacetsResponse.FacetCount(id, room.typeName(), 0));
+                count.setCount(count.getCount() + 1);
+            }
+            if (price && type && room.capacity() != null) {
+                RoomFacetsResponse.FacetCount count = capacities.computeIfAbsent(room.capacity().longValue(),
+                        value -> new RoomFacetsResponse.FacetCount(value, String.valueOf(value), 0));
+                count.setCount(count.getCount() + 1);
+            }
+            if (type && capacity && room.price() != null) {
+                BigDecimal from = room.price().divide(priceStep, 0, RoundingMode.FLOOR).multiply(priceStep);
+                RoomFacetsResponse.PriceBucket bucket = prices.computeIfAbsent(from,
+                        f -> new RoomFacetsResponse.PriceBucket(f, f.add(priceStep), 0));
+                bucket.setCount(bucket.getCount() + 1);
+                minPrice = minPrice == null || room.price().compareTo(minPrice) < 0 ? room.price() : minPrice;
+                maxPrice = maxPrice == null || room.price().compareTo(maxPrice) > 0 ? room.price() : maxPrice;
+            }
+        }
+
+        return RoomFacetsResponse.builder()
+                .total(total)
+                .types(new ArrayList<>(types.values()))
+                .capacities(new ArrayList<>(capacities.values()))
+                .prices(new ArrayList<>(prices.values()))
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .build();
+    }
+
+    /**
+     * Thêm / cập nhật phòng trong index sau khi transaction hiện tại commit (phòng đã xóa thì bỏ khỏi index).
+     * Đọc dữ liệu ngay lúc gọi, trong transaction, để không phải load lazy sau commit.
+     */
+    public void put(Room room) {
+        if (room == null || room.getId() == null) {
+            return;
+        }
+        if (room.getDeletedAt() != null) {
+            remove(room.getId());
+            return;
+        }
+        RoomEntry entry = entry(room.getId(), room.getCode(), room.getTitle(), room.getDescription(), room.getPrice(),
+                room.getCapacity(), room.getCreatedAt(),
+                room.getRoomType() != null ? room.getRoomType().getId() : null,
+                room.getRoomType() != null ? room.getRoomType().getName() : null);
+        afterCommit(() -> apply(current -> current.with(entry)));
+    }
+
+    public void remove(Long roomId) {
+        if (roomId == null) {
+            return;
+        }
+        afterCommit(() -> apply(current -> current.without(roomId)));
+    }
+
+    /**
+     * Dựng lại toàn bộ index sau khi transaction hiện tại commit (ví dụ sau khi import nhiều phòng).
+     */
+    public void reloadAfterCommit() {
+        afterCommit(this::reload);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Có request trước ApplicationReadyEvent: dựng ngay trên thread này
+            synchronized (writeLock) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private void apply(UnaryOperator<Snapshot> change) {
+        synchronized (writeLock) {
+            // Chưa dựng thì bỏ qua, lần dựng đầu sẽ đọc dữ liệu mới nhất từ DB
+            if (snapshot != null) {
+                snapshot = change.apply(snapshot);
+            }
+        }
+    }
+
+    private static RoomEntry entry(Long id, String code, String title, String description, BigDecimal price,
+                                   Integer capacity, LocalDateTime createdAt, Long typeId, String typeName) {
+        String text = SearchText.normalize(code) + FIELD_SEPARATOR
+                + SearchText.normalize(title) + FIELD_SEPARATOR
+                + SearchText.normalize(description);
+        return new RoomEntry(id, text, price, capacity, createdAt, typeId, typeName);
+    }
+
+    private record RoomEntry(Long id, String text, BigDecimal price, Integer capacity, LocalDateTime createdAt,
+                             Long typeId, String typeName) {
+    }
+
+    /**
+     * Danh sách phòng bất biến, đã sắp theo thứ tự mặc định.
+     */
+    private record Snapshot(List<RoomEntry> rooms) {
+
+        Snapshot {
+            List<RoomEntry> sorted = new ArrayList<>(rooms);
+            sorted.sort(NEWEST_FIRST);
+            rooms = List.copyOf(sorted);
+        }
+
+        Snapshot with(RoomEntry entry) {
+            List<RoomEntry> copy = new ArrayList<>(rooms.size() + 1);
+            for (RoomEntry room : rooms) {
+                if (!room.id().equals(entry.id())) {
+                    copy.add(room);
+                }
+            }
+            copy.add(entry);
+            return new Snapshot(copy);
+        }
+
+        Snapshot without(Long id) {
+            List<RoomEntry> copy = new ArrayList<>(rooms.size());
+            for (RoomEntry room : rooms) {
+                if (!room.id().equals(id)) {
+                    copy.add(room);
+                }
+            }
+            return copy.size() == rooms.size() ? this : new Snapshot(copy);
+        }
+    }
+
+    /**
+     * Bộ lọc của RoomSearchDto, cùng ngữ nghĩa với query SQL trước đây
+     * (giá trong [minPrice, maxPrice], sức chứa bằng đúng capacity, từ khóa là chuỗi con của mã / tên / mô tả).
+     */
+    private record Filter(String keyword, BigDecimal minPrice, BigDecimal maxPrice, Long typeId, Integer capacity) {
+
+        static Filter of(RoomSearchDto request) {
+            String keyword = SearchText.normalize(request.getKeyword());
+            return new Filter(keyword.isEmpty() ? null : keyword,
+                    request.getMinPrice() != null ? BigDecimal.valueOf(request.getMinPrice()) : null,
+                    request.getMaxPrice() != null ? BigDecimal.valueOf(request.getMaxPrice()) : null,
+                    request.getTypeId(),
+                    request.getCapacity());
+        }
+
+        boolean matchesAll(RoomEntry room) {
+            return matchesKeyword(room) && matchesPrice(room) && matchesType(room) && matchesCapacity(room);
+        }
+
+        boolean matchesKeyword(RoomEntry room) {
+            return keyword == null || room.text().contains(keyword);
+        }
+
+        boolean matchesPrice(RoomEntry room) {
+            if (minPrice == null && maxPrice == null) {
+                return true;
+            }
+            BigDecimal price = room.price();
+            return price != null
+                    && (minPrice == null || price.compareTo(minPrice) >= 0)
+                    && (maxPrice == null || price.compareTo(maxPrice) <= 0);
+        }
+
+        boolean matchesType(RoomEntry room) {
+            return typeId == null || typeId.equals(room.typeId());
+        }
+
+        boolean matchesCapacity(RoomEntry room) {
+            return capacity == null || capacity.equals(room.capacity());
+        }
+    }
+}
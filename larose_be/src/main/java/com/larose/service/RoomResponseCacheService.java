@@ -0,0 +1,95 @@
+package com.larose.service;
+
+import com.larose.dto.response.RoomResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * RoomResponse đã dựng sẵn theo room id (amenities đã parse, ảnh đã sắp xếp, rating), giữ trong LRU có giới hạn.
+ * Trang danh sách phòng chỉ chọn id rồi lấy lại các đối tượng này; phòng chưa có trong cache được load một lượt.
+ * Ghi phòng / ảnh / review làm mất entry tương ứng sau khi transaction commit.
+ * Đối tượng trả về được dùng chung giữa các request nên chỉ được đọc, không được sửa.
+ */
+@Service
+public class RoomResponseCacheService {
+
+    private final Map<Long, RoomResponse> responses;
+    // Tăng mỗi lần xóa entry: kết quả load bắt đầu trước lần xóa có thể đã cũ, không đưa vào cache
+    private long generation;
+
+    public RoomResponseCacheService(@Value("${app.rooms.response-cache-size:500}") int cacheSize) {
+        this.responses = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, RoomResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * RoomResponse của các phòng {@code roomIds} theo đúng thứ tự; các id chưa có trong cache được
+     * {@code loader} load trong một lần gọi. Id không tìm thấy bị bỏ qua.
+     */
+    public List<RoomResponse> getAll(List<Long> roomIds, Function<List<Long>, Map<Long, RoomResponse>> loader) {
+        Map<Long, RoomResponse> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long seen;
+        synchronized (responses) {
+            seen = generation;
+            for (Long id : roomIds) {
+                RoomResponse response = responses.get(id);
+                if (response != null) {
+                    found.put(id, response);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Long, RoomResponse> loaded = loader.apply(missing);
+            found.putAll(loaded);
+            synchronized (responses) {
+                if (generation == seen) {
+                    responses.putAll(loaded);
+                }
+            }
+        }
+
+        List<RoomResponse> result = new ArrayList<>(roomIds.size());
+        for (Long id : roomIds) {
+            RoomResponse response = found.get(id);
+            if (response != null) {
+                result.add(response);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bỏ RoomResponse của các phòng sau khi transaction hiện tại commit.
+     */
+    public void evict(Collection<Long> roomIds) {
+        if (roomIds == null || roomIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(roomIds);
+        afterCommit(() -> {
+            synchronized (responses) {
+                ids.forEach(responses::remove);
+                generation++;
+            }
+        });
+    }
+
+    public void evict(Long roomId) {
+        if (roomId != null) {
+            evict(List.of(roomId));
+        }
+    }
+}
@@ -5,13 +5,17 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.larose.dto.projection.RoomsProjection;
 import com.larose.dto.request.RoomRequest;
+import com.larose.dto.response.RoomFacetsResponse;
 import com.larose.dto.response.RoomImageResponse;
 import com.larose.dto.response.RoomResponse;
 import com.larose.dto.response.RoomTypeResponse;
 import com.larose.dto.search.RoomSearchDto;
 import com.larose.entity.Room;
 import com.larose.entity.RoomImage;
+import com.larose.entity.RoomRatingAggregate;
 import com.larose.entity.RoomType;
+import com.larose.entity.RoomTypeRatingAggregate;
+import com.larose.entity.enums.RoomStatus;
 import com.larose.maptruct.RoomMapper;
 import com.larose.repository.RoomImageRepository;
 import com.larose.repository.RoomRepository;
@@ -21,6 +25,7 @@ import lombok.AccessLevel;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -31,10 +36,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -44,21 +51,104 @@ public class RoomService {
     RoomTypeRepository roomTypeRepository;
     RoomMapper roomMapper;
     FileUploadUtil fileUploadUtil;
+    AvailabilityService availabilityService;
+    CodeSequenceService codeSequenceService;
+    ReportCacheService reportCacheService;
+    RatingAggregateService ratingAggregateService;
+    RoomCatalogIndexService roomCatalogIndexService;
+    RoomResponseCacheService roomResponseCacheService;
+
+    private static final String ROOM_CODE_PREFIX = "RM";
+    private static final String ROOM_CODE_SEQUENCE = "room";
     
     // 👇 Thêm ObjectMapper để parse JSON
     ObjectMapper objectMapper = new ObjectMapper();
 
     public Page<RoomResponse> getRooms(@NonNull RoomSearchDto request) {
+        if (request.hasStayDates()) {
+            return getAvailableRooms(request);
+        }
         Pageable pageable = PageRequest.of(request.getPageIndex(), request.getPageSize());
-        Page<RoomsProjection> roomPage = roomRepository.getRooms(request, pageable);
+        return toPage(findRoomIds(request), pageable);
+    }
 
-        List<Long> roomIds = roomPage.stream()
-                .map(RoomsProjection::getRoomId)
-                .toList();
+    /**
+     * Các phòng khớp bộ lọc và còn trống cho cả kỳ lưu trú [checkIn, checkOut).
+     * Lọc trên index danh mục và lịch trống trong bộ nhớ, rồi chỉ load chi tiết cho trang hiện tại.
+     */
+    public Page<RoomResponse> getAvailableRooms(@NonNull RoomSearchDto request) {
+        validateStayDates(request);
+        Pageable pageable = PageRequest.of(request.getPageIndex(), request.getPageSize());
 
-        List<RoomImage> images = roomImageRepository.findAllByRoomIdIn(roomIds);
+        List<Long> candidateIds = findRoomIds(request);
+        List<Long> availableIds = availabilityService.filterAvailable(candidateIds, request.getCheckIn(), request.getCheckOut());
+        return toPage(availableIds, pageable);
+    }
 
-        Map<Long, List<RoomImageResponse>> imagesMap = images.stream()
+    /**
+     * Số phòng theo loại phòng / sức chứa / khoảng giá cho sidebar bộ lọc; có ngày ở thì chỉ tính phòng còn trống.
+     */
+    public RoomFacetsResponse getRoomFacets(@NonNull RoomSearchDto request) {
+        if (!request.hasStayDates()) {
+            return roomCatalogIndexService.facets(request, null);
+        }
+        validateStayDates(request);
+        return roomCatalogIndexService.facets(request,
+                roomId -> availabilityService.isAvailable(roomId, request.getCheckIn(), request.getCheckOut()));
+    }
+
+    private static void validateStayDates(RoomSearchDto request) {
+        if (!request.hasStayDates()) {
+            throw new IllegalArgumentException("checkIn và checkOut là bắt buộc");
+        }
+        if (!request.getCheckOut().isAfter(request.getCheckIn())) {
+            throw new IllegalArgumentException("checkOut phải sau checkIn");
+        }
+    }
+
+    // Id phòng khớp bộ lọc theo thứ tự hiển thị: mới nhất trước, hoặc điểm trung bình giảm dần khi sortBy=rating
+    private List<Long> findRoomIds(RoomSearchDto request) {
+        List<Long> ids = roomCatalogIndexService.search(request);
+        if (!"rating".equals(request.getSortBy()) || ids.size() < 2) {
+            return ids;
+        }
+        Map<Long, RoomRatingAggregate> ratings = ratingAggregateService.getRoomAggregates(ids);
+        // Sort ổn định: cùng điểm thì giữ thứ tự mới nhất trước; phòng chưa có review xếp cuối
+        List<Long> sorted = new ArrayList<>(ids);
+        sorted.sort(Comparator
+                .comparing((Long id) -> averageOf(ratings.get(id)), Comparator.nullsLast(Comparator.<Double>reverseOrder()))
+                .thenComparing((Long id) -> ratings.containsKey(id) ? ratings.get(id).getReviewCount() : 0,
+                        Comparator.<Integer>reverseOrder()));
+        return sorted;
+    }
+
+    // Điểm trung bình chưa làm tròn (giống thứ tự của query SQL trước đây), null khi chưa có review
+    private static Double averageOf(RoomRatingAggregate rating) {
+        if (rating == null || rating.getReviewCount() == null || rating.getReviewCount() == 0 || rating.getRatingSum() == null) {
+            return null;
+        }
+        return (double) rating.getRatingSum() / rating.getReviewCount();
+    }
+
+    private Page<RoomResponse> toPage(List<Long> ids, Pageable pageable) {
+        int start = (int) Math.min(pageable.getOffset(), ids.size());
+        int end = Math.min(start + pageable.getPageSize(), ids.size());
+        List<Long> pageIds = ids.subList(start, end);
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(new ArrayList<>(), pageable, ids.size());
+        }
+
+        return new PageImpl<>(roomResponseCacheService.getAll(pageIds, this::loadResponses), pageable, ids.size());
+    }
+
+    // Dựng RoomResponse cho các phòng chưa có trong cache: một query chi tiết và một query ảnh cho cả lượt
+    private Map<Long, RoomResponse> loadResponses(List<Long> roomIds) {
+        List<RoomsProjection> rooms = roomRepository.getRoomsByIds(roomIds);
+
+        Map<Long, List<RoomImageResponse>> imagesMap = roomImageRepository.findAllByRoomIdIn(roomIds).stream()
+                // Ảnh chính trước, còn lại theo thứ tự upload
+                .sorted(Comparator.comparing((RoomImage img) -> !Boolean.TRUE.equals(img.getIsPrimary()))
+                        .thenComparing(RoomImage::getId))
                 .map(img -> RoomImageResponse.builder()
                         .id(img.getId())
                         .url(img.getUrl())
@@ -68,36 +158,46 @@ public class RoomService {
                 .collect(Collectors.groupingBy(RoomImageResponse::getRoomId));
 
         // ✅ SỬA: Parse amenities từ String → Map trước khi tạo RoomResponse
-        List<RoomResponse> responses = roomPage.stream()
-                .map(r -> {
-                    Map<String, Object> amenitiesMap = new HashMap<>();
-                    String amenitiesJson = r.getRoomAmenities();
-                    if (amenitiesJson != null && !amenitiesJson.trim().isEmpty()) {
-                        try {
-                            amenitiesMap = objectMapper.readValue(amenitiesJson, new TypeReference<Map<String, Object>>() {});
-                        } catch (JsonProcessingException e) {
-                            // Log cảnh báo nếu cần (có thể inject Logger)
-                            System.err.println("Failed to parse amenities JSON: " + amenitiesJson);
-                            // Giữ map rỗng thay vì ném exception
-                        }
-                    }
-                    return RoomResponse.fromProjection(r, amenitiesMap, imagesMap.getOrDefault(r.getRoomId(), new ArrayList<>()));
-                })
-                .toList();
-
-        return new PageImpl<>(responses, pageable, roomPage.getTotalElements());
+        Map<Long, RoomResponse> responses = new HashMap<>();
+        for (RoomsProjection r : rooms) {
+            Map<String, Object> amenitiesMap = new HashMap<>();
+            String amenitiesJson = r.getRoomAmenities();
+            if (amenitiesJson != null && !amenitiesJson.trim().isEmpty()) {
+                try {
+                    amenitiesMap = objectMapper.readValue(amenitiesJson, new TypeReference<Map<String, Object>>() {});
+                } catch (JsonProcessingException e) {
+                    // Giữ map rỗng thay vì ném exception
+                    log.warn("Failed to parse amenities JSON of room {}: {}", r.getRoomId(), e.getOriginalMessage());
+                }
+            }
+            responses.put(r.getRoomId(), RoomResponse.fromProjection(r, amenitiesMap,
+                    imagesMap.getOrDefault(r.getRoomId(), new ArrayList<>())));
+        }
+        return responses;
     }
 
     public RoomResponse findById(Long id) {
         Room room = roomRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Not found room with id: " + id));
-        return roomMapper.toResponse(room);
+        RoomResponse response = roomMapper.toResponse(room);
+        RoomRatingAggregate rating = ratingAggregateService.getRoomAggregate(id).orElse(null);
+        response.setReviewCount(rating != null ? rating.getReviewCount() : 0);
+        response.setAverageRating(rating != null ? RatingAggregateService.average(rating.getReviewCount(), rating.getRatingSum()) : null);
+        return response;
     }
 
     public List<RoomTypeResponse> getRoomType() {
         List<RoomType> getAll = roomTypeRepository.findAll();
+        Map<Long, RoomTypeRatingAggregate> ratings = ratingAggregateService.getRoomTypeAggregates(
+                getAll.stream().map(RoomType::getId).toList());
         return getAll.stream()
-                .map(this::mapProjectionToRoomResponse)
+                .map(roomType -> {
+                    RoomTypeResponse response = mapProjectionToRoomResponse(roomType);
+                    RoomTypeRatingAggregate rating = ratings.get(roomType.getId());
+                    response.setReviewCount(rating != null ? rating.getReviewCount() : 0);
+                    response.setAverageRating(rating != null ? RatingAggregateService.average(rating.getReviewCount(), rating.getRatingSum()) : null);
+                    return response;
+                })
                 .collect(Collectors.toList());
     }
 
@@ -109,34 +209,81 @@ public class RoomService {
     @Transactional
     public RoomResponse create(RoomRequest request, List<MultipartFile> images) {
         Room room = roomMapper.toEntity(request);
-
-        Room genCode = roomRepository.getTop1();
-        if (genCode == null) {
-            room.setCode("RM1");
-        } else {
-            String code = genCode.getCode();
-            room.setCode(code.substring(0, 2) + ((Integer.parseInt(code.substring(2))) + 1));
-        }
+        room.setCode(ROOM_CODE_PREFIX + codeSequenceService.next(ROOM_CODE_SEQUENCE, this::nextRoomNumberFromLatestCode));
 
         RoomType roomType = roomTypeRepository.findById(request.getRoomTypeId())
                 .orElseThrow(() -> new IllegalArgumentException("Room type not found with id: " + request.getRoomTypeId()));
         room.setRoomType(roomType);
         room = roomRepository.save(room);
+        roomCatalogIndexService.put(room);
+        // Tổng số phòng thay đổi: tỉ lệ lấp đầy đã cache không còn đúng
+        reportCacheService.evictAll();
 
         uploadImagesAsync(room, images, null);
         return roomMapper.toResponse(room);
     }
 
+    /**
+     * Import nhiều phòng cùng lúc: cấp một dải mã liên tiếp rồi insert bằng một JDBC batch.
+     *
+     * @return danh sách mã phòng đã tạo, theo thứ tự của request
+     */
+    @Transactional
+    public List<String> bulkCreate(List<RoomRequest> requests) {
+        if (CollectionUtils.isEmpty(requests)) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> typeIds = requests.stream()
+                .map(RoomRequest::getRoomTypeId)
+                .collect(Collectors.toSet());
+        if (typeIds.contains(null)) {
+            throw new IllegalArgumentException("roomTypeId là bắt buộc");
+        }
+        Map<Long, RoomType> roomTypes = roomTypeRepository.findAllById(typeIds).stream()
+                .collect(Collectors.toMap(RoomType::getId, t -> t));
+
+        long firstNumber = codeSequenceService.nextRange(ROOM_CODE_SEQUENCE, requests.size(), this::nextRoomNumberFromLatestCode);
+
+        List<Room> rooms = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            RoomRequest request = requests.get(i);
+            RoomType roomType = roomTypes.get(request.getRoomTypeId());
+            if (roomType == null) {
+                throw new IllegalArgumentException("Room type not found with id: " + request.getRoomTypeId());
+            }
+            Room room = roomMapper.toEntity(request);
+            room.setCode(ROOM_CODE_PREFIX + (firstNumber + i));
+            room.setRoomType(roomType);
+            if (room.getStatus() == null) {
+                room.setStatus(RoomStatus.available);
+            }
+            if (room.getPrice() == null) {
+                room.setPrice(BigDecimal.ZERO);
+            }
+            rooms.add(room);
+        }
+
+        roomRepository.batchInsert(rooms);
+        // JDBC batch không trả id về entity: dựng lại index sau khi commit
+        roomCatalogIndexService.reloadAfterCommit();
+        reportCacheService.evictAll();
+        return rooms.stream().map(Room::getCode).toList();
+    }
+
     @Transactional
     public RoomResponse update(RoomRequest request, List<MultipartFile> images) {
         Room room = roomRepository.findByCode(request.getCode())
                 .orElseThrow(() -> new IllegalArgumentException("Room not found with code: " + request.getCode()));
+        Long previousTypeId = room.getRoomType() != null ? room.getRoomType().getId() : null;
 
         roomMapper.update(room, request);
 
         RoomType roomType = roomTypeRepository.findById(request.getRoomTypeId())
                 .orElseThrow(() -> new IllegalArgumentException("Room type not found with id: " + request.getRoomTypeId()));
         room.setRoomType(roomType);
+        // Rating của phòng chuyển theo sang loại phòng mới
+        ratingAggregateService.onRoomTypeChanged(room.getId(), previousTypeId, roomType.getId());
 
         if (!CollectionUtils.isEmpty(request.getDeleteImages())) {
             List<RoomImage> deleteList = roomImageRepository.findAllByIdIn(request.getDeleteImages());
@@ -148,6 +295,8 @@ public class RoomService {
             }
         }
         room = roomRepository.save(room);
+        roomCatalogIndexService.put(room);
+        roomResponseCacheService.evict(room.getId());
         uploadImagesAsync(room, images, request.getDeleteImages());
         return roomMapper.toResponse(room);
     }
@@ -157,6 +306,9 @@ public class RoomService {
                 .orElseThrow(() -> new IllegalArgumentException("Room not found with code: " + code));
         room.setDeletedAt(LocalDateTime.now());
         roomRepository.save(room);
+        roomCatalogIndexService.remove(room.getId());
+        roomResponseCacheService.evict(room.getId());
+        reportCacheService.evictAll();
     }
 
     @Async
@@ -179,6 +331,20 @@ public class RoomService {
             imgs.add(img);
         }
         roomImageRepository.saveAll(imgs);
+        roomResponseCacheService.evict(room.getId());
+    }
+
+    // Chỉ chạy khi sequence "room" chưa có trong DB: tiếp nối từ mã phòng mới nhất (RM48 → 49)
+    private long nextRoomNumberFromLatestCode() {
+        Room latest = roomRepository.getTop1();
+        if (latest == null || latest.getCode() == null || !latest.getCode().startsWith(ROOM_CODE_PREFIX)) {
+            return 1;
+        }
+        try {
+            return Long.parseLong(latest.getCode().substring(ROOM_CODE_PREFIX.length())) + 1;
+        } catch (NumberFormatException e) {
+            return 1;
+        }
     }
 
     private RoomTypeResponse mapProjectionToRoomResponse(RoomType roomType) {
@@ -0,0 +1,193 @@
+package com.larose.service;
+
+import com.larose.config.JwtTokenUtil;
+import com.larose.entity.RevokedToken;
+import com.larose.repository.RevokedTokenRepository;
+import com.larose.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.larose.util.TransactionHooks.afterCommit;
+
+/**
+ * Thu hồi JWT, lưu trong DB nên dùng chung giữa các node và không mất khi restart:
+ * - theo user: cột users.token_version tăng khi khoá tài khoản, đổi role, đổi mật khẩu; token mang claim "ver"
+ *   nhỏ hơn version hiện tại bị từ chối;
+ * - theo token id (jti, logout): ghi vào bảng revoked_tokens.
+ * Mỗi node nạp các version khác 0 và các jti còn hạn lúc khởi động, rồi định kỳ đọc các thay đổi mới
+ * (users.token_version_changed_at, revoked_tokens.created_at) vào bộ nhớ: isRevoked không bao giờ hỏi DB.
+ * Node thực hiện thu hồi thấy ngay sau commit, các node khác chậm nhất sau một chu kỳ poll.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    // Poll đọc lùi một khoảng để không sót dòng do node khác ghi (lệch đồng hồ, transaction commit muộn)
+    private static final long POLL_OVERLAP_SECONDS = 60;
+    private static final long PURGE_INTERVAL_MS = 10 * 60 * 1000;
+
+    private final PrincipalCacheService principalCacheService;
+    private final UserRepository userRepository;
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long retentionMillis;
+    private final long pollMillis;
+
+    // jti -> thời điểm token hết hạn (epoch ms)
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    // email -> users.token_version, chỉ giữ user có version > 0
+    private final Map<String, Integer> tokenVersions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "token-revocation-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Chỉ thread poller đọc / ghi sau khi start
+    private LocalDateTime lastPollAt;
+    private long nextPurgeAt;
+
+    public TokenRevocationService(PrincipalCacheService principalCacheService,
+                                  UserRepository userRepository,
+                                  RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${app.jwt.access-token-expiration-ms:604800000}") long accessTokenExpirationMs,
+                                  @Value("${app.jwt.refresh-token-expiration-ms:604800000}") long refreshTokenExpirationMs,
+                                  @Value("${app.security.revocation.poll-ms:5000}") long pollMillis) {
+        this.principalCacheService = principalCacheService;
+        this.userRepository = userRepository;
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.retentionMillis = Math.max(accessTokenExpirationMs, refreshTokenExpirationMs);
+        this.pollMillis = Math.max(pollMillis, 100);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        LocalDateTime now = LocalDateTime.now();
+        remember(revokedTokenRepository.findByExpiresAtAfter(now));
+        rememberVersions(userRepository.findRevokedTokenVersions());
+        lastPollAt = now;
+        log.info("Loaded {} revoked tokens and {} revoked users", revokedTokens.size(), tokenVersions.size());
+        poller.scheduleWithFixedDelay(this::pollSafely, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Token đã bị thu hồi (theo jti, hoặc version cũ hơn version hiện tại của user) hay chưa.
+     * Chỉ đọc bộ nhớ; user bị khoá / xoá mềm đã được tăng version khi thu hồi.
+     */
+    public boolean isRevoked(Claims claims) {
+        String tokenId = claims.getId();
+        if (tokenId != null && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+        if (claims.getSubject() == null) {
+            return true;
+        }
+        return tokenVersion(claims) < tokenVersions.getOrDefault(claims.getSubject(), 0);
+    }
+
+    /**
+     * Thu hồi một token (logout). Token không có jti thì bỏ qua.
+     */
+    public void revokeToken(Claims claims) {
+        if (claims.getId() == null) {
+            return;
+        }
+        long expiresAt = claims.getExpiration() != null
+                ? claims.getExpiration().getTime()
+                : System.currentTimeMillis() + retentionMillis;
+        // Node này từ chối ngay, các node khác khi poll tới dòng mới
+        revokedTokens.put(claims.getId(), expiresAt);
+        revokedTokenRepository.insertIfAbsent(claims.getId(), toDateTime(expiresAt), LocalDateTime.now());
+    }
+
+    /**
+     * Thu hồi mọi token hiện có của user: tăng token_version trong transaction hiện tại,
+     * sau khi commit thì node này từ chối ngay và bỏ principal đã cache của user đó.
+     */
+    public void revokeUser(String email) {
+        if (email == null) {
+            return;
+        }
+        userRepository.incrementTokenVersion(email, LocalDateTime.now());
+        Integer version = userRepository.findTokenVersionByEmail(email).orElse(null);
+        principalCacheService.invalidate(email);
+        afterCommit(() -> {
+            if (version != null) {
+                tokenVersions.merge(email, version, Math::max);
+            }
+            log.info("Revoked all tokens of {}", email);
+        });
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            // DB tạm lỗi: lần poll sau đọc lại từ lastPollAt
+            log.warn("Failed to poll token revocations: {}", e.getMessage());
+        }
+    }
+
+    private void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = lastPollAt.minusSeconds(POLL_OVERLAP_SECONDS);
+        remember(revokedTokenRepository.findByCreatedAtGreaterThanEqualAndExpiresAtAfter(since, now));
+        rememberVersions(userRepository.findTokenVersionsChangedSince(since));
+        lastPollAt = now;
+
+        long nowMillis = System.currentTimeMillis();
+        if (nowMillis >= nextPurgeAt) {
+            nextPurgeAt = nowMillis + PURGE_INTERVAL_MS;
+            revokedTokens.values().removeIf(expiresAt -> expiresAt < nowMillis);
+            int deleted = revokedTokenRepository.deleteExpired(now);
+            if (deleted > 0) {
+                log.debug("Purged {} expired revoked tokens", deleted);
+            }
+        }
+    }
+
+    private void remember(List<RevokedToken> tokens) {
+        for (RevokedToken token : tokens) {
+            long expiresAt = token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            revokedTokens.put(token.getJti(), expiresAt);
+        }
+    }
+
+    // Dòng (email, token_version); version chỉ tăng nên giữ giá trị lớn hơn
+    private void rememberVersions(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            int version = ((Number) row[1]).intValue();
+            if (version > 0) {
+                tokenVersions.merge((String) row[0], version, Math::max);
+            }
+        }
+    }
+
+    // Token phát hành trước khi có claim "ver" được coi là version 0
+    private static int tokenVersion(Claims claims) {
+        Number version = claims.get(JwtTokenUtil.TOKEN_VERSION_CLAIM, Number.class);
+        return version != null ? version.intValue() : 0;
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -2,8 +2,11 @@ package com.larose.service;
 
 import com.larose.constant.StatusConstant;
 import com.larose.dto.BookingDTO;
+import com.larose.dto.projection.TransactionSearchRow;
 import com.larose.dto.request.TransactionRequest;
 import com.larose.dto.response.TransactionResponse;
+import com.larose.dto.response.TransactionSearchResponse;
+import com.larose.dto.search.TransactionSearchDto;
 import com.larose.entity.Booking;
 import com.larose.entity.Transaction;
 import com.larose.maptruct.BookingMapper;
@@ -14,21 +17,30 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
+    private static final Set<String> SORTABLE = Set.of("createdAt", "amount", "id");
+    private static final int MAX_SEARCH_SIZE = 100;
+
     private final TransactionRepository transactionRepository;
     private final BookingService bookingService;
     private final TransactionMapper transactionMapper;
     private final BookingMapper bookingMapper;
+    private final RevenueRollupService revenueRollupService;
 
     @Transactional
     public TransactionResponse create(TransactionRequest request) {
@@ -103,8 +115,13 @@ public class TransactionService {
             throw new RuntimeException("Invalid transaction status: " + status, e);
         }
         
+        Transaction.Status oldStatus = transaction.getStatus();
         transaction.setStatus(statusEnum);
         Transaction savedTransaction = transactionRepository.save(transaction);
+        if (oldStatus != statusEnum
+                && (oldStatus == Transaction.Status.success || statusEnum == Transaction.Status.success)) {
+            revenueRollupService.onTransactionChanged(savedTransaction);
+        }
         
         TransactionResponse response = transactionMapper.toResponse(savedTransaction);
         if (savedTransaction.getBooking() != null) {
@@ -124,115 +141,158 @@ public class TransactionService {
         return response;
     }
 
+    /**
+     * Danh sách transaction cho admin theo trang (offset). Lọc, sắp xếp và cắt trang trong DB.
+     */
     public Page<TransactionResponse> getAllTransactions(String status, String provider, LocalDate startDate, LocalDate endDate, Pageable pageable) {
-        Page<Transaction> transactions;
-        
-        // Convert string status to enum nếu có
-        Transaction.Status statusEnum = null;
+        TransactionSearchDto criteria = buildCriteria(status, provider, startDate, endDate, null, null);
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(null);
+        if (order != null) {
+            criteria.setSortBy(order.getProperty());
+            criteria.setAscending(order.isAscending());
+        }
+        List<TransactionResponse> items = transactionRepository
+                .search(criteria, (int) pageable.getOffset(), pageable.getPageSize())
+                .stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+        return new PageImpl<>(items, pageable, transactionRepository.count(criteria));
+    }
+
+    /**
+     * Tìm transaction theo điều kiện với phân trang keyset: truyền lại nextCursor để lấy trang kế tiếp.
+     * Không đếm tổng và không dùng OFFSET, nên trang sâu vẫn nhanh như trang đầu.
+     */
+    public TransactionSearchResponse searchTransactions(String status, String provider, LocalDate startDate, LocalDate endDate,
+                                                        BigDecimal minAmount, BigDecimal maxAmount,
+                                                        String sortBy, String sortDirection, String cursor, int size) {
+        TransactionSearchDto criteria = buildCriteria(status, provider, startDate, endDate, minAmount, maxAmount);
+        if (sortBy != null && !SORTABLE.contains(sortBy)) {
+            throw new IllegalArgumentException("Invalid sort field: " + sortBy);
+        }
+        criteria.setSortBy(sortBy != null ? sortBy : "createdAt");
+        criteria.setAscending("asc".equalsIgnoreCase(sortDirection));
+        if (cursor != null && !cursor.isBlank()) {
+            SearchCursor position = SearchCursor.decode(cursor);
+            if (!position.sortBy().equals(criteria.getSortBy())) {
+                throw new IllegalArgumentException("Cursor does not match sort field");
+            }
+            criteria.setAfterValue(position.value(criteria.getSortBy()));
+            criteria.setAfterId(position.id());
+        }
+
+        int limit = Math.min(Math.max(size, 1), MAX_SEARCH_SIZE);
+        // Lấy dư một dòng để biết còn trang sau
+        List<TransactionSearchRow> rows = transactionRepository.search(criteria, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+
+        TransactionSearchResponse response = new TransactionSearchResponse();
+        response.setItems(rows.stream().map(this::toResponse).collect(Collectors.toList()));
+        response.setHasMore(hasMore);
+        if (hasMore) {
+            TransactionSearchRow last = rows.get(rows.size() - 1);
+            response.setNextCursor(SearchCursor.of(criteria.getSortBy(), last).encode());
+        }
+        return response;
+    }
+
+    private TransactionSearchDto buildCriteria(String status, String provider, LocalDate startDate, LocalDate endDate,
+                                               BigDecimal minAmount, BigDecimal maxAmount) {
+        TransactionSearchDto criteria = new TransactionSearchDto();
         if (status != null && !status.isEmpty()) {
             try {
-                String statusLower = status.toLowerCase();
-                switch (statusLower) {
-                    case "initiated":
-                        statusEnum = Transaction.Status.initiated;
-                        break;
-                    case "success":
-                        statusEnum = Transaction.Status.success;
-                        break;
-                    case "failed":
-                        statusEnum = Transaction.Status.failed;
-                        break;
-                    case "refunded":
-                        statusEnum = Transaction.Status.refunded;
-                        break;
-                }
-            } catch (Exception e) {
+                criteria.setStatus(Transaction.Status.valueOf(status.toLowerCase()));
+            } catch (IllegalArgumentException e) {
                 // Nếu không parse được, bỏ qua filter status
             }
         }
-        
-        // Nếu có startDate và endDate, sử dụng query với khoảng thời gian
-        if (startDate != null && endDate != null) {
-            LocalDateTime startDateTime = startDate.atStartOfDay();
-            LocalDateTime endDateTime = endDate.atTime(23, 59, 59);
-            
-            // Nếu có status, filter theo status và khoảng thời gian
-            if (statusEnum != null) {
-                List<Transaction> allTransactions = transactionRepository.findAllByStatusAndCreatedAtBetween(
-                    statusEnum, startDateTime, endDateTime
-                );
-                
-                // Filter theo provider nếu có
-                if (provider != null && !provider.isEmpty()) {
-                    allTransactions = allTransactions.stream()
-                        .filter(t -> provider.equalsIgnoreCase(t.getProvider()))
-                        .collect(Collectors.toList());
-                }
-                
-                // Áp dụng pagination
-                int start = (int) pageable.getOffset();
-                int end = Math.min((start + pageable.getPageSize()), allTransactions.size());
-                List<Transaction> pagedTransactions = allTransactions.subList(start, end);
-                
-                transactions = new PageImpl<>(pagedTransactions, pageable, allTransactions.size());
-            } else {
-                // Nếu không có status, lấy tất cả và filter theo khoảng thời gian
-                // Tạm thời lấy tất cả và filter trong memory (có thể tối ưu sau bằng query)
-                List<Transaction> allTransactions = transactionRepository.findAll()
-                    .stream()
-                    .filter(t -> {
-                        LocalDateTime createdAt = t.getCreatedAt();
-                        return createdAt != null && 
-                               (createdAt.isEqual(startDateTime) || createdAt.isAfter(startDateTime)) && 
-                               (createdAt.isEqual(endDateTime) || createdAt.isBefore(endDateTime));
-                    })
-                    .collect(Collectors.toList());
-                
-                // Filter theo provider nếu có
-                if (provider != null && !provider.isEmpty()) {
-                    allTransactions = allTransactions.stream()
-                        .filter(t -> provider.equalsIgnoreCase(t.getProvider()))
-                        .collect(Collectors.toList());
-                }
-                
-                // Áp dụng pagination
-                int start = (int) pageable.getOffset();
-                int end = Math.min((start + pageable.getPageSize()), allTransactions.size());
-                List<Transaction> pagedTransactions = allTransactions.subList(start, end);
-                
-                transactions = new PageImpl<>(pagedTransactions, pageable, allTransactions.size());
-            }
-        } else {
-            // Không có khoảng thời gian, sử dụng logic cũ
-            if (statusEnum != null && provider != null && !provider.isEmpty()) {
-                transactions = transactionRepository.findAllByStatusAndProvider(statusEnum, provider, pageable);
-            } else if (statusEnum != null) {
-                transactions = transactionRepository.findAllByStatus(statusEnum, pageable);
-            } else if (provider != null && !provider.isEmpty()) {
-                transactions = transactionRepository.findAllByProvider(provider, pageable);
-            } else {
-                transactions = transactionRepository.findAll(pageable);
+        criteria.setProvider(provider);
+        if (startDate != null) {
+            criteria.setCreatedFrom(startDate.atStartOfDay());
+        }
+        if (endDate != null) {
+            criteria.setCreatedTo(endDate.atTime(23, 59, 59));
+        }
+        criteria.setMinAmount(minAmount);
+        criteria.setMaxAmount(maxAmount);
+        return criteria;
+    }
+
+    private TransactionResponse toResponse(TransactionSearchRow row) {
+        TransactionResponse response = TransactionResponse.builder()
+                .id(row.id())
+                .bookingId(row.bookingId())
+                .userId(row.userId())
+                .provider(row.provider())
+                .providerTransactionId(row.providerTransactionId())
+                .amount(row.amount())
+                .currency(row.currency())
+                .status(row.status() != null ? row.status().name() : null)
+                .type(row.type() != null ? row.type().name() : null)
+                .metadata(row.metadata())
+                .createdAt(row.createdAt())
+                .updatedAt(row.updatedAt())
+                .build();
+        if (row.bookingId() != null) {
+            BookingDTO bookingDTO = new BookingDTO();
+            bookingDTO.setId(row.bookingId());
+            bookingDTO.setBookingCode(row.bookingCode());
+            bookingDTO.setCheckIn(row.checkIn());
+            bookingDTO.setCheckOut(row.checkOut());
+            bookingDTO.setNights(row.nights());
+            bookingDTO.setGuests(row.guests());
+            bookingDTO.setPriceTotal(row.priceTotal());
+            bookingDTO.setStatus(row.bookingStatus() != null ? row.bookingStatus().name() : null);
+            bookingDTO.setCreatedAt(row.bookingCreatedAt());
+            bookingDTO.setUserId(row.bookingUserId());
+            bookingDTO.setUserEmail(row.userEmail());
+            bookingDTO.setUserFullName(row.userFullName());
+            bookingDTO.setRoomId(row.roomId());
+            bookingDTO.setRoomTitle(row.roomTitle());
+            bookingDTO.setRoomTypeId(row.roomTypeId());
+            bookingDTO.setRoomTypeName(row.roomTypeName());
+            response.setBookingDTO(bookingDTO);
+        }
+        return response;
+    }
+
+    record SearchCursor(String sortBy, String value, Long id) {
+
+        static SearchCursor of(String sortBy, TransactionSearchRow row) {
+            String value = switch (sortBy) {
+                case "amount" -> row.amount() != null ? row.amount().toPlainString() : "";
+                case "id" -> "";
+                default -> row.createdAt() != null ? row.createdAt().toString() : "";
+            };
+            return new SearchCursor(sortBy, value, row.id());
+        }
+
+        Comparable<?> value(String sortBy) {
+            if (value.isEmpty()) {
+                return null;
             }
+            return "amount".equals(sortBy) ? new BigDecimal(value) : LocalDateTime.parse(value);
         }
-        
-        // Convert to TransactionResponse với bookingDTO
-        return transactions.map(transaction -> {
-            TransactionResponse response = transactionMapper.toResponse(transaction);
-            if (transaction.getBooking() != null) {
-                BookingDTO bookingDTO = bookingMapper.toBookingDTO(transaction.getBooking());
-                // Đảm bảo set userFullName và userEmail nếu chưa có
-                if (transaction.getBooking().getUser() != null) {
-                    if (bookingDTO.getUserFullName() == null || bookingDTO.getUserFullName().isEmpty()) {
-                        bookingDTO.setUserFullName(transaction.getBooking().getUser().getFullName());
-                    }
-                    if (bookingDTO.getUserEmail() == null || bookingDTO.getUserEmail().isEmpty()) {
-                        bookingDTO.setUserEmail(transaction.getBooking().getUser().getEmail());
-                    }
-                }
-                response.setBookingDTO(bookingDTO);
+
+        String encode() {
+            String raw = sortBy + "|" + value + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", -1);
+                SearchCursor position = new SearchCursor(parts[0], parts[1], Long.parseLong(parts[2]));
+                position.value(position.sortBy());
+                return position;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
             }
-            return response;
-        });
+        }
     }
 
 }
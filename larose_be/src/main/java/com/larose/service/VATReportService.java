@@ -1,117 +1,147 @@
 package com.larose.service;
 
-import com.larose.entity.Booking;
-import com.larose.entity.BookingService;
-import com.larose.entity.Transaction;
-import com.larose.repository.BookingRepository;
-import com.larose.repository.TransactionRepository;
+import com.larose.dto.VATReportRequest;
+import com.larose.entity.DailyRevenue;
+import com.larose.util.DocxTemplate;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.poi.xwpf.usermodel.XWPFRun;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Locale;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 @RequiredArgsConstructor
 public class VATReportService {
-    private final BookingRepository bookingRepository;
-    private final TransactionRepository transactionRepository;
+    private final RevenueRollupService revenueRollupService;
     private static final BigDecimal VAT_RATE = new BigDecimal("0.10"); // 10%
     private static final BigDecimal EXPENSE_RATE = new BigDecimal("0.30"); // 30% doanh thu làm khoản chi
 
-    public byte[] generateVATReport(LocalDate startDate, LocalDate endDate, BigDecimal khoanchi) throws Exception {
-        // Tính toán dữ liệu
-        VATData vatData = calculateVATData(startDate, endDate, khoanchi);
+    private static final List<String> PLACEHOLDERS = List.of(
+            "kithue", "khoanchi", "vatkhoanchi", "tongkhoanchi",
+            "doanhthudichvu", "tongdoanhthudichvu", "vatdoanhthudichvu",
+            "doanhthu", "vatdoanhthu");
 
-        // Load template từ resources (file gốc không bị thay đổi)
-        ClassPathResource resource = new ClassPathResource("report/vat_report.docx");
-        InputStream templateStream = resource.getInputStream();
-        
-        // Tạo document trong bộ nhớ từ template
-        XWPFDocument document = new XWPFDocument(templateStream);
+    // Template được phân tích một lần khi khởi động (file gốc không bị thay đổi)
+    private DocxTemplate template;
 
-        // Thay thế các placeholder
-        replacePlaceholders(document, vatData);
+    @PostConstruct
+    void loadTemplate() throws IOException {
+        try (InputStream templateStream = new ClassPathResource("report/vat_report.docx").getInputStream()) {
+            template = DocxTemplate.compile(templateStream, PLACEHOLDERS);
+        }
+    }
 
-        // Chuyển document thành byte array để trả về
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        document.write(outputStream);
-        document.close();
-        templateStream.close();
+    /**
+     * Tính số liệu của kỳ và trả về giá trị các placeholder. Gọi trước khi trả response,
+     * để lỗi đọc DB còn trả được mã lỗi thay vì một file DOCX bị cắt dở.
+     */
+    public Map<String, String> prepareVATReport(LocalDate startDate, LocalDate endDate, BigDecimal khoanchi) {
+        return toPlaceholderValues(calculateVATData(startDate, endDate, khoanchi));
+    }
 
-        // Trả về file đã điền dữ liệu (file gốc vẫn giữ nguyên)
-        return outputStream.toByteArray();
+    /**
+     * Ghi thẳng file DOCX từ các giá trị đã tính vào {@code out} (thường là response stream).
+     */
+    public void writeVATReport(Map<String, String> values, OutputStream out) throws IOException {
+        template.write(values, out);
+    }
+
+    /**
+     * Tính số liệu cho nhiều kỳ: đọc daily_revenue một lần cho khoảng bao tất cả các kỳ rồi cộng theo từng kỳ.
+     * Trả về tên file DOCX -> giá trị placeholder, giữ thứ tự các kỳ; gọi trước khi bắt đầu ghi ZIP.
+     */
+    public Map<String, Map<String, String>> prepareVATReports(List<VATReportRequest> periods) {
+        LocalDate minDate = periods.stream().map(VATReportRequest::getStartDate).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDate maxDate = periods.stream().map(VATReportRequest::getEndDate).max(Comparator.naturalOrder()).orElseThrow();
+
+        NavigableMap<LocalDate, DailyRevenue> days = new TreeMap<>();
+        for (DailyRevenue day : revenueRollupService.getDays(minDate, maxDate)) {
+            days.put(day.getRevenueDate(), day);
+        }
+
+        Map<String, Map<String, String>> reports = new LinkedHashMap<>();
+        for (VATReportRequest period : periods) {
+            VATData vatData = buildVATData(period.getStartDate(), period.getEndDate(), period.getKhoanchi(),
+                    days.subMap(period.getStartDate(), true, period.getEndDate(), true).values());
+
+            String fileName = reportFileName(period.getStartDate(), period.getEndDate());
+            // Hai kỳ trùng nhau thì đánh số để tên entry không bị lặp
+            for (int i = 2; reports.containsKey(fileName); i++) {
+                fileName = reportFileName(period.getStartDate(), period.getEndDate()).replace(".docx", "_" + i + ".docx");
+            }
+            reports.put(fileName, toPlaceholderValues(vatData));
+        }
+        return reports;
+    }
+
+    /**
+     * Ghi các báo cáo đã tính vào một file ZIP, mỗi kỳ một file DOCX (flush sau mỗi file).
+     */
+    public void writeVATReports(Map<String, Map<String, String>> reports, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (Map.Entry<String, Map<String, String>> report : reports.entrySet()) {
+            zip.putNextEntry(new ZipEntry(report.getKey()));
+            template.write(report.getValue(), zip);
+            zip.closeEntry();
+            zip.flush();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Kiểm tra danh sách kỳ của một lần xuất hàng loạt.
+     */
+    public void validatePeriods(List<VATReportRequest> periods) {
+        if (periods == null || periods.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách kỳ báo cáo không được để trống");
+        }
+        for (VATReportRequest period : periods) {
+            if (period.getStartDate() == null || period.getEndDate() == null
+                    || period.getStartDate().isAfter(period.getEndDate())) {
+                throw new IllegalArgumentException("Kỳ báo cáo không hợp lệ: " + period.getStartDate() + " - " + period.getEndDate());
+            }
+        }
+    }
+
+    public static String reportFileName(LocalDate startDate, LocalDate endDate) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+        return String.format("BaoCaoThue_%s_den_%s.docx",
+                startDate.format(formatter),
+                endDate.format(formatter));
     }
 
     private VATData calculateVATData(LocalDate startDate, LocalDate endDate, BigDecimal khoanchi) {
+        return buildVATData(startDate, endDate, khoanchi, revenueRollupService.getDays(startDate, endDate));
+    }
+
+    private VATData buildVATData(LocalDate startDate, LocalDate endDate, BigDecimal khoanchi, Collection<DailyRevenue> days) {
         VATData data = new VATData();
 
         // Format kỳ thuế
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
         data.kithue = startDate.format(formatter) + " - " + endDate.format(formatter);
 
-        // Lấy các booking đã hoàn trả (checked_out) trong khoảng thời gian
-        List<Booking> completedBookings = bookingRepository.findByStatusAndCheckOutBetween(
-                Booking.Status.checked_out,
-                startDate,
-                endDate
-        );
-
-        // Tính doanh thu từ booking đã trả phòng
+        // Cộng các dòng daily_revenue trong kỳ
         BigDecimal totalRoomRevenue = BigDecimal.ZERO;
         BigDecimal totalServiceRevenue = BigDecimal.ZERO;
-        
-        // Lưu danh sách booking ID đã trả phòng để loại trừ
-        java.util.Set<Long> completedBookingIds = new java.util.HashSet<>();
-        
-        // 1. Doanh thu từ booking đã trả phòng (checked_out)
-        for (Booking booking : completedBookings) {
-            completedBookingIds.add(booking.getId());
-            
-            // Doanh thu phòng từ booking.priceTotal
-            BigDecimal roomPrice = booking.getPriceTotal();
-            if (roomPrice != null) {
-                totalRoomRevenue = totalRoomRevenue.add(roomPrice);
-            }
-            
-            // Doanh thu dịch vụ từ booking_services
-            if (booking.getBookingServices() != null) {
-                for (BookingService bookingService : booking.getBookingServices()) {
-                    BigDecimal serviceAmount = bookingService.getTotalPrice();
-                    if (serviceAmount != null) {
-                        totalServiceRevenue = totalServiceRevenue.add(serviceAmount);
-                    }
-                }
-            }
-        }
 
-        // 2. Doanh thu từ transactions (booking chưa trả nhưng đã thanh toán)
-        // Loại trừ transactions của booking đã trả phòng
-        List<Transaction> successTransactions = transactionRepository.findAllByStatusAndCreatedAtBetween(
-                Transaction.Status.success,
-                startDate.atStartOfDay(),
-                endDate.atTime(23, 59, 59)
-        );
-        
-        for (Transaction transaction : successTransactions) {
-            Long bookingId = transaction.getBooking() != null ? transaction.getBooking().getId() : null;
-            // Chỉ tính nếu booking chưa trả phòng
-            if (bookingId != null && !completedBookingIds.contains(bookingId)) {
-                BigDecimal amount = transaction.getAmount();
-                if (amount != null) {
-                    totalRoomRevenue = totalRoomRevenue.add(amount);
-                }
-            }
+        for (DailyRevenue day : days) {
+            // 1. Doanh thu phòng và dịch vụ từ booking đã trả phòng (checked_out)
+            totalRoomRevenue = totalRoomRevenue.add(day.getRoomRevenue());
+            totalServiceRevenue = totalServiceRevenue.add(day.getServiceRevenue());
+
+            // 2. Transactions của booking chưa trả nhưng đã thanh toán
+            totalRoomRevenue = totalRoomRevenue.add(day.getOpenTransactionRevenue());
         }
 
         // Sử dụng khoản chi do người dùng nhập
@@ -132,70 +162,23 @@ public class VATReportService {
         return data;
     }
 
-    private void replacePlaceholders(XWPFDocument document, VATData data) {
+    private Map<String, String> toPlaceholderValues(VATData data) {
         // Format số tiền không có ký hiệu tiền tệ, chỉ có dấu phân cách
         NumberFormat numberFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
         numberFormat.setGroupingUsed(true);
         numberFormat.setMaximumFractionDigits(0);
 
-        // Thay thế trong paragraphs
-        for (XWPFParagraph paragraph : document.getParagraphs()) {
-            replaceInParagraph(paragraph, data, numberFormat);
-        }
-
-        // Thay thế trong tables
-        document.getTables().forEach(table -> {
-            table.getRows().forEach(row -> {
-                row.getTableCells().forEach(cell -> {
-                    cell.getParagraphs().forEach(paragraph -> {
-                        replaceInParagraph(paragraph, data, numberFormat);
-                    });
-                });
-            });
-        });
-    }
-
-    private void replaceInParagraph(XWPFParagraph paragraph, VATData data, NumberFormat numberFormat) {
-        List<XWPFRun> runs = paragraph.getRuns();
-        if (runs == null || runs.isEmpty()) {
-            return;
-        }
-
-        // Ghép toàn bộ text của paragraph lại
-        StringBuilder fullText = new StringBuilder();
-        for (XWPFRun run : runs) {
-            String text = run.getText(0);
-            if (text != null) {
-                fullText.append(text);
-            }
-        }
-
-        String text = fullText.toString();
-        
-        // Kiểm tra xem có placeholder không
-        if (!text.contains("{")) {
-            return;
-        }
-
-        // Thay thế tất cả placeholders
-        text = text.replace("{kithue}", data.kithue);
-        text = text.replace("{khoanchi}", numberFormat.format(data.khoanchi));
-        text = text.replace("{vatkhoanchi}", numberFormat.format(data.vatkhoanchi));
-        text = text.replace("{tongkhoanchi}", numberFormat.format(data.tongkhoanchi));
-        text = text.replace("{doanhthudichvu}", numberFormat.format(data.doanhthudichvu));
-        text = text.replace("{tongdoanhthudichvu}", numberFormat.format(data.tongdoanhthudichvu));
-        text = text.replace("{vatdoanhthudichvu}", numberFormat.format(data.vatdoanhthudichvu));
-        text = text.replace("{doanhthu}", numberFormat.format(data.doanhthu));
-        text = text.replace("{vatdoanhthu}", numberFormat.format(data.vatdoanhthu));
-
-        // Xóa tất cả runs cũ trừ run đầu tiên
-        for (int i = runs.size() - 1; i > 0; i--) {
-            paragraph.removeRun(i);
-        }
-
-        // Ghi text đã thay thế vào run đầu tiên
-        XWPFRun firstRun = runs.get(0);
-        firstRun.setText(text, 0);
+        Map<String, String> values = new HashMap<>();
+        values.put("kithue", data.kithue);
+        values.put("khoanchi", numberFormat.format(data.khoanchi));
+        values.put("vatkhoanchi", numberFormat.format(data.vatkhoanchi));
+        values.put("tongkhoanchi", numberFormat.format(data.tongkhoanchi));
+        values.put("doanhthudichvu", numberFormat.format(data.doanhthudichvu));
+        values.put("tongdoanhthudichvu", numberFormat.format(data.tongdoanhthudichvu));
+        values.put("vatdoanhthudichvu", numberFormat.format(data.vatdoanhthudichvu));
+        values.put("doanhthu", numberFormat.format(data.doanhthu));
+        values.put("vatdoanhthu", numberFormat.format(data.vatdoanhthu));
+        return values;
     }
 
     private static class VATData {
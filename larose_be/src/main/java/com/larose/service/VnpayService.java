@@ -28,6 +28,7 @@ public class VnpayService {
     private final TransactionRepository transactionRepository;
     private final InvoiceService invoiceService;
     private final EmailService emailService;
+    private final RevenueRollupService revenueRollupService;
 
     public String createOrder(BigDecimal total, String orderInfo, String roomId, String txnRef) {
 
@@ -122,6 +123,7 @@ public class VnpayService {
             if ("vnpay".equalsIgnoreCase(request.getPaymentMethod())) {
             transaction.setStatus(Transaction.Status.success);
             transactionRepository.save(transaction);
+            revenueRollupService.onTransactionChanged(transaction);
             }
             // Nếu không có email trong request, thử tìm booking trong database
             if (email == null || email.isEmpty()) {
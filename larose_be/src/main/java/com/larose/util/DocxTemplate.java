@@ -0,0 +1,179 @@
+package com.larose.util;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Template DOCX đã phân tích sẵn: placeholder dạng {ten} trong word/document.xml được tách thành
+ * các đoạn XML cố định xen kẽ vị trí cần điền. Mỗi lần xuất chỉ ghi lại các đoạn đó vào một
+ * ZipOutputStream, không mở POI và không buffer cả file trong bộ nhớ.
+ * Đối tượng bất biến sau khi compile nên dùng chung được cho nhiều thread.
+ */
+public final class DocxTemplate {
+
+    private static final String DOCUMENT_PART = "word/document.xml";
+
+    private final List<Part> parts;
+
+    private DocxTemplate(List<Part> parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Phân tích template một lần: gộp các run bị Word tách ngang placeholder,
+     * sau đó cắt document.xml tại từng placeholder trong {@code placeholders}.
+     */
+    public static DocxTemplate compile(InputStream template, Collection<String> placeholders) throws IOException {
+        byte[] normalized = normalize(template);
+        Pattern pattern = Pattern.compile("\\{(" + placeholders.stream()
+                .map(Pattern::quote)
+                .collect(Collectors.joining("|")) + ")}");
+
+        List<Part> parts = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(normalized))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                byte[] content = zip.readAllBytes();
+                List<Object> segments = new ArrayList<>();
+                if (DOCUMENT_PART.equals(entry.getName())) {
+                    split(new String(content, StandardCharsets.UTF_8), pattern, segments);
+                } else {
+                    segments.add(content);
+                }
+                parts.add(new Part(entry.getName(), segments));
+            }
+        }
+        return new DocxTemplate(parts);
+    }
+
+    /**
+     * Ghi file DOCX đã điền {@code values} (chưa escape) vào {@code out}.
+     * Stream đích không bị đóng, nên có thể là một entry của ZIP khác.
+     */
+    public void write(Map<String, String> values, OutputStream out) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new NonClosingOutputStream(out))) {
+            writeParts(values, zip);
+        }
+    }
+
+    private void writeParts(Map<String, String> values, ZipOutputStream zip) throws IOException {
+        for (Part part : parts) {
+            zip.putNextEntry(new ZipEntry(part.name()));
+            for (Object segment : part.segments()) {
+                if (segment instanceof byte[] bytes) {
+                    zip.write(bytes);
+                } else {
+                    String placeholder = (String) segment;
+                    String value = values.get(placeholder);
+                    String text = value != null ? escapeXml(value) : "{" + placeholder + "}";
+                    zip.write(text.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            zip.closeEntry();
+        }
+    }
+
+    // Word hay tách "{ten}" thành nhiều run; gộp text của các đoạn có placeholder về run đầu tiên
+    private static byte[] normalize(InputStream template) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(template)) {
+            for (XWPFParagraph paragraph : document.getParagraphs()) {
+                mergeRuns(paragraph);
+            }
+            document.getTables().forEach(table ->
+                    table.getRows().forEach(row ->
+                            row.getTableCells().forEach(cell ->
+                                    cell.getParagraphs().forEach(DocxTemplate::mergeRuns))));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void mergeRuns(XWPFParagraph paragraph) {
+        List<XWPFRun> runs = paragraph.getRuns();
+        if (runs == null || runs.isEmpty()) {
+            return;
+        }
+        StringBuilder fullText = new StringBuilder();
+        for (XWPFRun run : runs) {
+            String text = run.getText(0);
+            if (text != null) {
+                fullText.append(text);
+            }
+        }
+        if (fullText.indexOf("{") < 0) {
+            return;
+        }
+        for (int i = runs.size() - 1; i > 0; i--) {
+            paragraph.removeRun(i);
+        }
+        runs.get(0).setText(fullText.toString(), 0);
+    }
+
+    private static void split(String xml, Pattern pattern, List<Object> segments) {
+        Matcher matcher = pattern.matcher(xml);
+        int last = 0;
+        while (matcher.find()) {
+            segments.add(xml.substring(last, matcher.start()).getBytes(StandardCharsets.UTF_8));
+            segments.add(matcher.group(1));
+            last = matcher.end();
+        }
+        segments.add(xml.substring(last).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String escapeXml(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&apos;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    // Đóng ZipOutputStream (giải phóng Deflater) mà không đóng stream đích
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // segments: byte[] là XML cố định, String là tên placeholder
+    private record Part(String name, List<Object> segments) {
+    }
+}
@@ -9,8 +9,11 @@ import com.larose.entity.Booking;
 import com.larose.entity.Transaction;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.format.DateTimeFormatter;
@@ -18,25 +21,72 @@ import java.util.Locale;
 
 @Slf4j
 public class InvoicePdfUtil {
-    private static final String FONT_PATH = "src/main/resources/fonts/DejaVuSans.ttf";
-    private static final String LOGO_PATH = "src/main/resources/images/logo.jpg";
+    // Đường dẫn trong classpath (chạy được cả khi đóng gói thành jar)
+    private static final String FONT_PATH = "/fonts/DejaVuSans.ttf";
+    private static final String LOGO_PATH = "/image/logo.jpg";
+
+    // Mỗi thread giữ một buffer dùng lại giữa các hoá đơn; buffer phình quá lớn thì bỏ đi
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFERS =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(INITIAL_BUFFER_SIZE));
+
+    /**
+     * Tạo hoá đơn PDF trong bộ nhớ (dùng để đính kèm email).
+     */
+    public static byte[] generateInvoicePdf(Booking booking, Transaction transaction) {
+        ByteArrayOutputStream buffer = borrowBuffer();
+        try {
+            render(booking, transaction, buffer);
+            return buffer.toByteArray();
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
 
-    public static File generateInvoicePdf(Booking booking, Transaction transaction) {
+    /**
+     * Tạo hoá đơn vào buffer của thread rồi ghi sang {@code out} (ví dụ response stream).
+     * Lỗi khi dựng PDF xảy ra trước khi ghi byte nào ra {@code out}.
+     *
+     * @return kích thước file PDF
+     */
+    public static int writeInvoicePdf(Booking booking, Transaction transaction, OutputStream out) throws IOException {
+        ByteArrayOutputStream buffer = borrowBuffer();
         try {
-            File file = File.createTempFile("invoice_" + booking.getId() + "_", ".pdf");
+            render(booking, transaction, buffer);
+            buffer.writeTo(out);
+            return buffer.size();
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static ByteArrayOutputStream borrowBuffer() {
+        ByteArrayOutputStream buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
 
+    private static void releaseBuffer(ByteArrayOutputStream buffer) {
+        if (buffer.size() > MAX_POOLED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        }
+    }
+
+    private static void render(Booking booking, Transaction transaction, OutputStream out) {
+        try {
             NumberFormat currencyFormat = NumberFormat.getInstance(new Locale("vi", "VN"));
             DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
             Document document = new Document(PageSize.A4, 36, 36, 54, 36);
-            PdfWriter.getInstance(document, new FileOutputStream(file));
+            PdfWriter.getInstance(document, out);
             document.open();
 
-            BaseFont bf = BaseFont.createFont(FONT_PATH, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-            Font titleFont = new Font(bf, 16, Font.BOLD);
-            Font headerFont = new Font(bf, 12, Font.BOLD);
-            Font normalFont = new Font(bf, 11, Font.NORMAL);
-            Font smallFont = new Font(bf, 9, Font.NORMAL);
+            Resources resources = Resources.INSTANCE;
+            Font titleFont = resources.titleFont;
+            Font headerFont = resources.headerFont;
+            Font normalFont = resources.normalFont;
+            Font smallFont = resources.smallFont;
 
             // Header
             PdfPTable headerTable = new PdfPTable(new float[]{1f, 2f});
@@ -44,8 +94,8 @@ public class InvoicePdfUtil {
             headerTable.getDefaultCell().setBorder(Rectangle.NO_BORDER);
 
             try {
-                Image logo = Image.getInstance(LOGO_PATH);
-                logo.scaleToFit(80, 80);
+                // Bản sao của logo đã parse sẵn, không đọc lại file cho mỗi hoá đơn
+                Image logo = Image.getInstance(resources.logo);
                 PdfPCell logoCell = new PdfPCell(logo, false);
                 logoCell.setBorder(Rectangle.NO_BORDER);
                 headerTable.addCell(logoCell);
@@ -127,13 +177,60 @@ public class InvoicePdfUtil {
             document.add(note);
 
             document.close();
-            return file;
         } catch (Exception e) {
             log.error("Error generating invoice PDF", e);
             throw new RuntimeException("Error generating invoice PDF", e);
         }
     }
 
+    /**
+     * Font và logo dùng chung cho mọi hoá đơn, chỉ nạp một lần từ classpath ở lần dùng đầu tiên.
+     * Không sửa các đối tượng này sau khi khởi tạo; logo được copy trước khi đưa vào document.
+     */
+    private static final class Resources {
+        static final Resources INSTANCE = new Resources();
+
+        final Font titleFont;
+        final Font headerFont;
+        final Font normalFont;
+        final Font smallFont;
+        final Image logo;
+
+        private Resources() {
+            try {
+                BaseFont bf = BaseFont.createFont("DejaVuSans.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED,
+                        true, readResource(FONT_PATH), null);
+                titleFont = new Font(bf, 16, Font.BOLD);
+                headerFont = new Font(bf, 12, Font.BOLD);
+                normalFont = new Font(bf, 11, Font.NORMAL);
+                smallFont = new Font(bf, 9, Font.NORMAL);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot load invoice font " + FONT_PATH, e);
+            }
+            logo = loadLogo();
+        }
+
+        private static Image loadLogo() {
+            try {
+                Image image = Image.getInstance(readResource(LOGO_PATH));
+                image.scaleToFit(80, 80);
+                return image;
+            } catch (Exception e) {
+                log.warn("Invoice logo not available at {}: {}", LOGO_PATH, e.getMessage());
+                return null;
+            }
+        }
+
+        private static byte[] readResource(String path) throws IOException {
+            try (InputStream in = InvoicePdfUtil.class.getResourceAsStream(path)) {
+                if (in == null) {
+                    throw new FileNotFoundException("Classpath resource not found: " + path);
+                }
+                return in.readAllBytes();
+            }
+        }
+    }
+
     /** Helper */
     private static void addCell(PdfPTable table, String text, Font font, int align, boolean header) {
         PdfPCell cell = new PdfPCell(new Phrase(text, font));
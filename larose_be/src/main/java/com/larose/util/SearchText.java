@@ -0,0 +1,27 @@
+package com.larose.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi cho các index tìm kiếm trong bộ nhớ: chữ thường, bỏ dấu tiếng Việt (đ → d),
+ * gộp khoảng trắng. So khớp trên chuỗi đã chuẩn hóa tương đương collation *_unicode_ci của MySQL.
+ */
+public final class SearchText {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private SearchText() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(value.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        text = MARKS.matcher(text).replaceAll("").replace('đ', 'd');
+        return SPACES.matcher(text).replaceAll(" ");
+    }
+}
@@ -0,0 +1,205 @@
+package com.larose.util;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Template văn bản đã phân tích sẵn: chuỗi nguồn được cắt thành mảng đoạn cố định xen kẽ placeholder,
+ * nên mỗi lần render chỉ nối các đoạn vào một StringBuilder dùng lại theo thread.
+ * Cú pháp:
+ * - {{ten}}: giá trị được escape HTML nếu template compile với escapeHtml;
+ * - {{{ten}}}: giá trị chèn nguyên văn (đoạn HTML dựng sẵn);
+ * - {{ten|currency}}, {{ten|date}}, {{ten|datetime}}: định dạng tiền VND / ngày / ngày giờ Việt Nam.
+ * Đối tượng bất biến sau khi compile nên dùng chung được cho nhiều thread.
+ */
+public final class TextTemplate {
+
+    private static final Locale VI_VN = Locale.forLanguageTag("vi-VN");
+    private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy", VI_VN);
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss", VI_VN);
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    // NumberFormat không thread-safe nên giữ một instance cho mỗi thread
+    private static final ThreadLocal<NumberFormat> CURRENCY_FORMAT =
+            ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(VI_VN));
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+
+    private final String[] literals;
+    private final Placeholder[] placeholders;
+    private final Set<String> variables;
+
+    private TextTemplate(String[] literals, Placeholder[] placeholders, Set<String> variables) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.variables = variables;
+    }
+
+    /**
+     * Phân tích {@code source} một lần. Placeholder không đóng được giữ nguyên như văn bản.
+     */
+    public static TextTemplate compile(String source, boolean escapeHtml) {
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> placeholders = new ArrayList<>();
+        Set<String> variables = new LinkedHashSet<>();
+        StringBuilder literal = new StringBuilder();
+
+        int pos = 0;
+        while (pos < source.length()) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) {
+                break;
+            }
+            boolean raw = source.startsWith("{{{", open);
+            String closeToken = raw ? "}}}" : "}}";
+            int start = open + (raw ? 3 : 2);
+            int close = source.indexOf(closeToken, start);
+            if (close < 0) {
+                break;
+            }
+            String expression = source.substring(start, close).trim();
+            if (expression.isEmpty()) {
+                literal.append(source, pos, close + closeToken.length());
+                pos = close + closeToken.length();
+                continue;
+            }
+            literal.append(source, pos, open);
+            literals.add(literal.toString());
+            literal.setLength(0);
+
+            Placeholder placeholder = parse(expression, escapeHtml && !raw);
+            placeholders.add(placeholder);
+            variables.add(placeholder.name());
+            pos = close + closeToken.length();
+        }
+        literal.append(source, pos, source.length());
+        literals.add(literal.toString());
+
+        return new TextTemplate(literals.toArray(new String[0]), placeholders.toArray(new Placeholder[0]),
+                Collections.unmodifiableSet(variables));
+    }
+
+    /**
+     * Điền {@code values} vào template. Biến không có trong map được thay bằng chuỗi rỗng.
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            Placeholder placeholder = placeholders[i];
+            String value = format(values.get(placeholder.name()), placeholder.format());
+            if (placeholder.escape()) {
+                appendEscaped(out, value);
+            } else {
+                out.append(value);
+            }
+        }
+        out.append(literals[literals.length - 1]);
+        String result = out.toString();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Tên các biến được template sử dụng, theo thứ tự xuất hiện.
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Định dạng tiền VND (ví dụ 1.500.000 ₫) bằng formatter đã cache của thread hiện tại.
+     */
+    public static String formatCurrency(Object amount) {
+        if (amount == null) {
+            return "0₫";
+        }
+        if (amount instanceof Number number) {
+            return CURRENCY_FORMAT.get().format(number instanceof BigDecimal ? number : number.doubleValue());
+        }
+        return amount.toString();
+    }
+
+    /**
+     * Định dạng thời điểm theo giờ Việt Nam (dd/MM/yyyy HH:mm:ss).
+     */
+    public static String formatDateTime(TemporalAccessor value) {
+        if (value instanceof ZonedDateTime zoned) {
+            return zoned.withZoneSameInstant(VIETNAM_ZONE).format(DATE_TIME_FORMAT);
+        }
+        if (value instanceof Instant instant) {
+            return instant.atZone(VIETNAM_ZONE).format(DATE_TIME_FORMAT);
+        }
+        return DATE_TIME_FORMAT.format(value);
+    }
+
+    private static String format(Object value, Format format) {
+        if (value == null) {
+            return format == Format.CURRENCY ? formatCurrency(null) : "";
+        }
+        return switch (format) {
+            case CURRENCY -> formatCurrency(value);
+            case DATE -> value instanceof LocalDate || value instanceof LocalDateTime || value instanceof ZonedDateTime
+                    ? DATE_FORMAT.format((TemporalAccessor) value)
+                    : value.toString();
+            case DATE_TIME -> value instanceof TemporalAccessor temporal && !(value instanceof LocalDate)
+                    ? formatDateTime(temporal)
+                    : value.toString();
+            case NONE -> value.toString();
+        };
+    }
+
+    private static Placeholder parse(String expression, boolean escape) {
+        int pipe = expression.indexOf('|');
+        if (pipe < 0) {
+            return new Placeholder(expression, Format.NONE, escape);
+        }
+        String name = expression.substring(0, pipe).trim();
+        String formatName = expression.substring(pipe + 1).trim();
+        Format format = switch (formatName) {
+            case "currency" -> Format.CURRENCY;
+            case "date" -> Format.DATE;
+            case "datetime" -> Format.DATE_TIME;
+            default -> throw new IllegalArgumentException("Unknown template format: " + formatName);
+        };
+        return new Placeholder(name, format, escape);
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private enum Format {
+        NONE, CURRENCY, DATE, DATE_TIME
+    }
+
+    private record Placeholder(String name, Format format, boolean escape) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.larose.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy tác vụ sau khi transaction hiện tại commit (cập nhật cache / index trong bộ nhớ, đưa việc vào hàng đợi).
+ * Transaction rollback thì tác vụ bị bỏ; không có transaction thì chạy ngay.
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
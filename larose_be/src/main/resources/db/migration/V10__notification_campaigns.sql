@@ -0,0 +1,31 @@
+-- Bulk mail campaigns: recipients are selected in user-id order and enqueued into the mail outbox
+-- chunk by chunk; last_user_id is the resume point after a crash
+CREATE TABLE IF NOT EXISTS notification_campaigns (
+    id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    template_name VARCHAR(100) NOT NULL,
+    check_in_from DATE NOT NULL,
+    check_in_to DATE NOT NULL,
+    booking_statuses VARCHAR(100) NOT NULL,
+    status ENUM('RUNNING','COMPLETED','CANCELLED','FAILED') NOT NULL DEFAULT 'RUNNING',
+    last_user_id BIGINT UNSIGNED NOT NULL DEFAULT 0,
+    enqueued_count INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000) NULL,
+    created_by BIGINT UNSIGNED NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    completed_at DATETIME NULL,
+    INDEX idx_notification_campaigns_status (status),
+    CONSTRAINT fk_notification_campaigns_user FOREIGN KEY (created_by) REFERENCES users (id) ON DELETE SET NULL
+);
+
+-- Campaign mails are flagged as bulk so the outbox worker sends transactional mails first
+ALTER TABLE notifications
+    ADD COLUMN campaign_id BIGINT UNSIGNED NULL AFTER user_id,
+    ADD COLUMN is_bulk TINYINT(1) NOT NULL DEFAULT 0 AFTER is_html,
+    ADD INDEX idx_notifications_campaign (campaign_id, status),
+    ADD CONSTRAINT fk_notifications_campaign FOREIGN KEY (campaign_id) REFERENCES notification_campaigns (id) ON DELETE SET NULL;
+
+-- Recipient selection: bookings by check-in date
+CREATE INDEX idx_bookings_check_in_user ON bookings (check_in, user_id);
@@ -0,0 +1,3 @@
+-- Admin transaction search: keyset pagination on (created_at, id), optionally filtered by status
+CREATE INDEX idx_tx_created_id ON transactions (created_at, id);
+CREATE INDEX idx_tx_status_created_id ON transactions (status, created_at, id);
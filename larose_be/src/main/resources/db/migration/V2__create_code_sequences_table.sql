@@ -0,0 +1,6 @@
+-- Create code_sequences table (block allocator for booking/room codes)
+CREATE TABLE IF NOT EXISTS code_sequences (
+    name VARCHAR(100) NOT NULL PRIMARY KEY,
+    next_value BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
@@ -0,0 +1,15 @@
+-- Create daily_revenue table (pre-aggregated revenue per day for dashboards and VAT reports)
+CREATE TABLE IF NOT EXISTS daily_revenue (
+    revenue_date DATE NOT NULL PRIMARY KEY,
+    room_revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    service_revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    transaction_revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    open_transaction_revenue DECIMAL(14,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Days whose daily_revenue rebuild failed after the business transaction committed; retried in the background
+CREATE TABLE IF NOT EXISTS daily_revenue_dirty (
+    revenue_date DATE NOT NULL PRIMARY KEY,
+    marked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,5 @@
+-- Date window covered by each cached report, used to evict entries touched by booking/transaction changes
+ALTER TABLE reports_cache
+    ADD COLUMN window_start DATE NULL,
+    ADD COLUMN window_end DATE NULL,
+    ADD INDEX idx_reports_cache_window (window_start, window_end);
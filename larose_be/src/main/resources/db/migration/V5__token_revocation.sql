@@ -0,0 +1,16 @@
+-- Durable JWT revocation shared by every node
+-- token_version: bumped when all tokens of a user are revoked (deactivate, role or password change); JWTs carry it as claim "ver"
+-- token_version_changed_at: nodes poll it to pick up revocations made elsewhere
+ALTER TABLE users
+    ADD COLUMN token_version INT NOT NULL DEFAULT 0,
+    ADD COLUMN token_version_changed_at DATETIME NULL,
+    ADD KEY idx_users_token_version_changed (token_version_changed_at);
+
+-- Single tokens revoked at logout; nodes load unexpired rows at startup and poll new ones by created_at
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    jti VARCHAR(64) NOT NULL PRIMARY KEY,
+    expires_at DATETIME NOT NULL,
+    created_at DATETIME NOT NULL,
+    KEY idx_revoked_tokens_created (created_at),
+    KEY idx_revoked_tokens_expires (expires_at)
+);
@@ -0,0 +1,3 @@
+-- Keyset pagination of the public review feed per room (created_at DESC, id DESC)
+ALTER TABLE reviews
+    ADD INDEX idx_reviews_room_status_created (room_id, status, created_at, id);
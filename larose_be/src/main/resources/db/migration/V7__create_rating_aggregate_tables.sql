@@ -0,0 +1,43 @@
+-- Running rating aggregates of published reviews per room and per room type (count, sum, 1-5 star histogram)
+CREATE TABLE IF NOT EXISTS room_rating_aggregates (
+    room_id BIGINT NOT NULL PRIMARY KEY,
+    review_count INT NOT NULL DEFAULT 0,
+    rating_sum INT NOT NULL DEFAULT 0,
+    stars_1 INT NOT NULL DEFAULT 0,
+    stars_2 INT NOT NULL DEFAULT 0,
+    stars_3 INT NOT NULL DEFAULT 0,
+    stars_4 INT NOT NULL DEFAULT 0,
+    stars_5 INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS room_type_rating_aggregates (
+    room_type_id BIGINT NOT NULL PRIMARY KEY,
+    review_count INT NOT NULL DEFAULT 0,
+    rating_sum INT NOT NULL DEFAULT 0,
+    stars_1 INT NOT NULL DEFAULT 0,
+    stars_2 INT NOT NULL DEFAULT 0,
+    stars_3 INT NOT NULL DEFAULT 0,
+    stars_4 INT NOT NULL DEFAULT 0,
+    stars_5 INT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Backfill from the existing published reviews
+INSERT INTO room_rating_aggregates (room_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5)
+SELECT rv.room_id,
+       COUNT(*),
+       SUM(rv.rating),
+       SUM(rv.rating = 1), SUM(rv.rating = 2), SUM(rv.rating = 3), SUM(rv.rating = 4), SUM(rv.rating = 5)
+FROM reviews rv
+WHERE rv.status = 'published' AND rv.room_id IS NOT NULL
+GROUP BY rv.room_id;
+
+INSERT INTO room_type_rating_aggregates (room_type_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5)
+SELECT r.room_type_id,
+       SUM(a.review_count),
+       SUM(a.rating_sum),
+       SUM(a.stars_1), SUM(a.stars_2), SUM(a.stars_3), SUM(a.stars_4), SUM(a.stars_5)
+FROM room_rating_aggregates a
+JOIN rooms r ON r.id = a.room_id
+GROUP BY r.room_type_id;
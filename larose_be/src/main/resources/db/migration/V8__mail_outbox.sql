@@ -0,0 +1,25 @@
+-- Persistent mail outbox on notifications: queued rows are sent by the background mail worker
+-- Enum values in upper case to match the JPA mapping (EnumType.STRING)
+ALTER TABLE notifications
+    MODIFY COLUMN `type` ENUM('EMAIL','SMS','PUSH','SYSTEM') NOT NULL,
+    MODIFY COLUMN `status` ENUM('QUEUED','SENT','FAILED') NOT NULL DEFAULT 'QUEUED',
+    ADD COLUMN recipient VARCHAR(255) NULL AFTER user_id,
+    ADD COLUMN is_html TINYINT(1) NOT NULL DEFAULT 1 AFTER body,
+    ADD COLUMN attempts INT NOT NULL DEFAULT 0,
+    ADD COLUMN next_attempt_at DATETIME NULL,
+    ADD COLUMN last_error VARCHAR(1000) NULL,
+    ADD INDEX idx_notifications_outbox (status, next_attempt_at);
+
+-- Attachments / inline images of queued mails: either stored bytes or a classpath resource (e.g. the logo)
+CREATE TABLE IF NOT EXISTS notification_attachments (
+    id BIGINT UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    notification_id BIGINT UNSIGNED NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    content_id VARCHAR(255) NULL,
+    content LONGBLOB NULL,
+    resource_path VARCHAR(255) NULL,
+    KEY idx_notification_attachments_notification (notification_id),
+    CONSTRAINT fk_notification_attachments_notification FOREIGN KEY (notification_id)
+        REFERENCES notifications (id) ON DELETE CASCADE
+);
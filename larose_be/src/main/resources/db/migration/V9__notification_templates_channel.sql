@@ -0,0 +1,4 @@
+-- Email templates are loaded from notification_templates (overriding the classpath defaults)
+-- Enum values in upper case to match the JPA mapping (EnumType.STRING)
+ALTER TABLE notification_templates
+    MODIFY COLUMN `channel` ENUM('EMAIL','SMS') CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL;
@@ -0,0 +1,100 @@
+package com.larose.repository;
+
+import com.larose.dto.search.TransactionSearchDto;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionSearchRepositoryImplTest {
+
+    private CriteriaBuilder cb;
+    private Path<Comparable<Object>> sortKey;
+    private Path<Long> id;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        cb = mock(CriteriaBuilder.class);
+        sortKey = mock(Path.class);
+        id = mock(Path.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ascendingKeysetIsKeyGreaterOrSameKeyWithGreaterId() {
+        Comparable<Object> value = (Comparable<Object>) (Comparable<?>) new BigDecimal("99.00");
+        Predicate idAfter = mock(Predicate.class);
+        Predicate keyAfter = mock(Predicate.class);
+        Predicate keyEqual = mock(Predicate.class);
+        Predicate tie = mock(Predicate.class);
+        Predicate result = mock(Predicate.class);
+        when(cb.greaterThan(id, 20L)).thenReturn(idAfter);
+        when(cb.greaterThan(sortKey, value)).thenReturn(keyAfter);
+        when(cb.equal(sortKey, value)).thenReturn(keyEqual);
+        when(cb.and(keyEqual, idAfter)).thenReturn(tie);
+        when(cb.or(keyAfter, tie)).thenReturn(result);
+
+        Predicate predicate = TransactionSearchRepositoryImpl.after(cb, "amount", sortKey, id,
+                criteria(new BigDecimal("99.00"), 20L), true);
+
+        assertThat(predicate).isSameAs(result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void descendingKeysetUsesLessThan() {
+        Comparable<Object> value = (Comparable<Object>) (Comparable<?>) new BigDecimal("99.00");
+        Predicate idAfter = mock(Predicate.class);
+        Predicate keyAfter = mock(Predicate.class);
+        Predicate keyEqual = mock(Predicate.class);
+        Predicate tie = mock(Predicate.class);
+        Predicate result = mock(Predicate.class);
+        when(cb.lessThan(id, 20L)).thenReturn(idAfter);
+        when(cb.lessThan(sortKey, value)).thenReturn(keyAfter);
+        when(cb.equal(sortKey, value)).thenReturn(keyEqual);
+        when(cb.and(keyEqual, idAfter)).thenReturn(tie);
+        when(cb.or(keyAfter, tie)).thenReturn(result);
+
+        Predicate predicate = TransactionSearchRepositoryImpl.after(cb, "amount", sortKey, id,
+                criteria(new BigDecimal("99.00"), 20L), false);
+
+        assertThat(predicate).isSameAs(result);
+    }
+
+    @Test
+    void sortingByIdOnlyComparesId() {
+        Predicate idAfter = mock(Predicate.class);
+        when(cb.lessThan(id, 20L)).thenReturn(idAfter);
+
+        Predicate predicate = TransactionSearchRepositoryImpl.after(cb, "id", sortKey, id,
+                criteria(null, 20L), false);
+
+        assertThat(predicate).isSameAs(idAfter);
+    }
+
+    @Test
+    void missingSortValueFallsBackToId() {
+        Predicate idAfter = mock(Predicate.class);
+        when(cb.greaterThan(id, 20L)).thenReturn(idAfter);
+
+        Predicate predicate = TransactionSearchRepositoryImpl.after(cb, "createdAt", sortKey, id,
+                criteria(null, 20L), true);
+
+        assertThat(predicate).isSameAs(idAfter);
+    }
+
+    private static TransactionSearchDto criteria(Comparable<?> afterValue, Long afterId) {
+        TransactionSearchDto criteria = new TransactionSearchDto();
+        criteria.setAfterValue(afterValue);
+        criteria.setAfterId(afterId);
+        return criteria;
+    }
+}
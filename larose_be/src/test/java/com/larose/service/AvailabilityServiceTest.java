@@ -0,0 +1,133 @@
+package com.larose.service;
+
+import com.larose.entity.Booking;
+import com.larose.entity.Room;
+import com.larose.repository.AvailabilityCalendarRepository;
+import com.larose.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AvailabilityServiceTest {
+
+    private AvailabilityCalendarRepository availabilityCalendarRepository;
+    private BookingRepository bookingRepository;
+    private AvailabilityService availabilityService;
+
+    @BeforeEach
+    void setUp() {
+        availabilityCalendarRepository = mock(AvailabilityCalendarRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        availabilityService = new AvailabilityService(availabilityCalendarRepository, bookingRepository);
+    }
+
+    @Test
+    void reserveMarksNightsButNotCheckoutDay() {
+        // Không có transaction nên index được cập nhật ngay
+        availabilityService.reserve(booking(1L, "2025-03-10", "2025-03-13"));
+
+        assertThat(availabilityService.isAvailable(1L, date("2025-03-09"), date("2025-03-10"))).isTrue();
+        assertThat(availabilityService.isAvailable(1L, date("2025-03-12"), date("2025-03-13"))).isFalse();
+        assertThat(availabilityService.isAvailable(1L, date("2025-03-13"), date("2025-03-15"))).isTrue();
+        assertThat(availabilityService.getBookedDates(1L, date("2025-03-01"), date("2025-04-01")))
+                .containsExactly(date("2025-03-10"), date("2025-03-11"), date("2025-03-12"));
+    }
+
+    @Test
+    void sameDayBookingHoldsOneNight() {
+        availabilityService.reserve(booking(1L, "2025-03-10", "2025-03-10"));
+
+        assertThat(availabilityService.getBookedDates(1L, date("2025-03-01"), date("2025-04-01")))
+                .containsExactly(date("2025-03-10"));
+    }
+
+    @Test
+    void reserveRejectsOverlap() {
+        availabilityService.reserve(booking(1L, "2025-03-10", "2025-03-13"));
+
+        assertThatThrownBy(() -> availabilityService.reserve(booking(1L, "2025-03-12", "2025-03-14")))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Nối tiếp đúng ngày trả phòng thì hợp lệ
+        availabilityService.reserve(booking(1L, "2025-03-13", "2025-03-14"));
+    }
+
+    @Test
+    void releaseClearsOnlyGivenRange() {
+        availabilityService.reserve(booking(1L, "2025-03-10", "2025-03-13"));
+        availabilityService.reserve(booking(1L, "2025-03-13", "2025-03-15"));
+
+        availabilityService.release(null, 1L, date("2025-03-10"), date("2025-03-13"));
+
+        assertThat(availabilityService.getBookedDates(1L, date("2025-03-01"), date("2025-04-01")))
+                .containsExactly(date("2025-03-13"), date("2025-03-14"));
+    }
+
+    @Test
+    void bookedRangesMergeAdjacentBookingsAndStartFromGivenDay() {
+        availabilityService.reserve(booking(1L, "2025-03-01", "2025-03-03"));
+        availabilityService.reserve(booking(1L, "2025-03-10", "2025-03-12"));
+        availabilityService.reserve(booking(1L, "2025-03-12", "2025-03-14"));
+        availabilityService.reserve(booking(1L, "2025-03-20", "2025-03-21"));
+
+        assertThat(availabilityService.getBookedRanges(1L, date("2025-03-11"))).containsExactly(
+                new AvailabilityService.BookedRange(date("2025-03-11"), date("2025-03-14")),
+                new AvailabilityService.BookedRange(date("2025-03-20"), date("2025-03-21")));
+        assertThat(availabilityService.getBookedRanges(2L, date("2025-03-01"))).isEmpty();
+    }
+
+    @Test
+    void countBookedRoomsIncludesBookingCheckingOutOnMinDate() {
+        availabilityService.reserve(booking(1L, "2025-03-08", "2025-03-10"));
+        availabilityService.reserve(booking(2L, "2025-03-15", "2025-03-16"));
+        availabilityService.reserve(booking(3L, "2025-03-01", "2025-03-09"));
+
+        // Giống check_in <= maxDate AND check_out >= minDate
+        assertThat(availabilityService.countBookedRooms(date("2025-03-10"), date("2025-03-15"))).isEqualTo(2);
+        assertThat(availabilityService.countBookedRooms(date("2025-03-11"), date("2025-03-14"))).isZero();
+    }
+
+    @Test
+    void datesBeforeOriginAreClampedToFirstBit() {
+        availabilityService.reserve(booking(1L, "2019-12-20", "2019-12-25"));
+
+        // Cả khoảng trước 2020-01-01 dồn về bit 0, tức đêm 2020-01-01
+        assertThat(availabilityService.getBookedDates(1L, date("2019-01-01"), date("2020-02-01")))
+                .containsExactly(date("2020-01-01"));
+        assertThat(availabilityService.isAvailable(1L, date("2020-01-01"), date("2020-01-02"))).isFalse();
+        assertThat(availabilityService.isAvailable(1L, date("2020-01-02"), date("2020-01-05"))).isTrue();
+    }
+
+    @Test
+    void loadIndexReadsCalendarAndLegacyBookings() {
+        when(availabilityCalendarRepository.findAllBookedNights())
+                .thenReturn(List.<Object[]>of(new Object[]{1L, date("2025-05-01")}));
+        when(bookingRepository.findOccupiedRanges())
+                .thenReturn(List.<Object[]>of(new Object[]{2L, date("2025-05-03"), date("2025-05-05")}));
+
+        availabilityService.loadIndex();
+
+        assertThat(availabilityService.isAvailable(1L, date("2025-05-01"), date("2025-05-02"))).isFalse();
+        assertThat(availabilityService.isAvailable(1L, date("2025-05-02"), date("2025-05-03"))).isTrue();
+        assertThat(availabilityService.filterAvailable(List.of(1L, 2L, 3L), date("2025-05-04"), date("2025-05-06")))
+                .containsExactly(1L, 3L);
+    }
+
+    private static Booking booking(Long roomId, String checkIn, String checkOut) {
+        Booking booking = new Booking();
+        booking.setRoom(Room.builder().id(roomId).build());
+        booking.setCheckIn(date(checkIn));
+        booking.setCheckOut(date(checkOut));
+        return booking;
+    }
+
+    private static LocalDate date(String value) {
+        return LocalDate.parse(value);
+    }
+}
@@ -0,0 +1,114 @@
+package com.larose.service;
+
+import com.larose.dto.BookingEventDTO;
+import com.larose.entity.Booking;
+import com.larose.entity.BookingEvent;
+import com.larose.repository.BookingEventBatchRepository.EventRow;
+import com.larose.repository.BookingEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class BookingEventServiceTest {
+
+    // Bảng booking_events giả lập
+    private final List<EventRow> table = new ArrayList<>();
+    private BookingEventRepository repository;
+    private BookingEventService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(BookingEventRepository.class);
+        when(repository.batchInsert(anyList())).thenAnswer(invocation -> {
+            List<EventRow> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(row -> "bad".equals(row.reason()))) {
+                throw new DataIntegrityViolationException("Data too long for column 'reason'");
+            }
+            table.addAll(rows);
+            return rows.size();
+        });
+        when(repository.findByBookingIdOrderByCreatedAtAscIdAsc(anyLong())).thenReturn(List.of());
+        // Lô lớn: không tự ghi, chỉ ghi khi stop()
+        service = new BookingEventService(repository, mock(PlatformTransactionManager.class), 100, 60_000, 100);
+    }
+
+    @Test
+    void timelineIncludesQueuedEventsWithoutWritingOnTheCallerThread() {
+        service.record(booking(1L), Booking.Status.pending, Booking.Status.confirmed, null);
+
+        List<BookingEventDTO> timeline = service.getTimeline(1L);
+
+        assertThat(timeline).extracting(BookingEventDTO::getToStatus).containsExactly("confirmed");
+        assertThat(service.getTimeline(2L)).isEmpty();
+        verify(repository, never()).batchInsert(anyList());
+    }
+
+    @Test
+    void queuedEventAlreadyWrittenIsNotListedTwice() {
+        service.record(booking(1L), Booking.Status.pending, Booking.Status.confirmed, null);
+        BookingEventDTO queued = service.getTimeline(1L).get(0);
+
+        // Thread ghi vừa commit sự kiện này nhưng chưa kịp bỏ khỏi hàng đợi
+        BookingEvent stored = BookingEvent.builder()
+                .id(10L)
+                .fromStatus("pending")
+                .toStatus("confirmed")
+                .createdAt(queued.getCreatedAt())
+                .build();
+        when(repository.findByBookingIdOrderByCreatedAtAscIdAsc(1L)).thenReturn(List.of(stored));
+
+        assertThat(service.getTimeline(1L)).extracting(BookingEventDTO::getId).containsExactly(10L);
+    }
+
+    @Test
+    void rowThatFailsOnItsOwnIsDroppedAndTheRestAreWritten() {
+        service.record(booking(1L), null, Booking.Status.pending, null);
+        service.record(booking(2L), null, Booking.Status.pending, "bad");
+        service.record(booking(3L), null, Booking.Status.pending, null);
+
+        service.stop();
+
+        assertThat(table).extracting(EventRow::bookingId).containsExactly(1L, 3L);
+        // Lô lỗi được thử lại từng dòng: 1 lô + 3 dòng
+        verify(repository, times(4)).batchInsert(anyList());
+        assertThat(service.getTimeline(2L)).isEmpty();
+    }
+
+    @Test
+    void eventsStayQueuedWhileTheDatabaseIsUnreachable() {
+        doThrow(new CannotGetJdbcConnectionException("Connection refused"))
+                .when(repository).batchInsert(anyList());
+        service.record(booking(1L), Booking.Status.confirmed, Booking.Status.cancelled, "guest request");
+
+        service.stop();
+
+        // Không thử từng dòng khi DB không truy cập được, sự kiện vẫn còn để lượt sau ghi
+        verify(repository, times(1)).batchInsert(anyList());
+        assertThat(service.getTimeline(1L)).extracting(BookingEventDTO::getReason).containsExactly("guest request");
+    }
+
+    @Test
+    void unchangedStatusIsNotRecorded() {
+        service.record(booking(1L), Booking.Status.confirmed, Booking.Status.confirmed, null);
+
+        assertThat(service.getTimeline(1L)).isEmpty();
+        verify(repository, never()).batchInsert(any());
+    }
+
+    private static Booking booking(Long id) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        return booking;
+    }
+}
@@ -0,0 +1,152 @@
+package com.larose.service;
+
+import com.larose.entity.Booking;
+import com.larose.entity.User;
+import com.larose.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingSearchIndexServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    private BookingRepository bookingRepository;
+    private BookingSearchIndexService service;
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findSearchIndexRows()).thenReturn(rows);
+        service = new BookingSearchIndexService(bookingRepository);
+    }
+
+    @Test
+    void returnsNullUntilIndexIsLoaded() {
+        assertThat(service.search("abc", null, 0, 10)).isNull();
+
+        service.loadIndex();
+
+        assertThat(service.search("abc", null, 0, 10)).isNotNull();
+    }
+
+    @Test
+    void ranksExactThenPrefixThenWordStartThenContains() {
+        row(1L, "LR-0001", Booking.Status.confirmed, 1, 11L, "Le Tran", "le@example.com", null);
+        row(2L, "LR-0002", Booking.Status.confirmed, 2, 12L, "Tran Minh", "minh@example.com", null);
+        row(3L, "LR-0003", Booking.Status.confirmed, 3, 13L, "Pham An", "tran@example.com", null);
+        row(4L, "TRAN", Booking.Status.confirmed, 4, null, null, null, null);
+        row(5L, "LR-0005", Booking.Status.confirmed, 5, 15L, "Hoang Tranh", "hoang@example.com", null);
+        row(6L, "LR-0006", Booking.Status.confirmed, 6, 16L, "Vo Xtran", "vo@example.com", null);
+        service.loadIndex();
+
+        // mã khớp hẳn 100, email bắt đầu 50, tên bắt đầu 45, đầu từ 35, giữa từ 25
+        BookingSearchIndexService.SearchResult result = service.search("Tran", null, 0, 10);
+
+        assertThat(result.bookingIds()).containsExactly(4L, 3L, 2L, 5L, 1L, 6L);
+        assertThat(result.total()).isEqualTo(6);
+    }
+
+    @Test
+    void equalScoresAreOrderedNewestFirst() {
+        row(1L, "LR-A", Booking.Status.confirmed, 1, 11L, "Nguyen An", "a@example.com", null);
+        row(2L, "LR-B", Booking.Status.confirmed, 3, 11L, "Nguyen An", "a@example.com", null);
+        row(3L, "LR-C", Booking.Status.confirmed, 2, 11L, "Nguyen An", "a@example.com", null);
+        service.loadIndex();
+
+        assertThat(service.search("nguyen", null, 0, 10).bookingIds()).containsExactly(2L, 3L, 1L);
+    }
+
+    @Test
+    void matchesWithoutVietnameseDiacriticsAndCase() {
+        row(1L, "LR-0001", Booking.Status.pending, 1, 11L, "Trần Văn Đức", "duc@example.com", null);
+        service.loadIndex();
+
+        assertThat(service.search("văn đức", null, 0, 10).bookingIds()).containsExactly(1L);
+        assertThat(service.search("VAN DUC", null, 0, 10).bookingIds()).containsExactly(1L);
+    }
+
+    @Test
+    void phoneMatchesIgnoringSeparators() {
+        row(1L, "LR-0001", Booking.Status.pending, 1, 11L, "An", "an@example.com", "0901-234-567");
+        row(2L, "LR-0002", Booking.Status.pending, 2, 12L, "Binh", "binh@example.com", "0911 000 111");
+        service.loadIndex();
+
+        assertThat(service.search("0901 234 567", null, 0, 10).bookingIds()).containsExactly(1L);
+        assertThat(service.search("234567", null, 0, 10).bookingIds()).containsExactly(1L);
+    }
+
+    @Test
+    void trigramCandidatesWithoutSubstringMatchAreDropped() {
+        // "abcxbcd" chứa cả hai trigram "abc", "bcd" của "abcd" nhưng không chứa chuỗi "abcd"
+        row(1L, "abcxbcd", Booking.Status.pending, 1, null, null, null, null);
+        service.loadIndex();
+
+        BookingSearchIndexService.SearchResult result = service.search("abcd", null, 0, 10);
+
+        assertThat(result.bookingIds()).isEmpty();
+        assertThat(result.total()).isZero();
+    }
+
+    @Test
+    void shortQueryScansAllBookings() {
+        row(1L, "LR-0001", Booking.Status.pending, 1, null, null, null, null);
+        row(2L, "XY-0002", Booking.Status.pending, 2, null, null, null, null);
+        service.loadIndex();
+
+        assertThat(service.search("lr", null, 0, 10).bookingIds()).containsExactly(1L);
+    }
+
+    @Test
+    void filtersByStatusAndPages() {
+        for (long id = 1; id <= 5; id++) {
+            row(id, "LR-000" + id, id % 2 == 0 ? Booking.Status.cancelled : Booking.Status.confirmed, (int) id,
+                    null, null, null, null);
+        }
+        service.loadIndex();
+
+        BookingSearchIndexService.SearchResult page = service.search("lr-000", Booking.Status.confirmed, 1, 1);
+
+        assertThat(page.bookingIds()).containsExactly(3L);
+        assertThat(page.total()).isEqualTo(3);
+        assertThat(service.search("lr-000", null, 10, 5).bookingIds()).isEmpty();
+    }
+
+    @Test
+    void reindexingReplacesOldCodeAndUserData() {
+        row(1L, "OLD-CODE", Booking.Status.pending, 1, 11L, "Le Van A", "a@example.com", null);
+        service.loadIndex();
+
+        User user = User.builder().id(11L).fullName("Pham Thi B").email("b@example.com").build();
+        Booking booking = new Booking();
+        booking.setId(1L);
+        booking.setBookingCode("NEW-CODE");
+        booking.setStatus(Booking.Status.confirmed);
+        booking.setCreatedAt(BASE);
+        booking.setUser(user);
+        service.index(booking);
+
+        assertThat(service.search("old-code", null, 0, 10).total()).isZero();
+        assertThat(service.search("le van", null, 0, 10).total()).isZero();
+        assertThat(service.search("new-code", Booking.Status.confirmed, 0, 10).bookingIds()).containsExactly(1L);
+        assertThat(service.search("pham thi", null, 0, 10).bookingIds()).containsExactly(1L);
+
+        service.removeUser(11L);
+
+        assertThat(service.search("pham thi", null, 0, 10).total()).isZero();
+        assertThat(service.search("new-code", null, 0, 10).bookingIds()).containsExactly(1L);
+    }
+
+    private void row(Long id, String code, Booking.Status status, int minutes, Long userId,
+                     String fullName, String email, String phone) {
+        rows.add(new Object[]{id, code, status, BASE.plusMinutes(minutes), userId, fullName, email, phone});
+    }
+}
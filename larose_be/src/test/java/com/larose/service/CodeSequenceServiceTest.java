@@ -0,0 +1,126 @@
+package com.larose.service;
+
+import com.larose.entity.CodeSequence;
+import com.larose.repository.CodeSequenceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class CodeSequenceServiceTest {
+
+    // Bảng code_sequences giả lập, dùng chung cho mọi "node" trong một test
+    private final Map<String, Long> table = new ConcurrentHashMap<>();
+    private CodeSequenceRepository repository;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(CodeSequenceRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(repository.findForUpdate(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            Long next = table.get(name);
+            if (next == null) {
+                return Optional.empty();
+            }
+            CodeSequence sequence = new CodeSequence();
+            sequence.setName(name);
+            sequence.setNextValue(next);
+            return Optional.of(sequence);
+        });
+        when(repository.insertIfAbsent(anyString(), anyLong())).thenAnswer(invocation ->
+                table.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null ? 1 : 0);
+        when(repository.save(any(CodeSequence.class))).thenAnswer(invocation -> {
+            CodeSequence sequence = invocation.getArgument(0);
+            table.put(sequence.getName(), sequence.getNextValue());
+            return sequence;
+        });
+    }
+
+    @Test
+    void servesBlockFromMemoryAndRefillsWhenExhausted() {
+        CodeSequenceService service = new CodeSequenceService(repository, transactionManager, 3);
+
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            values.add(service.next("booking", () -> 100));
+        }
+
+        assertThat(values).containsExactly(100L, 101L, 102L, 103L, 104L, 105L, 106L);
+        // 7 số với khối 3 => 3 lần xuống DB, DB đã giữ chỗ tới hết khối cuối
+        verify(repository, times(3)).save(any(CodeSequence.class));
+        assertThat(table).containsEntry("booking", 109L);
+    }
+
+    @Test
+    void seedIsOnlyUsedForNewSequenceAndClampedToOne() {
+        CodeSequenceService service = new CodeSequenceService(repository, transactionManager, 5);
+        AtomicInteger seedCalls = new AtomicInteger();
+
+        assertThat(service.next("room", () -> {
+            seedCalls.incrementAndGet();
+            return 0;
+        })).isEqualTo(1L);
+        table.put("other", 50L);
+        assertThat(service.next("other", () -> {
+            seedCalls.incrementAndGet();
+            return 999;
+        })).isEqualTo(50L);
+
+        assertThat(seedCalls).hasValue(1);
+    }
+
+    @Test
+    void nodesGetDisjointBlocks() {
+        CodeSequenceService first = new CodeSequenceService(repository, transactionManager, 10);
+        CodeSequenceService second = new CodeSequenceService(repository, transactionManager, 10);
+
+        long a = first.next("booking", () -> 1);
+        long b = second.next("booking", () -> 1);
+        long c = first.next("booking", () -> 1);
+
+        assertThat(a).isEqualTo(1L);
+        assertThat(b).isEqualTo(11L);
+        assertThat(c).isEqualTo(2L);
+    }
+
+    @Test
+    void nextRangeReservesContiguousNumbersOutsideBlocks() {
+        CodeSequenceService service = new CodeSequenceService(repository, transactionManager, 10);
+
+        assertThat(service.next("room", () -> 1)).isEqualTo(1L);
+        assertThat(service.nextRange("room", 25, () -> 1)).isEqualTo(11L);
+        assertThat(table).containsEntry("room", 36L);
+        // Khối trong bộ nhớ vẫn tiếp tục từ chỗ cũ
+        assertThat(service.next("room", () -> 1)).isEqualTo(2L);
+    }
+
+    @Test
+    void concurrentCallersNeverGetDuplicates() throws Exception {
+        CodeSequenceService service = new CodeSequenceService(repository, transactionManager, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                futures.add(executor.submit(() -> service.next("booking", () -> 1)));
+            }
+            Set<Long> values = new HashSet<>();
+            for (Future<Long> future : futures) {
+                values.add(future.get(10, TimeUnit.SECONDS));
+            }
+            assertThat(values).hasSize(400);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
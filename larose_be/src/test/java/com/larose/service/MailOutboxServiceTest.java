@@ -0,0 +1,70 @@
+package com.larose.service;
+
+import com.larose.entity.Notification;
+import com.larose.entity.NotificationAttachment;
+import com.larose.repository.NotificationAttachmentRepository;
+import com.larose.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class MailOutboxServiceTest {
+
+    private NotificationRepository notificationRepository;
+    private NotificationAttachmentRepository attachmentRepository;
+    private MailOutboxWorker worker;
+    private MailOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        attachmentRepository = mock(NotificationAttachmentRepository.class);
+        worker = mock(MailOutboxWorker.class);
+        when(notificationRepository.save(any(Notification.class))).thenAnswer(invocation -> {
+            Notification notification = invocation.getArgument(0);
+            notification.setId(42L);
+            return notification;
+        });
+        service = new MailOutboxService(notificationRepository, attachmentRepository, worker);
+    }
+
+    @Test
+    void enqueueStoresQueuedMailWithAttachmentsAndWakesWorker() {
+        NotificationAttachment pdf = MailOutboxService.file("invoice.pdf", "application/pdf", new byte[]{1, 2, 3});
+
+        Notification notification = service.enqueue(null, "guest@example.com", "Invoice", "Body", false, List.of(pdf));
+
+        assertThat(notification.getStatus()).isEqualTo(Notification.NotificationStatus.QUEUED);
+        assertThat(notification.getType()).isEqualTo(Notification.NotificationType.EMAIL);
+        assertThat(notification.getRecipient()).isEqualTo("guest@example.com");
+        assertThat(notification.getHtml()).isFalse();
+        assertThat(pdf.getNotification()).isSameAs(notification);
+        verify(attachmentRepository).saveAll(List.of(pdf));
+        // Không có transaction: worker được đánh thức ngay
+        verify(worker).wakeUp();
+    }
+
+    @Test
+    void mailWithoutAttachmentsDoesNotTouchAttachmentTable() {
+        service.enqueue("guest@example.com", "Welcome", "<p>Hi</p>", true);
+
+        verify(attachmentRepository, never()).saveAll(anyList());
+        verify(worker).wakeUp();
+    }
+
+    @Test
+    void blankRecipientIsRejected() {
+        assertThatThrownBy(() -> service.enqueue(" ", "Subject", "Body", true))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        verify(notificationRepository, never()).save(any());
+        verify(worker, never()).wakeUp();
+    }
+}
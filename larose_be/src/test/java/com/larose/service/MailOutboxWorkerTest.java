@@ -0,0 +1,243 @@
+package com.larose.service;
+
+import com.larose.entity.Notification;
+import com.larose.repository.NotificationAttachmentRepository;
+import com.larose.repository.NotificationRepository;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class MailOutboxWorkerTest {
+
+    private static final int MAX_ATTEMPTS = 4;
+
+    // Bảng notifications giả lập, dùng chung cho mọi "node" trong một test
+    private final Map<Long, Notification> table = new ConcurrentHashMap<>();
+    private final List<MailOutboxWorker> workers = new ArrayList<>();
+    private NotificationRepository notificationRepository;
+    private NotificationAttachmentRepository attachmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        attachmentRepository = mock(NotificationAttachmentRepository.class);
+        when(notificationRepository.findDueIds(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Notification.NotificationStatus status = invocation.getArgument(1);
+            LocalDateTime now = invocation.getArgument(2);
+            Pageable pageable = invocation.getArgument(3);
+            return table.values().stream()
+                    .filter(notification -> notification.getStatus() == status && isDue(notification, now))
+                    .sorted(Comparator.comparing(Notification::getBulk).thenComparing(Notification::getId))
+                    .limit(pageable.getPageSize())
+                    .map(Notification::getId)
+                    .toList();
+        });
+        // Cùng điều kiện WHERE với câu UPDATE: mỗi mail chỉ một node nhận được cho tới khi lease hết hạn
+        when(notificationRepository.claim(anyLong(), any(), any(), any())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            Notification.NotificationStatus status = invocation.getArgument(1);
+            LocalDateTime now = invocation.getArgument(2);
+            LocalDateTime leaseUntil = invocation.getArgument(3);
+            synchronized (table) {
+                Notification notification = table.get(id);
+                if (notification == null || notification.getStatus() != status || !isDue(notification, now)) {
+                    return 0;
+                }
+                notification.setNextAttemptAt(leaseUntil);
+                notification.setAttempts(notification.getAttempts() + 1);
+                return 1;
+            }
+        });
+        when(notificationRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Notification> found = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                if (table.containsKey(id)) {
+                    found.add(table.get(id));
+                }
+            }
+            return found;
+        });
+        when(attachmentRepository.findByNotificationIdIn(anyCollection())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (MailOutboxWorker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    @Test
+    void dueMailIsSentAndMarkedSent() throws InterruptedException {
+        queue(1L, "a@example.com");
+        JavaMailSender mailSender = mailSender();
+
+        worker(mailSender).drain();
+
+        Notification notification = table.get(1L);
+        assertThat(notification.getStatus()).isEqualTo(Notification.NotificationStatus.SENT);
+        assertThat(notification.getSentAt()).isNotNull();
+        assertThat(notification.getNextAttemptAt()).isNull();
+        assertThat(notification.getAttempts()).isEqualTo(1);
+        verify(mailSender, times(1)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void partialFailureOnlyRetriesTheRejectedMessages() throws InterruptedException {
+        queue(1L, "a@example.com");
+        queue(2L, "b@example.com");
+        queue(3L, "c@example.com");
+        JavaMailSender mailSender = mailSender();
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (MimeMessage message : (MimeMessage[]) invocation.getRawArguments()[0]) {
+                if ("b@example.com".equals(recipient(message))) {
+                    failed.put(message, new MessagingException("550 mailbox unavailable"));
+                }
+            }
+            throw new MailSendException(failed);
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        LocalDateTime before = LocalDateTime.now();
+        worker(mailSender).drain();
+
+        // Cả lô đi qua một lần gửi
+        verify(mailSender, times(1)).send(any(MimeMessage[].class));
+        assertThat(table.get(1L).getStatus()).isEqualTo(Notification.NotificationStatus.SENT);
+        assertThat(table.get(3L).getStatus()).isEqualTo(Notification.NotificationStatus.SENT);
+        Notification rejected = table.get(2L);
+        assertThat(rejected.getStatus()).isEqualTo(Notification.NotificationStatus.QUEUED);
+        assertThat(rejected.getLastError()).contains("550");
+        assertThat(Duration.between(before, rejected.getNextAttemptAt()).getSeconds()).isBetween(30L, 32L);
+    }
+
+    @Test
+    void backoffDoublesUpToTheCapThenMailFails() throws InterruptedException {
+        queue(1L, "a@example.com");
+        JavaMailSender mailSender = mailSender();
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(MimeMessage[].class));
+        MailOutboxWorker worker = worker(mailSender);
+
+        List<Long> delays = new ArrayList<>();
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            LocalDateTime before = LocalDateTime.now();
+            worker.drain();
+            Notification notification = table.get(1L);
+            assertThat(notification.getStatus()).isEqualTo(Notification.NotificationStatus.QUEUED);
+            assertThat(notification.getAttempts()).isEqualTo(attempt);
+            delays.add(Duration.between(before, notification.getNextAttemptAt()).getSeconds());
+            // Bỏ qua thời gian chờ
+            notification.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        }
+        worker.drain();
+
+        // base 30s, tối đa 100s: 30, 60, 100 (120 bị chặn)
+        assertThat(delays).hasSize(3);
+        assertThat(delays.get(0)).isBetween(30L, 32L);
+        assertThat(delays.get(1)).isBetween(60L, 62L);
+        assertThat(delays.get(2)).isBetween(100L, 102L);
+        Notification failed = table.get(1L);
+        assertThat(failed.getStatus()).isEqualTo(Notification.NotificationStatus.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(failed.getNextAttemptAt()).isNull();
+        assertThat(failed.getLastError()).contains("Connection refused");
+
+        // FAILED không được nhận lại
+        worker.drain();
+        verify(mailSender, times(MAX_ATTEMPTS)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void mailLeasedByOneNodeIsNotSentByAnother() throws InterruptedException {
+        queue(1L, "a@example.com");
+        JavaMailSender otherSender = mailSender();
+        MailOutboxWorker other = worker(otherSender);
+        JavaMailSender mailSender = mailSender();
+        // Node kia drain đúng lúc node này đang gửi
+        doAnswer(invocation -> {
+            other.drain();
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        worker(mailSender).drain();
+
+        verify(otherSender, never()).send(any(MimeMessage[].class));
+        assertThat(table.get(1L).getStatus()).isEqualTo(Notification.NotificationStatus.SENT);
+        assertThat(table.get(1L).getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void mailIsClaimedAgainOnceTheLeaseOfADeadNodeExpires() throws InterruptedException {
+        Notification notification = queue(1L, "a@example.com");
+        // Node trước đã nhận (attempts = 1) rồi chết, lease đã hết hạn
+        notification.setAttempts(1);
+        notification.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        Notification leased = queue(2L, "b@example.com");
+        leased.setAttempts(1);
+        leased.setNextAttemptAt(LocalDateTime.now().plusMinutes(5));
+        JavaMailSender mailSender = mailSender();
+
+        worker(mailSender).drain();
+
+        assertThat(table.get(1L).getStatus()).isEqualTo(Notification.NotificationStatus.SENT);
+        assertThat(table.get(1L).getAttempts()).isEqualTo(2);
+        assertThat(table.get(2L).getStatus()).isEqualTo(Notification.NotificationStatus.QUEUED);
+        assertThat(table.get(2L).getAttempts()).isEqualTo(1);
+    }
+
+    private MailOutboxWorker worker(JavaMailSender mailSender) {
+        MailOutboxWorker worker = new MailOutboxWorker(notificationRepository, attachmentRepository, mailSender,
+                mock(MailAssetCacheService.class), mock(PlatformTransactionManager.class),
+                1, 10, 60_000, MAX_ATTEMPTS, 30, 100, 300, 0);
+        ReflectionTestUtils.setField(worker, "fromEmail", "noreply@larose.com");
+        ReflectionTestUtils.setField(worker, "appName", "La Rose");
+        workers.add(worker);
+        return worker;
+    }
+
+    private static JavaMailSender mailSender() {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        return mailSender;
+    }
+
+    private Notification queue(Long id, String recipient) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setRecipient(recipient);
+        notification.setType(Notification.NotificationType.EMAIL);
+        notification.setSubject("Subject " + id);
+        notification.setBody("<p>Body</p>");
+        table.put(id, notification);
+        return notification;
+    }
+
+    private static boolean isDue(Notification notification, LocalDateTime now) {
+        return notification.getNextAttemptAt() == null || !notification.getNextAttemptAt().isAfter(now);
+    }
+
+    private static String recipient(MimeMessage message) throws MessagingException {
+        return message.getRecipients(Message.RecipientType.TO)[0].toString();
+    }
+}
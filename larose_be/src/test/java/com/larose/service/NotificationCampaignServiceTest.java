@@ -0,0 +1,298 @@
+package com.larose.service;
+
+import com.larose.dto.projection.CampaignRecipientProjection;
+import com.larose.entity.Notification;
+import com.larose.entity.NotificationCampaign;
+import com.larose.entity.User;
+import com.larose.repository.BookingRepository;
+import com.larose.repository.NotificationCampaignRepository;
+import com.larose.repository.NotificationRepository;
+import com.larose.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bảng notification_campaigns / notifications giả lập với transaction tối giản: thay đổi chỉ được ghi khi commit,
+ * rollback thì bỏ, và commit kiểm tra @Version như Hibernate.
+ */
+class NotificationCampaignServiceTest {
+
+    private static final LocalDate CHECK_IN = LocalDate.of(2026, 11, 1);
+
+    private final Map<Long, NotificationCampaign> campaigns = new HashMap<>();
+    private final List<Notification> outbox = new ArrayList<>();
+    private final List<Recipient> guests = new ArrayList<>();
+    private final ThreadLocal<Deque<UnitOfWork>> transactions = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private NotificationCampaignRepository campaignRepository;
+    private NotificationRepository notificationRepository;
+    private BookingRepository bookingRepository;
+    private MailOutboxWorker worker;
+    private PlatformTransactionManager transactionManager;
+    private NotificationCampaignService service;
+
+    @BeforeEach
+    void setUp() {
+        campaignRepository = mock(NotificationCampaignRepository.class);
+        notificationRepository = mock(NotificationRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        EmailTemplateService emailTemplateService = mock(EmailTemplateService.class);
+        worker = mock(MailOutboxWorker.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            transactions.get().push(new UnitOfWork());
+            return mock(TransactionStatus.class);
+        });
+        doAnswer(invocation -> {
+            transactions.get().pop().commit();
+            return null;
+        }).when(transactionManager).commit(any());
+        doAnswer(invocation -> {
+            transactions.get().pop();
+            return null;
+        }).when(transactionManager).rollback(any());
+
+        when(campaignRepository.findById(anyLong())).thenAnswer(invocation -> {
+            NotificationCampaign stored = campaigns.get(invocation.<Long>getArgument(0));
+            if (stored == null) {
+                return Optional.empty();
+            }
+            NotificationCampaign loaded = copy(stored);
+            UnitOfWork transaction = transactions.get().peek();
+            if (transaction != null) {
+                transaction.managed.put(loaded, copy(stored));
+            }
+            return Optional.of(loaded);
+        });
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Notification> notifications = invocation.getArgument(0);
+            transactions.get().element().notifications.addAll(notifications);
+            return notifications;
+        });
+        when(notificationRepository.countByCampaignGroupByStatus(anyLong())).thenReturn(List.of());
+        when(bookingRepository.findCampaignRecipients(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            Long afterUserId = invocation.getArgument(3);
+            Pageable pageable = invocation.getArgument(4);
+            return guests.stream()
+                    .filter(guest -> guest.getUserId() > afterUserId)
+                    .limit(pageable.getPageSize())
+                    .map(CampaignRecipientProjection.class::cast)
+                    .toList();
+        });
+        when(userRepository.getReferenceById(anyLong())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            return user;
+        });
+        when(emailTemplateService.render(anyString(), anyMap())).thenAnswer(invocation -> {
+            Map<String, ?> values = invocation.getArgument(1);
+            return new EmailTemplateService.RenderedEmail("Thông báo", "Xin chào " + values.get("name"));
+        });
+
+        service = new NotificationCampaignService(campaignRepository, notificationRepository, bookingRepository,
+                userRepository, emailTemplateService, worker, transactionManager, 2);
+        for (long id = 1; id <= 5; id++) {
+            guests.add(new Recipient(id, "guest" + id + "@example.com", "Guest " + id, CHECK_IN));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void recipientsAreEnqueuedInChunksUntilCompleted() {
+        NotificationCampaign campaign = campaign(1L, 0L);
+
+        service.run(campaign.getId());
+
+        // 5 khách, mỗi đợt 2: 3 đợt, mỗi đợt một transaction và một lần đánh thức worker
+        verify(notificationRepository, times(3)).saveAll(anyList());
+        verify(worker, times(3)).wakeUp();
+        assertThat(outbox).extracting(Notification::getRecipient).containsExactly(
+                "guest1@example.com", "guest2@example.com", "guest3@example.com",
+                "guest4@example.com", "guest5@example.com");
+        assertThat(outbox).allMatch(Notification::getBulk);
+        NotificationCampaign stored = campaigns.get(1L);
+        assertThat(stored.getStatus()).isEqualTo(NotificationCampaign.CampaignStatus.COMPLETED);
+        assertThat(stored.getLastUserId()).isEqualTo(5L);
+        assertThat(stored.getEnqueuedCount()).isEqualTo(5);
+    }
+
+    @Test
+    void resumedRunContinuesAfterLastUserIdWithoutDuplicates() {
+        // Lần chạy trước đã ghi đợt 1 và 2 (user 1..4) rồi sập
+        NotificationCampaign campaign = campaign(1L, 4L);
+        campaign.setEnqueuedCount(4);
+
+        service.run(campaign.getId());
+
+        assertThat(outbox).extracting(Notification::getRecipient).containsExactly("guest5@example.com");
+        assertThat(campaigns.get(1L).getEnqueuedCount()).isEqualTo(5);
+        assertThat(campaigns.get(1L).getStatus()).isEqualTo(NotificationCampaign.CampaignStatus.COMPLETED);
+    }
+
+    @Test
+    void chunkThatFailsToCommitIsNotCountedAndIsRetriedOnResume() {
+        AtomicBoolean failed = new AtomicBoolean();
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Notification> notifications = invocation.getArgument(0);
+            if (notifications.get(0).getRecipient().equals("guest3@example.com") && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Deadlock found when trying to get lock");
+            }
+            transactions.get().element().notifications.addAll(notifications);
+            return notifications;
+        });
+        campaign(1L, 0L);
+
+        service.run(1L);
+
+        // Đợt 2 rollback cùng điểm tiếp tục: chỉ đợt 1 được ghi
+        assertThat(outbox).hasSize(2);
+        assertThat(campaigns.get(1L).getLastUserId()).isEqualTo(2L);
+        assertThat(campaigns.get(1L).getStatus()).isEqualTo(NotificationCampaign.CampaignStatus.FAILED);
+
+        campaigns.get(1L).setStatus(NotificationCampaign.CampaignStatus.RUNNING);
+        service.run(1L);
+
+        assertThat(outbox).extracting(Notification::getRecipient).doesNotHaveDuplicates().hasSize(5);
+    }
+
+    @Test
+    void chunkIsDroppedWhenAnotherRunnerAdvancedTheCampaign() {
+        campaign(1L, 0L);
+        AtomicBoolean raced = new AtomicBoolean();
+        when(bookingRepository.findCampaignRecipients(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            if (raced.compareAndSet(false, true)) {
+                // Node khác vừa ghi đợt đầu tiên sau khi runner này đọc chiến dịch
+                NotificationCampaign stored = campaigns.get(1L);
+                stored.setLastUserId(2L);
+                stored.setEnqueuedCount(2);
+                stored.setVersion(stored.getVersion() + 1);
+            }
+            return guests.subList(0, 2).stream().map(CampaignRecipientProjection.class::cast).toList();
+        });
+
+        service.run(1L);
+
+        verify(notificationRepository, never()).saveAll(anyList());
+        assertThat(outbox).isEmpty();
+        // Runner này dừng, chiến dịch vẫn thuộc về node kia
+        assertThat(campaigns.get(1L).getStatus()).isEqualTo(NotificationCampaign.CampaignStatus.RUNNING);
+        assertThat(campaigns.get(1L).getEnqueuedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelDuringARunningChunkStopsFurtherEnqueues() {
+        campaign(1L, 0L);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(bookingRepository.findCampaignRecipients(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            Long afterUserId = invocation.getArgument(3);
+            if (afterUserId == 2L && cancelled.compareAndSet(false, true)) {
+                // Admin huỷ trong lúc runner đang chuẩn bị đợt 2
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> service.cancel(1L));
+            }
+            return guests.stream()
+                    .filter(guest -> guest.getUserId() > afterUserId)
+                    .limit(2)
+                    .map(CampaignRecipientProjection.class::cast)
+                    .toList();
+        });
+
+        service.run(1L);
+
+        assertThat(outbox).extracting(Notification::getRecipient)
+                .containsExactly("guest1@example.com", "guest2@example.com");
+        NotificationCampaign stored = campaigns.get(1L);
+        assertThat(stored.getStatus()).isEqualTo(NotificationCampaign.CampaignStatus.CANCELLED);
+        assertThat(stored.getLastUserId()).isEqualTo(2L);
+        verify(notificationRepository).failQueuedByCampaign(1L, Notification.NotificationStatus.QUEUED,
+                Notification.NotificationStatus.FAILED, "Campaign cancelled");
+    }
+
+    @Test
+    void cancelledCampaignIsNotRunAgain() {
+        campaign(1L, 0L).setStatus(NotificationCampaign.CampaignStatus.CANCELLED);
+
+        service.run(1L);
+
+        verify(bookingRepository, never()).findCampaignRecipients(any(), any(), any(), any(), any());
+        assertThat(outbox).isEmpty();
+    }
+
+    private NotificationCampaign campaign(Long id, Long lastUserId) {
+        NotificationCampaign campaign = new NotificationCampaign();
+        campaign.setId(id);
+        campaign.setName("Policy update");
+        campaign.setTemplateName("policy-update");
+        campaign.setCheckInFrom(CHECK_IN);
+        campaign.setCheckInTo(CHECK_IN.plusDays(30));
+        campaign.setBookingStatuses("pending,confirmed");
+        campaign.setLastUserId(lastUserId);
+        campaign.setVersion(0L);
+        campaigns.put(id, campaign);
+        return campaign;
+    }
+
+    private static NotificationCampaign copy(NotificationCampaign source) {
+        NotificationCampaign copy = new NotificationCampaign();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setTemplateName(source.getTemplateName());
+        copy.setCheckInFrom(source.getCheckInFrom());
+        copy.setCheckInTo(source.getCheckInTo());
+        copy.setBookingStatuses(source.getBookingStatuses());
+        copy.setStatus(source.getStatus());
+        copy.setLastUserId(source.getLastUserId());
+        copy.setEnqueuedCount(source.getEnqueuedCount());
+        copy.setLastError(source.getLastError());
+        copy.setVersion(source.getVersion());
+        copy.setCompletedAt(source.getCompletedAt());
+        return copy;
+    }
+
+    // Entity đã load trong transaction (kèm bản gốc để biết có thay đổi) và mail chờ ghi
+    private class UnitOfWork {
+        final Map<NotificationCampaign, NotificationCampaign> managed = new IdentityHashMap<>();
+        final List<Notification> notifications = new ArrayList<>();
+
+        void commit() {
+            managed.forEach((campaign, original) -> {
+                if (campaign.equals(original)) {
+                    return;
+                }
+                NotificationCampaign stored = campaigns.get(campaign.getId());
+                if (!Objects.equals(stored.getVersion(), original.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(NotificationCampaign.class, campaign.getId());
+                }
+                campaign.setVersion(campaign.getVersion() + 1);
+                campaigns.put(campaign.getId(), copy(campaign));
+            });
+            outbox.addAll(notifications);
+        }
+    }
+
+    private record Recipient(Long getUserId, String getEmail, String getFullName, LocalDate getCheckIn)
+            implements CampaignRecipientProjection {
+    }
+}
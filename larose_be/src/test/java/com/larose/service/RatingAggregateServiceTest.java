@@ -0,0 +1,226 @@
+package com.larose.service;
+
+import com.larose.entity.Review;
+import com.larose.entity.Room;
+import com.larose.entity.RoomRatingAggregate;
+import com.larose.entity.RoomType;
+import com.larose.repository.RoomRatingAggregateRepository;
+import com.larose.repository.RoomTypeRatingAggregateRepository;
+import com.larose.service.RatingAggregateService.Contribution;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RatingAggregateServiceTest {
+
+    // Bảng room_rating_aggregates / room_type_rating_aggregates giả lập: [count, sum, stars_1..stars_5]
+    private final Map<Long, int[]> roomTable = new HashMap<>();
+    private final Map<Long, int[]> roomTypeTable = new HashMap<>();
+    private RoomRatingAggregateRepository roomRepository;
+    private RoomTypeRatingAggregateRepository roomTypeRepository;
+    private RoomResponseCacheService roomResponseCacheService;
+    private RatingAggregateService service;
+
+    @BeforeEach
+    void setUp() {
+        roomRepository = mock(RoomRatingAggregateRepository.class);
+        roomTypeRepository = mock(RoomTypeRatingAggregateRepository.class);
+        roomResponseCacheService = mock(RoomResponseCacheService.class);
+        when(roomRepository.addDelta(anyLong(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> add(roomTable, invocation.getArguments()));
+        when(roomTypeRepository.addDelta(anyLong(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> add(roomTypeTable, invocation.getArguments()));
+        when(roomRepository.findById(anyLong())).thenAnswer(invocation -> {
+            int[] row = roomTable.get(invocation.<Long>getArgument(0));
+            return Optional.ofNullable(row != null ? roomAggregate(invocation.getArgument(0), row) : null);
+        });
+        service = new RatingAggregateService(roomRepository, roomTypeRepository, roomResponseCacheService);
+    }
+
+    @AfterEach
+    void aggregatesNeverGoNegative() {
+        roomTable.values().forEach(row -> assertThat(Arrays.stream(row).min().orElse(0)).isNotNegative());
+        roomTypeTable.values().forEach(row -> assertThat(Arrays.stream(row).min().orElse(0)).isNotNegative());
+    }
+
+    @Test
+    void onlyPublishedReviewsWithARoomContribute() {
+        assertThat(service.contributionOf(review(1L, 10L, 4, Review.ReviewStatus.published)))
+                .isEqualTo(new Contribution(1L, 10L, 4));
+        assertThat(service.contributionOf(review(1L, 10L, 4, Review.ReviewStatus.pending))).isNull();
+        assertThat(service.contributionOf(review(null, null, 4, Review.ReviewStatus.published))).isNull();
+        assertThat(service.contributionOf(null)).isNull();
+    }
+
+    @Test
+    void publishingAReviewAddsItToRoomAndRoomType() {
+        service.apply(null, new Contribution(1L, 10L, 4));
+        service.apply(null, new Contribution(2L, 10L, 5));
+
+        assertThat(roomTable.get(1L)).containsExactly(1, 4, 0, 0, 0, 1, 0);
+        assertThat(roomTable.get(2L)).containsExactly(1, 5, 0, 0, 0, 0, 1);
+        assertThat(roomTypeTable.get(10L)).containsExactly(2, 9, 0, 0, 0, 1, 1);
+        verify(roomResponseCacheService).evict(Set.of(1L));
+        verify(roomResponseCacheService).evict(Set.of(2L));
+    }
+
+    @Test
+    void changingTheRatingMovesOneStarBucketWithoutTouchingTheCount() {
+        service.apply(null, new Contribution(1L, 10L, 2));
+
+        service.apply(new Contribution(1L, 10L, 2), new Contribution(1L, 10L, 5));
+
+        assertThat(roomTable.get(1L)).containsExactly(1, 5, 0, 0, 0, 0, 1);
+        assertThat(roomTypeTable.get(10L)).containsExactly(1, 5, 0, 0, 0, 0, 1);
+        // Trừ và cộng gộp thành một câu cho mỗi bảng
+        verify(roomRepository).addDelta(1L, 0, 3, 0, -1, 0, 0, 1);
+        verify(roomTypeRepository).addDelta(10L, 0, 3, 0, -1, 0, 0, 1);
+    }
+
+    @Test
+    void hidingOrDeletingAReviewRemovesItsContribution() {
+        service.apply(null, new Contribution(1L, 10L, 3));
+        service.apply(null, new Contribution(1L, 10L, 1));
+
+        service.apply(new Contribution(1L, 10L, 3), null);
+        service.apply(new Contribution(1L, 10L, 1), null);
+
+        assertThat(roomTable.get(1L)).containsOnly(0);
+        assertThat(roomTypeTable.get(10L)).containsOnly(0);
+    }
+
+    @Test
+    void reviewMovedToAnotherRoomLeavesTheOldRoom() {
+        service.apply(null, new Contribution(1L, 10L, 4));
+
+        service.apply(new Contribution(1L, 10L, 4), new Contribution(2L, 20L, 4));
+
+        assertThat(roomTable.get(1L)).containsOnly(0);
+        assertThat(roomTable.get(2L)).containsExactly(1, 4, 0, 0, 0, 1, 0);
+        assertThat(roomTypeTable.get(10L)).containsOnly(0);
+        assertThat(roomTypeTable.get(20L)).containsExactly(1, 4, 0, 0, 0, 1, 0);
+        verify(roomResponseCacheService).evict(Set.of(1L, 2L));
+    }
+
+    @Test
+    void unchangedContributionDoesNotWrite() {
+        service.apply(new Contribution(1L, 10L, 4), new Contribution(1L, 10L, 4));
+        service.apply(null, null);
+
+        verifyNoInteractions(roomRepository, roomTypeRepository, roomResponseCacheService);
+    }
+
+    @Test
+    void roomWithoutTypeOnlyUpdatesTheRoomAggregate() {
+        service.apply(null, new Contribution(1L, null, 5));
+
+        assertThat(roomTable.get(1L)).containsExactly(1, 5, 0, 0, 0, 0, 1);
+        verifyNoInteractions(roomTypeRepository);
+    }
+
+    @Test
+    void roomTypeChangeMovesTheWholeRoomAggregate() {
+        service.apply(null, new Contribution(1L, 10L, 5));
+        service.apply(null, new Contribution(1L, 10L, 3));
+        service.apply(null, new Contribution(2L, 10L, 4));
+
+        service.onRoomTypeChanged(1L, 10L, 20L);
+
+        assertThat(roomTypeTable.get(10L)).containsExactly(1, 4, 0, 0, 0, 1, 0);
+        assertThat(roomTypeTable.get(20L)).containsExactly(2, 8, 0, 0, 1, 0, 1);
+        // Aggregate của phòng không đổi
+        assertThat(roomTable.get(1L)).containsExactly(2, 8, 0, 0, 1, 0, 1);
+    }
+
+    @Test
+    void roomTypeChangeFromOrToNoTypeOnlyTouchesOneSide() {
+        service.apply(null, new Contribution(1L, null, 5));
+
+        service.onRoomTypeChanged(1L, null, 10L);
+        assertThat(roomTypeTable.get(10L)).containsExactly(1, 5, 0, 0, 0, 0, 1);
+
+        service.onRoomTypeChanged(1L, 10L, null);
+        assertThat(roomTypeTable.get(10L)).containsOnly(0);
+    }
+
+    @Test
+    void roomTypeChangeWithoutReviewsDoesNotWrite() {
+        service.onRoomTypeChanged(1L, 10L, 20L);
+
+        // Phòng đã có dòng nhưng mọi review đã bị gỡ
+        service.apply(null, new Contribution(2L, 10L, 4));
+        service.apply(new Contribution(2L, 10L, 4), null);
+        clearInvocations(roomTypeRepository);
+        service.onRoomTypeChanged(2L, 10L, 20L);
+
+        verify(roomTypeRepository, never())
+                .addDelta(anyLong(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt(), anyInt());
+        assertThat(roomTypeTable).doesNotContainKey(20L);
+    }
+
+    @Test
+    void sameRoomTypeIsNoOp() {
+        service.apply(null, new Contribution(1L, 10L, 5));
+        clearInvocations(roomRepository, roomTypeRepository);
+
+        service.onRoomTypeChanged(1L, 10L, 10L);
+
+        verifyNoInteractions(roomRepository, roomTypeRepository);
+    }
+
+    @Test
+    void averageIsRoundedToOneDecimal() {
+        assertThat(RatingAggregateService.average(3, 13)).isEqualTo(4.3);
+        assertThat(RatingAggregateService.average(0, 0)).isNull();
+        assertThat(RatingAggregateService.average(null, null)).isNull();
+    }
+
+    // Cùng ngữ nghĩa với INSERT ... ON DUPLICATE KEY UPDATE cột = cột + delta
+    private static int add(Map<Long, int[]> table, Object[] args) {
+        int[] row = table.computeIfAbsent((Long) args[0], key -> new int[7]);
+        for (int i = 0; i < 7; i++) {
+            row[i] += (Integer) args[i + 1];
+        }
+        return 1;
+    }
+
+    private static RoomRatingAggregate roomAggregate(Long roomId, int[] row) {
+        RoomRatingAggregate aggregate = new RoomRatingAggregate();
+        aggregate.setRoomId(roomId);
+        aggregate.setReviewCount(row[0]);
+        aggregate.setRatingSum(row[1]);
+        aggregate.setStars1(row[2]);
+        aggregate.setStars2(row[3]);
+        aggregate.setStars3(row[4]);
+        aggregate.setStars4(row[5]);
+        aggregate.setStars5(row[6]);
+        return aggregate;
+    }
+
+    private static Review review(Long roomId, Long roomTypeId, int rating, Review.ReviewStatus status) {
+        Review review = new Review();
+        review.setRating((byte) rating);
+        review.setStatus(status);
+        if (roomId != null) {
+            Room room = new Room();
+            room.setId(roomId);
+            if (roomTypeId != null) {
+                RoomType roomType = new RoomType();
+                roomType.setId(roomTypeId);
+                room.setRoomType(roomType);
+            }
+            review.setRoom(room);
+        }
+        return review;
+    }
+}
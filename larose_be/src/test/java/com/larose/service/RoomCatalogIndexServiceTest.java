@@ -0,0 +1,131 @@
+package com.larose.service;
+
+import com.larose.dto.response.RoomFacetsResponse;
+import com.larose.dto.search.RoomSearchDto;
+import com.larose.entity.Room;
+import com.larose.entity.RoomType;
+import com.larose.repository.RoomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoomCatalogIndexServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private RoomCatalogIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(room(1L, "D101", "Phòng Deluxe hướng biển", "800000", 2, 1, 1L, "Deluxe"));
+        rows.add(room(2L, "D102", "Phòng Deluxe gia đình", "1200000", 4, 2, 1L, "Deluxe"));
+        rows.add(room(3L, "S201", "Suite cao cấp", "2500000", 2, 3, 2L, "Suite"));
+        rows.add(room(4L, "S202", "Suite gia đình", "3000000", 4, 4, 2L, "Suite"));
+        rows.add(room(5L, "T301", "Phòng tiêu chuẩn", "400000", 2, 5, 3L, "Standard"));
+        RoomRepository roomRepository = mock(RoomRepository.class);
+        when(roomRepository.findCatalogIndexRows()).thenReturn(rows);
+        service = new RoomCatalogIndexService(roomRepository, new BigDecimal("500000"));
+        service.reload();
+    }
+
+    @Test
+    void searchAppliesAllFiltersNewestFirst() {
+        assertThat(service.search(new RoomSearchDto())).containsExactly(5L, 4L, 3L, 2L, 1L);
+        assertThat(service.search(request(null, 2, null, null, null))).containsExactly(5L, 3L, 1L);
+        assertThat(service.search(request(null, null, 1000000.0, 2600000.0, null))).containsExactly(3L, 2L);
+        // Từ khóa không dấu vẫn khớp tên có dấu
+        assertThat(service.search(request(null, null, null, null, "gia dinh"))).containsExactly(4L, 2L);
+    }
+
+    @Test
+    void eachFacetIgnoresItsOwnFilter() {
+        RoomFacetsResponse facets = service.facets(request(1L, 2, null, null, null), null);
+
+        assertThat(facets.getTotal()).isEqualTo(1);
+        // Loại phòng: chỉ lọc theo sức chứa 2
+        assertThat(counts(facets.getTypes())).containsExactly(entry(1L, 1L), entry(2L, 1L), entry(3L, 1L));
+        // Sức chứa: chỉ lọc theo loại Deluxe
+        assertThat(counts(facets.getCapacities())).containsExactly(entry(2L, 1L), entry(4L, 1L));
+        // Khoảng giá: lọc theo cả loại và sức chứa
+        assertThat(facets.getPrices()).hasSize(1);
+        assertThat(facets.getPrices().get(0).getFrom()).isEqualByComparingTo("500000");
+        assertThat(facets.getPrices().get(0).getTo()).isEqualByComparingTo("1000000");
+        assertThat(facets.getPrices().get(0).getCount()).isEqualTo(1);
+        assertThat(facets.getMinPrice()).isEqualByComparingTo("800000");
+        assertThat(facets.getMaxPrice()).isEqualByComparingTo("800000");
+    }
+
+    @Test
+    void priceFilterNarrowsOtherFacetsButNotPriceFacet() {
+        RoomFacetsResponse facets = service.facets(request(1L, 2, 1000000.0, null, null), null);
+
+        assertThat(facets.getTotal()).isZero();
+        assertThat(counts(facets.getTypes())).containsExactly(entry(2L, 1L));
+        assertThat(counts(facets.getCapacities())).containsExactly(entry(4L, 1L));
+        assertThat(facets.getPrices()).extracting(RoomFacetsResponse.PriceBucket::getCount).containsExactly(1L);
+        assertThat(facets.getMinPrice()).isEqualByComparingTo("800000");
+    }
+
+    @Test
+    void keywordAndAvailabilityApplyToEveryFacet() {
+        RoomFacetsResponse facets = service.facets(request(null, null, null, null, "phong"), id -> id != 5L);
+
+        assertThat(facets.getTotal()).isEqualTo(2);
+        assertThat(counts(facets.getTypes())).containsExactly(entry(1L, 2L));
+        assertThat(counts(facets.getCapacities())).containsExactly(entry(2L, 1L), entry(4L, 1L));
+        assertThat(facets.getPrices()).extracting(RoomFacetsResponse.PriceBucket::getCount).containsExactly(1L, 1L);
+        assertThat(facets.getMinPrice()).isEqualByComparingTo("800000");
+        assertThat(facets.getMaxPrice()).isEqualByComparingTo("1200000");
+    }
+
+    @Test
+    void putAndRemoveUpdateIndex() {
+        Room updated = Room.builder()
+                .id(5L).code("T301").title("Phòng tiêu chuẩn").price(new BigDecimal("450000")).capacity(3)
+                .createdAt(BASE.plusDays(5))
+                .roomType(RoomType.builder().id(3L).name("Standard").build())
+                .build();
+        service.put(updated);
+        service.remove(1L);
+
+        assertThat(service.search(request(null, 3, null, null, null))).containsExactly(5L);
+        assertThat(service.search(new RoomSearchDto())).containsExactly(5L, 4L, 3L, 2L);
+
+        updated.setDeletedAt(BASE);
+        service.put(updated);
+
+        assertThat(service.search(new RoomSearchDto())).containsExactly(4L, 3L, 2L);
+    }
+
+    private static Map<Long, Long> counts(List<RoomFacetsResponse.FacetCount> facets) {
+        return facets.stream().collect(Collectors.toMap(RoomFacetsResponse.FacetCount::getValue,
+                RoomFacetsResponse.FacetCount::getCount, (a, b) -> a, java.util.LinkedHashMap::new));
+    }
+
+    private static RoomSearchDto request(Long typeId, Integer capacity, Double minPrice, Double maxPrice, String keyword) {
+        RoomSearchDto request = new RoomSearchDto();
+        request.setTypeId(typeId);
+        request.setCapacity(capacity);
+        request.setMinPrice(minPrice);
+        request.setMaxPrice(maxPrice);
+        request.setKeyword(keyword);
+        return request;
+    }
+
+    private static Object[] room(Long id, String code, String title, String price, int capacity, int days,
+                                 Long typeId, String typeName) {
+        return new Object[]{id, code, title, null, new BigDecimal(price), capacity, BASE.plusDays(days), typeId, typeName};
+    }
+}
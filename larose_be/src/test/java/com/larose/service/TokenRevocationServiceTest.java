@@ -0,0 +1,142 @@
+package com.larose.service;
+
+import com.larose.config.JwtTokenUtil;
+import com.larose.entity.RevokedToken;
+import com.larose.repository.RevokedTokenRepository;
+import com.larose.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationServiceTest {
+
+    private PrincipalCacheService principalCacheService;
+    private UserRepository userRepository;
+    private RevokedTokenRepository revokedTokenRepository;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        principalCacheService = mock(PrincipalCacheService.class);
+        userRepository = mock(UserRepository.class);
+        revokedTokenRepository = mock(RevokedTokenRepository.class);
+        service = new TokenRevocationService(principalCacheService, userRepository, revokedTokenRepository,
+                60_000, 120_000, 60_000);
+    }
+
+    @Test
+    void tokenWithOlderVersionIsRevokedRegardlessOfIssueTime() {
+        startWithVersions(List.<Object[]>of(new Object[]{"a@example.com", 3}));
+        try {
+            // Phát hành cùng thời điểm thu hồi vẫn bị từ chối: chỉ so version, không so iat
+            assertThat(service.isRevoked(claims("a@example.com", 2))).isTrue();
+            assertThat(service.isRevoked(claims("a@example.com", 3))).isFalse();
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void tokenWithoutVersionClaimCountsAsVersionZero() {
+        Claims legacy = claims("a@example.com", null);
+        assertThat(service.isRevoked(legacy)).isFalse();
+
+        startWithVersions(List.<Object[]>of(new Object[]{"a@example.com", 1}));
+        try {
+            assertThat(service.isRevoked(legacy)).isTrue();
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void isRevokedNeverReadsTheDatabaseOrPrincipalCache() {
+        service.isRevoked(claims("a@example.com", 0));
+
+        verifyNoInteractions(principalCacheService, userRepository, revokedTokenRepository);
+    }
+
+    @Test
+    void revokeUserBumpsVersionAndInvalidatesCache() {
+        when(userRepository.findTokenVersionByEmail("a@example.com")).thenReturn(Optional.of(1));
+
+        service.revokeUser("a@example.com");
+
+        verify(userRepository).incrementTokenVersion(eq("a@example.com"), any(LocalDateTime.class));
+        verify(principalCacheService).invalidate("a@example.com");
+        // Không có transaction: afterCommit chạy ngay, node này từ chối token cũ luôn
+        assertThat(service.isRevoked(claims("a@example.com", 0))).isTrue();
+        assertThat(service.isRevoked(claims("a@example.com", 1))).isFalse();
+    }
+
+    @Test
+    void userRevokedOnAnotherNodeIsPickedUpByPoll() throws InterruptedException {
+        service = new TokenRevocationService(principalCacheService, userRepository, revokedTokenRepository,
+                60_000, 120_000, 100);
+        when(userRepository.findTokenVersionsChangedSince(any(LocalDateTime.class)))
+                .thenReturn(List.<Object[]>of(new Object[]{"b@example.com", 2}));
+
+        service.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!service.isRevoked(claims("b@example.com", 1)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(service.isRevoked(claims("b@example.com", 1))).isTrue();
+            assertThat(service.isRevoked(claims("b@example.com", 2))).isFalse();
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void logoutIsPersistedAndRejectedLocally() {
+        Claims claims = claims("a@example.com", 0);
+        claims.setId("jti-1");
+        claims.setExpiration(new Date(System.currentTimeMillis() + 60_000));
+
+        service.revokeToken(claims);
+
+        verify(revokedTokenRepository).insertIfAbsent(eq("jti-1"), any(LocalDateTime.class), any(LocalDateTime.class));
+        assertThat(service.isRevoked(claims)).isTrue();
+    }
+
+    @Test
+    void tokensRevokedOnOtherNodesAreLoadedAtStartup() {
+        when(revokedTokenRepository.findByExpiresAtAfter(any(LocalDateTime.class)))
+                .thenReturn(List.of(new RevokedToken("jti-2", LocalDateTime.now().plusHours(1), LocalDateTime.now())));
+
+        service.start();
+        try {
+            Claims claims = claims("a@example.com", 0);
+            claims.setId("jti-2");
+            assertThat(service.isRevoked(claims)).isTrue();
+        } finally {
+            service.stop();
+        }
+    }
+
+    private void startWithVersions(List<Object[]> versions) {
+        when(userRepository.findRevokedTokenVersions()).thenReturn(versions);
+        service.start();
+    }
+
+    private static Claims claims(String email, Integer version) {
+        Claims claims = Jwts.claims().setSubject(email);
+        if (version != null) {
+            claims.put(JwtTokenUtil.TOKEN_VERSION_CLAIM, version);
+        }
+        return claims;
+    }
+}
@@ -0,0 +1,139 @@
+package com.larose.service;
+
+import com.larose.dto.projection.TransactionSearchRow;
+import com.larose.dto.response.TransactionSearchResponse;
+import com.larose.dto.search.TransactionSearchDto;
+import com.larose.maptruct.BookingMapper;
+import com.larose.maptruct.TransactionMapper;
+import com.larose.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionServiceSearchTest {
+
+    private TransactionRepository transactionRepository;
+    private TransactionService transactionService;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        transactionService = new TransactionService(transactionRepository, mock(BookingService.class),
+                mock(TransactionMapper.class), mock(BookingMapper.class), mock(RevenueRollupService.class));
+    }
+
+    @Test
+    void cursorRoundTripsForEverySortField() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 9, 14, 5, 7, 123_000_000);
+        TransactionSearchRow row = row(42L, new BigDecimal("1500000.50"), createdAt);
+
+        TransactionService.SearchCursor byDate = TransactionService.SearchCursor.decode(
+                TransactionService.SearchCursor.of("createdAt", row).encode());
+        assertThat(byDate.id()).isEqualTo(42L);
+        assertThat(byDate.value("createdAt")).isEqualTo(createdAt);
+
+        TransactionService.SearchCursor byAmount = TransactionService.SearchCursor.decode(
+                TransactionService.SearchCursor.of("amount", row).encode());
+        assertThat(byAmount.value("amount")).isEqualTo(new BigDecimal("1500000.50"));
+
+        TransactionService.SearchCursor byId = TransactionService.SearchCursor.decode(
+                TransactionService.SearchCursor.of("id", row).encode());
+        assertThat(byId.value("id")).isNull();
+        assertThat(byId.id()).isEqualTo(42L);
+    }
+
+    @Test
+    void cursorWithNullSortValueDecodesToNull() {
+        TransactionService.SearchCursor cursor = TransactionService.SearchCursor.decode(
+                TransactionService.SearchCursor.of("amount", row(7L, null, null)).encode());
+
+        assertThat(cursor.value("amount")).isNull();
+        assertThat(cursor.id()).isEqualTo(7L);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        String wrongValue = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("amount|abc|1".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> TransactionService.SearchCursor.decode("not base64 !"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionService.SearchCursor.decode(wrongValue))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void searchFetchesOneExtraRowAndReturnsCursorOfLastItem() {
+        LocalDateTime base = LocalDateTime.of(2025, 3, 9, 10, 0);
+        when(transactionRepository.search(any(TransactionSearchDto.class), anyInt())).thenReturn(List.of(
+                row(30L, BigDecimal.TEN, base.plusMinutes(2)),
+                row(20L, BigDecimal.TEN, base.plusMinutes(1)),
+                row(10L, BigDecimal.TEN, base)));
+
+        TransactionSearchResponse response = transactionService.searchTransactions(
+                null, null, null, null, null, null, null, null, null, 2);
+
+        verify(transactionRepository).search(any(TransactionSearchDto.class), eq(3));
+        assertThat(response.isHasMore()).isTrue();
+        assertThat(response.getItems()).hasSize(2);
+        TransactionService.SearchCursor next = TransactionService.SearchCursor.decode(response.getNextCursor());
+        assertThat(next.id()).isEqualTo(20L);
+        assertThat(next.value("createdAt")).isEqualTo(base.plusMinutes(1));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        when(transactionRepository.search(any(TransactionSearchDto.class), anyInt()))
+                .thenReturn(List.of(row(1L, BigDecimal.ONE, LocalDateTime.now())));
+
+        TransactionSearchResponse response = transactionService.searchTransactions(
+                null, null, null, null, null, null, "amount", "asc", null, 10);
+
+        assertThat(response.isHasMore()).isFalse();
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    @Test
+    void cursorIsAppliedAsKeysetBoundary() {
+        String cursor = TransactionService.SearchCursor.of("amount", row(20L, new BigDecimal("99.00"), null)).encode();
+        when(transactionRepository.search(any(TransactionSearchDto.class), anyInt())).thenReturn(List.of());
+
+        transactionService.searchTransactions(null, null, null, null, null, null, "amount", "desc", cursor, 10);
+
+        ArgumentCaptor<TransactionSearchDto> criteria = ArgumentCaptor.forClass(TransactionSearchDto.class);
+        verify(transactionRepository).search(criteria.capture(), eq(11));
+        assertThat(criteria.getValue().getSortBy()).isEqualTo("amount");
+        assertThat(criteria.getValue().isAscending()).isFalse();
+        assertThat(criteria.getValue().getAfterValue()).isEqualTo(new BigDecimal("99.00"));
+        assertThat(criteria.getValue().getAfterId()).isEqualTo(20L);
+    }
+
+    @Test
+    void cursorFromAnotherSortFieldIsRejected() {
+        String cursor = TransactionService.SearchCursor.of("amount", row(20L, BigDecimal.ONE, null)).encode();
+
+        assertThatThrownBy(() -> transactionService.searchTransactions(
+                null, null, null, null, null, null, "createdAt", "desc", cursor, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TransactionSearchRow row(Long id, BigDecimal amount, LocalDateTime createdAt) {
+        return new TransactionSearchRow(id, null, null, null, amount, null, null, null, null, createdAt, null,
+                null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.larose.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextTemplateTest {
+
+    @Test
+    void escapesHtmlInDoubleBraces() {
+        TextTemplate template = TextTemplate.compile("<p>Xin chào {{name}}</p>", true);
+
+        assertThat(template.render(Map.of("name", "<b>\"Tom\" & 'Jerry'</b>")))
+                .isEqualTo("<p>Xin chào &lt;b&gt;&quot;Tom&quot; &amp; &#39;Jerry&#39;&lt;/b&gt;</p>");
+    }
+
+    @Test
+    void tripleBracesInsertRawValue() {
+        TextTemplate template = TextTemplate.compile("<div>{{{rows}}}</div>", true);
+
+        assertThat(template.render(Map.of("rows", "<tr><td>A & B</td></tr>")))
+                .isEqualTo("<div><tr><td>A & B</td></tr></div>");
+    }
+
+    @Test
+    void plainTextTemplateDoesNotEscape() {
+        TextTemplate template = TextTemplate.compile("Mã: {{ code }}", false);
+
+        assertThat(template.render(Map.of("code", "A<1>"))).isEqualTo("Mã: A<1>");
+    }
+
+    @Test
+    void missingValuesRenderEmptyAndUnclosedPlaceholderStaysLiteral() {
+        TextTemplate template = TextTemplate.compile("{{a}}-{{b}}-{{}}-{{c", true);
+
+        assertThat(template.render(Map.of("a", 1))).isEqualTo("1--{{}}-{{c");
+        assertThat(template.getVariables()).containsExactly("a", "b");
+    }
+
+    @Test
+    void variablesAreListedOnceInOrder() {
+        TextTemplate template = TextTemplate.compile("{{x}} {{{y}}} {{x|currency}} {{z|date}}", true);
+
+        assertThat(template.getVariables()).containsExactly("x", "y", "z");
+    }
+
+    @Test
+    void formatsCurrencyDateAndDateTime() {
+        TextTemplate template = TextTemplate.compile("{{total|currency}}|{{day|date}}|{{at|datetime}}|{{paid|datetime}}", false);
+        Map<String, Object> values = new HashMap<>();
+        values.put("total", new BigDecimal("1500000"));
+        values.put("day", LocalDate.of(2025, 3, 9));
+        values.put("at", LocalDateTime.of(2025, 3, 9, 14, 5, 7));
+        values.put("paid", Instant.parse("2025-03-09T17:30:00Z"));
+
+        String[] parts = template.render(values).split("\\|");
+
+        assertThat(parts[0]).contains("1.500.000").contains("₫");
+        assertThat(parts[1]).isEqualTo("09/03/2025");
+        assertThat(parts[2]).isEqualTo("09/03/2025 14:05:07");
+        // Instant được đổi sang giờ Việt Nam (UTC+7)
+        assertThat(parts[3]).isEqualTo("10/03/2025 00:30:00");
+    }
+
+    @Test
+    void nullCurrencyRendersZeroAndNonTemporalFallsBackToString() {
+        TextTemplate template = TextTemplate.compile("{{total|currency}} {{day|date}}", false);
+        Map<String, Object> values = new HashMap<>();
+        values.put("day", "hôm nay");
+
+        assertThat(template.render(values)).isEqualTo("0₫ hôm nay");
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThatThrownBy(() -> TextTemplate.compile("{{total|money}}", false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void renderDoesNotLeakPreviousOutput() {
+        TextTemplate template = TextTemplate.compile("[{{v}}]", false);
+
+        assertThat(template.render(Map.of("v", "dài hơn nhiều"))).isEqualTo("[dài hơn nhiều]");
+        assertThat(template.render(Map.of("v", "x"))).isEqualTo("[x]");
+    }
+}